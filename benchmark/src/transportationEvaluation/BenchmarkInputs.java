@@ -0,0 +1,77 @@
+package transportationEvaluation;
+
+import java.util.Random;
+
+/**
+ * Seeded query inputs for one synthetic graph: random pairs of towns, by name and by ID, and itineraries
+ * along random roads. Benchmarks cycle through them with next() so that no single query is measured alone.
+ * @author Ryan C Smith
+ */
+final class BenchmarkInputs {
+	/**
+	 * Distinct inputs prepared per graph. A power of two, so next() wraps with a mask.
+	 */
+	static final int INPUTS = 1024;
+
+	/**
+	 * Towns visited by each calculateRouteDistance itinerary.
+	 */
+	static final int ITINERARY_LENGTH = 16;
+
+	/**
+	 * Seed of the generated graphs and inputs.
+	 */
+	static final long SEED = 42;
+
+	final String text;
+	final RouteMap routes;
+	final CompactGraph graph;
+	final String[] starts = new String[INPUTS];
+	final String[] ends = new String[INPUTS];
+	final String[][] itineraries = new String[INPUTS][];
+	final int[] startIds = new int[INPUTS];
+	final int[] endIds = new int[INPUTS];
+	private int cursor;
+
+	/**
+	 * Generates a graph and its inputs.
+	 * @param shape - network shape.
+	 * @param size - number of towns.
+	 */
+	BenchmarkInputs(SyntheticGraphs.Shape shape, int size){
+		text = SyntheticGraphs.generate(shape, size, SEED);
+		routes = new RouteMap(GraphFileLoader.parse(text));
+		graph = routes.getGraph();
+		Random random = new Random(SEED);
+		for (int i = 0; i < INPUTS; i++){
+			startIds[i] = random.nextInt(graph.townCount());
+			endIds[i] = random.nextInt(graph.townCount());
+			starts[i] = graph.name(startIds[i]);
+			ends[i] = graph.name(endIds[i]);
+			itineraries[i] = randomWalk(graph, random);
+		}
+	}
+
+	/**
+	 * @return index of the input for the next call.
+	 */
+	int next(){
+		cursor = (cursor + 1) & (INPUTS - 1);
+		return cursor;
+	}
+
+	/**
+	 * Follows random roads so that most itineraries exist; a dead end leaves the rest of the walk on one town.
+	 */
+	private static String[] randomWalk(CompactGraph graph, Random random){
+		String[] itinerary = new String[ITINERARY_LENGTH];
+		int town = random.nextInt(graph.townCount());
+		for (int i = 0; i < ITINERARY_LENGTH; i++){
+			itinerary[i] = graph.name(town);
+			int degree = graph.endEdge(town) - graph.firstEdge(town);
+			if (degree > 0)
+				town = graph.target(graph.firstEdge(town) + random.nextInt(degree));
+		}
+		return itinerary;
+	}
+}
@@ -0,0 +1,55 @@
+package transportationEvaluation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of DistanceMatrix: building the all-pairs table and looking distances up in it.
+ * Sizes stay below DistanceMatrix.HEAP_TOWN_LIMIT, the largest table held on the heap.
+ * @author Ryan C Smith
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceMatrixBenchmark {
+	@Param({"RANDOM", "GRID", "SCALE_FREE"})
+	public SyntheticGraphs.Shape shape;
+
+	@Param({"10", "1000", "10000"})
+	public int size;
+
+	BenchmarkInputs inputs;
+	DistanceMatrix matrix;
+
+	@Setup
+	public void setUp(){
+		inputs = new BenchmarkInputs(shape, size);
+		matrix = DistanceMatrix.compute(inputs.graph);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public DistanceMatrix compute(){
+		return DistanceMatrix.compute(inputs.graph);
+	}
+
+	@Benchmark
+	public int lookup(){
+		int i = inputs.next();
+		return matrix.distance(inputs.startIds[i], inputs.endIds[i]);
+	}
+}
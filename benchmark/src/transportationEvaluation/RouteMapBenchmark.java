@@ -0,0 +1,96 @@
+package transportationEvaluation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the RouteMap queries and graph loading on seeded synthetic graphs, from 10 to 1M towns.
+ * Run with -prof gc to report bytes allocated per operation.
+ * The metered variant repeats calculateShortestRoute with QueryMetrics (and tracing) attached, to show its overhead.
+ * @author Ryan C Smith
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteMapBenchmark {
+	/**
+	 * Stop limit of the route counts, small enough that counts stay within Integer range on every shape.
+	 */
+	static final int STOPS = 4;
+
+	/**
+	 * Distance limit of the route counts, small enough that counts stay within Integer range on every shape.
+	 */
+	static final int BUDGET = 25;
+
+	@Param({"RANDOM", "GRID", "SCALE_FREE"})
+	public SyntheticGraphs.Shape shape;
+
+	@Param({"10", "1000", "100000", "1000000"})
+	public int size;
+
+	BenchmarkInputs inputs;
+	RouteMap metered;
+
+	@Setup
+	public void setUp(){
+		inputs = new BenchmarkInputs(shape, size);
+		metered = new RouteMap(inputs.graph);
+		metered.setMetrics(new QueryMetrics(1024, false));
+	}
+
+	@Benchmark
+	public Integer calculateShortestRoute(){
+		int i = inputs.next();
+		return inputs.routes.calculateShortestRoute(inputs.starts[i], inputs.ends[i]);
+	}
+
+	@Benchmark
+	public Integer calculateShortestRouteMetered(){
+		int i = inputs.next();
+		return metered.calculateShortestRoute(inputs.starts[i], inputs.ends[i]);
+	}
+
+	@Benchmark
+	public Integer calculateRouteDistance(){
+		return inputs.routes.calculateRouteDistance(inputs.itineraries[inputs.next()]);
+	}
+
+	@Benchmark
+	public Integer routesByStops(){
+		int i = inputs.next();
+		return inputs.routes.calculateNumberOfRoutesByStops(inputs.starts[i], inputs.ends[i], STOPS, false);
+	}
+
+	@Benchmark
+	public Integer routesByDistance(){
+		int i = inputs.next();
+		return inputs.routes.calculateNumberOfRoutesByDistance(inputs.starts[i], inputs.starts[i], BUDGET);
+	}
+
+	@Benchmark
+	public HashMap<String, ArrayList<Node>> createAdjacencyList(){
+		return Trains.createAdjacencyList(inputs.text);
+	}
+
+	@Benchmark
+	public CompactGraph loadGraph(){
+		return GraphFileLoader.parse(inputs.text);
+	}
+}
@@ -0,0 +1,83 @@
+package transportationEvaluation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks comparing the point-to-point search strategies and ParetoSearch on the same random pairs of towns.
+ * Landmarks and the contraction hierarchy are built once per trial, outside the measurement; their
+ * preprocessing takes minutes on the largest graphs, so the default sizes stop at 100000 towns
+ * (pass -p size=1000000 to go further).
+ * @author Ryan C Smith
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchStrategyBenchmark {
+	/**
+	 * Stop limit of the Pareto searches.
+	 */
+	static final int PARETO_STOPS = 32;
+
+	@Param({"RANDOM", "GRID", "SCALE_FREE"})
+	public SyntheticGraphs.Shape shape;
+
+	@Param({"1000", "100000"})
+	public int size;
+
+	BenchmarkInputs inputs;
+	Landmarks landmarks;
+	ContractionHierarchy hierarchy;
+
+	@Setup
+	public void setUp(){
+		inputs = new BenchmarkInputs(shape, size);
+		inputs.graph.reverse();
+		landmarks = Landmarks.build(inputs.graph);
+		hierarchy = ContractionHierarchy.build(inputs.graph);
+	}
+
+	@Benchmark
+	public int dijkstra(){
+		int i = inputs.next();
+		return DijkstraSearch.shortestDistance(inputs.graph, inputs.startIds[i], inputs.endIds[i]);
+	}
+
+	@Benchmark
+	public int bidirectional(){
+		int i = inputs.next();
+		return BidirectionalSearch.search(inputs.graph, inputs.startIds[i], inputs.endIds[i]).distance();
+	}
+
+	@Benchmark
+	public int alt(){
+		int i = inputs.next();
+		return landmarks.search(inputs.startIds[i], inputs.endIds[i]).distance();
+	}
+
+	@Benchmark
+	public int contractionHierarchy(){
+		int i = inputs.next();
+		return hierarchy.search(inputs.startIds[i], inputs.endIds[i]).distance();
+	}
+
+	@Benchmark
+	public ParetoFront pareto(){
+		int i = inputs.next();
+		return ParetoSearch.search(inputs.graph, inputs.startIds[i], inputs.endIds[i], PARETO_STOPS);
+	}
+}
@@ -0,0 +1,109 @@
+package transportationEvaluation;
+
+import java.util.Random;
+
+/**
+ * Seeded generators for synthetic transportation systems, written in the (A,B,5) graph file format.
+ * The same shape, size and seed always produce the same graph, so benchmark runs are comparable.
+ * @author Ryan C Smith
+ */
+public final class SyntheticGraphs {
+	/**
+	 * Shapes of generated networks.
+	 */
+	public enum Shape {
+		/**
+		 * Every town has a fixed number of roads to uniformly random towns.
+		 */
+		RANDOM,
+		/**
+		 * Square grid with roads in both directions between neighbouring towns.
+		 */
+		GRID,
+		/**
+		 * Preferential attachment: new towns connect to towns that already have many roads, giving a few large hubs.
+		 */
+		SCALE_FREE
+	}
+
+	/**
+	 * Roads added per town for the random and scale-free shapes.
+	 */
+	static final int DEGREE = 4;
+
+	/**
+	 * Road distances are drawn uniformly from [1, MAX_DISTANCE].
+	 */
+	static final int MAX_DISTANCE = 20;
+
+	private SyntheticGraphs(){
+	}
+
+	/**
+	 * Generates graph data in String form.
+	 * @param shape - network shape.
+	 * @param towns - number of towns. Grids are rounded to the nearest square.
+	 * @param seed - random seed.
+	 * @return graph data accepted by Trains.createAdjacencyList and GraphFileLoader.
+	 */
+	public static String generate(Shape shape, int towns, long seed){
+		Random random = new Random(seed);
+		StringBuilder text = new StringBuilder(towns * DEGREE * 16);
+		switch (shape){
+		case RANDOM:
+			for (int from = 0; from < towns; from++){
+				for (int i = 0; i < DEGREE; i++)
+					road(text, from, random.nextInt(towns), random);
+			}
+			break;
+		case GRID:
+			int side = Math.max(2, (int) Math.round(Math.sqrt(towns)));
+			for (int row = 0; row < side; row++){
+				for (int column = 0; column < side; column++){
+					int town = row * side + column;
+					if (column + 1 < side){
+						road(text, town, town + 1, random);
+						road(text, town + 1, town, random);
+					}
+					if (row + 1 < side){
+						road(text, town, town + side, random);
+						road(text, town + side, town, random);
+					}
+				}
+			}
+			break;
+		default:
+			//endpoints of every road so far; picking a uniform entry picks a town in proportion to its degree
+			int[] endpoints = new int[2 * DEGREE * towns + 2];
+			int endpointCount = 0;
+			road(text, 0, 1, random);
+			road(text, 1, 0, random);
+			endpoints[endpointCount++] = 0;
+			endpoints[endpointCount++] = 1;
+			for (int town = 2; town < towns; town++){
+				int links = Math.min(DEGREE, town);
+				for (int i = 0; i < links; i++){
+					int hub = endpoints[random.nextInt(endpointCount)];
+					road(text, town, hub, random);
+					road(text, hub, town, random);
+					endpoints[endpointCount++] = hub;
+				}
+				endpoints[endpointCount++] = town;
+			}
+		}
+		text.setLength(text.length() - 1);
+		return text.toString();
+	}
+
+	/**
+	 * @param town - town number.
+	 * @return name used for the town in generated graphs.
+	 */
+	public static String townName(int town){
+		return "T" + town;
+	}
+
+	private static void road(StringBuilder text, int from, int to, Random random){
+		text.append("(T").append(from).append(",T").append(to).append(',').append(1 + random.nextInt(MAX_DISTANCE)).append(") ");
+	}
+}
@@ -0,0 +1,244 @@
+package transportationEvaluation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Evaluates large batches of route queries in parallel.
+ * Queries are read in chunks. Within a chunk, shortest-route queries from the same origin share one
+ * single-source search and route-count queries (by stops or by distance) from the same origin and limit
+ * share one counting pass.
+ * The resulting groups run on a ForkJoinPool against the graph version current when the chunk started,
+ * and results are emitted in input order before the next chunk is read, so memory stays bounded by the
+ * chunk size however long the input is.
+ * @author Ryan C Smith
+ */
+public final class BatchRouteEvaluator {
+	/**
+	 * Queries evaluated per chunk unless configured otherwise.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+	//answer to a count past Integer.MAX_VALUE, as RouteMap's Math.toIntExact would report it
+	private static final String OVERFLOW = error(new ArithmeticException("integer overflow"));
+
+	private final RouteMap routeMap;
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+
+	/**
+	 * Creates an evaluator running on the common ForkJoinPool.
+	 * @param routeMap - RouteMap to query.
+	 */
+	public BatchRouteEvaluator(RouteMap routeMap){
+		this(routeMap, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param routeMap - RouteMap to query.
+	 * @param pool - pool the query groups run on.
+	 * @param chunkSize - number of queries read and grouped at a time.
+	 */
+	public BatchRouteEvaluator(RouteMap routeMap, ForkJoinPool pool, int chunkSize){
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("Chunk size must be positive.");
+		this.routeMap = routeMap;
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Evaluates a list of queries.
+	 * @param queries - queries to evaluate.
+	 * @return rendered results in the same order as the queries.
+	 */
+	public List<String> evaluate(List<RouteQuery> queries){
+		List<String> results = new ArrayList<String>(queries.size());
+		evaluate(queries.iterator(), results::add);
+		return results;
+	}
+
+	/**
+	 * Evaluates a stream of queries, handing results to the consumer in input order.
+	 * @param queries - queries to evaluate.
+	 * @param results - receives each rendered result.
+	 */
+	public void evaluate(Iterator<RouteQuery> queries, Consumer<String> results){
+		RouteQuery[] chunk = new RouteQuery[chunkSize];
+		String[] answers = new String[chunkSize];
+		while (queries.hasNext()){
+			int size = 0;
+			while (size < chunkSize && queries.hasNext())
+				chunk[size++] = queries.next();
+			evaluateChunk(chunk, answers, size);
+			for (int i = 0; i < size; i++)
+				results.accept(answers[i]);
+		}
+	}
+
+	/**
+	 * Evaluates newline-delimited queries, writing one result line per query line.
+	 * Blank lines are skipped; malformed lines produce an ERROR line in their place. A chunk also ends
+	 * when no more input is ready without blocking, so a process writing one query at a time over a
+	 * pipe gets each answer as soon as it is computed.
+	 * @param in - reader supplying query lines.
+	 * @param out - writer receiving result lines. Flushed after every chunk.
+	 * @throws IOException - if reading or writing fails.
+	 */
+	public void evaluate(BufferedReader in, Writer out) throws IOException {
+		RouteQuery[] chunk = new RouteQuery[chunkSize];
+		String[] answers = new String[chunkSize];
+		String line;
+		while ((line = in.readLine()) != null){
+			int size = 0;
+			do {
+				if (!line.trim().isEmpty())
+					parseInto(line, chunk, answers, size++);
+			} while (size < chunkSize && in.ready() && (line = in.readLine()) != null);
+			evaluateChunk(chunk, answers, size);
+			for (int i = 0; i < size; i++){
+				out.write(answers[i]);
+				out.write('\n');
+			}
+			out.flush();
+		}
+	}
+
+	/**
+	 * Parses one query line into chunk[index], or presets its ERROR answer if the line is malformed.
+	 */
+	static void parseInto(String line, RouteQuery[] chunk, String[] answers, int index){
+		try {
+			chunk[index] = RouteQuery.parse(line);
+			answers[index] = null;
+		} catch (IllegalArgumentException e){
+			chunk[index] = null;
+			answers[index] = "ERROR " + e.getMessage();
+		}
+	}
+
+	/**
+	 * Groups the chunk by shared work and runs the groups in parallel. Null queries keep their preset answer.
+	 */
+	void evaluateChunk(RouteQuery[] chunk, String[] answers, int size){
+		RouteMap pinned = routeMap.pin();
+		HashMap<List<Object>, List<Integer>> groups = new HashMap<List<Object>, List<Integer>>();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < size; i++){
+			RouteQuery query = chunk[i];
+			if (query == null)
+				continue;
+			List<Object> key;
+			if (query.kind == RouteQuery.Kind.SHORTEST_ROUTE)
+				key = Arrays.<Object>asList(query.kind, query.start());
+			else if (query.kind != RouteQuery.Kind.ROUTE_DISTANCE)
+				key = Arrays.<Object>asList(query.kind, query.start(), query.constraint);
+			else{
+				final int index = i;
+				tasks.add(() -> {
+					answers[index] = evaluateSafely(query, pinned);
+					return null;
+				});
+				continue;
+			}
+			List<Integer> members = groups.get(key);
+			if (members == null){
+				members = new ArrayList<Integer>();
+				groups.put(key, members);
+			}
+			members.add(i);
+		}
+		for (List<Integer> members : groups.values()){
+			tasks.add(() -> {
+				evaluateGroup(chunk, answers, members, pinned);
+				return null;
+			});
+		}
+		pool.invokeAll(tasks);
+	}
+
+	/**
+	 * Answers every query of a group from one shared search. With metrics attached to the pinned RouteMap,
+	 * one query is recorded per answer, the shared search's settled towns or states on the first of them.
+	 */
+	private static void evaluateGroup(RouteQuery[] chunk, String[] answers, List<Integer> members, RouteMap pinned){
+		CompactGraph graph = pinned.getGraph();
+		RouteQuery first = chunk[members.get(0)];
+		int start = graph.id(first.start());
+		if (first.kind == RouteQuery.Kind.SHORTEST_ROUTE && members.size() == 1){
+			//a lone query is cheaper with the point-to-point search, or the contraction hierarchy if one is in use
+			answers[members.get(0)] = evaluateSafely(first, pinned);
+			return;
+		}
+		QueryMetrics.Span span = QueryMetrics.start(pinned.getMetrics());
+		QueryMetrics.Operation operation = first.kind == RouteQuery.Kind.SHORTEST_ROUTE ? QueryMetrics.Operation.SHORTEST_ROUTE
+				: first.kind == RouteQuery.Kind.ROUTES_BY_DISTANCE ? QueryMetrics.Operation.ROUTES_BY_DISTANCE
+				: QueryMetrics.Operation.ROUTES_BY_STOPS;
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		boolean overflowed = false;
+		try {
+			if (first.kind == RouteQuery.Kind.SHORTEST_ROUTE){
+				ShortestPathTree tree = start < 0 ? null : DijkstraSearch.shortestPathTree(graph, start, workspace);
+				long settled = tree == null ? 0 : workspace.settled();
+				for (int index : members){
+					int end = graph.id(chunk[index].end());
+					int distance = (tree == null || end < 0) ? DijkstraSearch.UNREACHABLE : tree.distanceTo(end);
+					answers[index] = distance == DijkstraSearch.UNREACHABLE ? RouteQuery.NO_SUCH_ROUTE : Integer.toString(distance);
+					QueryMetrics.record(span, operation, settled, graph.version(), chunk[index].start(), chunk[index].end());
+					settled = 0;
+				}
+			}
+			else{
+				long[] counts = null;
+				try {
+					if (start >= 0)
+						counts = first.kind == RouteQuery.Kind.ROUTES_BY_DISTANCE ? RouteCounter.countByDistanceToAll(graph, start, first.constraint, workspace)
+								: RouteCounter.countByStopsToAll(graph, start, first.constraint, first.kind == RouteQuery.Kind.ROUTES_BY_EXACT_STOPS, workspace);
+				} catch (ArithmeticException e){
+					//some destination overflowed, not necessarily one asked for; each query is answered on its own below
+					overflowed = true;
+				}
+				if (!overflowed){
+					long settled = counts == null ? 0 : workspace.settled();
+					for (int index : members){
+						int end = graph.id(chunk[index].end());
+						long routes = (counts == null || end < 0) ? 0 : counts[end];
+						//same range as the Integer results of RouteMap, so batched and single answers agree
+						answers[index] = routes > Integer.MAX_VALUE ? OVERFLOW : Long.toString(routes);
+						QueryMetrics.record(span, operation, settled, graph.version(), chunk[index].start(), chunk[index].end());
+						settled = 0;
+					}
+				}
+			}
+		} catch (RuntimeException e){
+			for (int index : members)
+				answers[index] = error(e);
+		} finally {
+			workspace.release();
+		}
+		if (overflowed){
+			for (int index : members)
+				answers[index] = evaluateSafely(chunk[index], pinned);
+		}
+	}
+
+	private static String evaluateSafely(RouteQuery query, RouteMap pinned){
+		try {
+			return query.evaluate(pinned);
+		} catch (RuntimeException e){
+			return error(e);
+		}
+	}
+
+	private static String error(RuntimeException e){
+		return "ERROR " + e;
+	}
+}
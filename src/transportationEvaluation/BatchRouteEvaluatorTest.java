@@ -0,0 +1,118 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for batch query evaluation.
+ * @author Ryan C Smith
+ */
+public class BatchRouteEvaluatorTest {
+	RouteMap routes;
+
+	@Before
+	public void setUp() throws Exception {
+		routes = new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testParse() {
+		assertEquals(RouteQuery.routeDistance("A", "B", "C"), RouteQuery.parse("distance A-B-C"));
+		assertEquals(RouteQuery.shortestRoute("A", "C"), RouteQuery.parse("  shortest A   C "));
+		assertEquals(RouteQuery.routesByStops("C", "C", 3, false), RouteQuery.parse("stops C C 3"));
+		assertEquals(RouteQuery.routesByStops("A", "C", 4, true), RouteQuery.parse("exactstops A C 4"));
+		assertEquals(RouteQuery.routesByDistance("C", "C", 30), RouteQuery.parse("within C C 30"));
+		assertEquals("within C C 30", RouteQuery.parse("within C C 30").toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseRejectsUnknownQuery() {
+		RouteQuery.parse("fastest A C");
+	}
+
+	@Test
+	public void testResultsKeepInputOrder() {
+		String[] towns = {"A","B","C","D","E","F"};
+		List<RouteQuery> queries = new ArrayList<RouteQuery>();
+		for (String start : towns){
+			for (String end : towns){
+				queries.add(RouteQuery.shortestRoute(start, end));
+				queries.add(RouteQuery.routesByStops(start, end, 3, false));
+				queries.add(RouteQuery.routesByStops(start, end, 4, true));
+				queries.add(RouteQuery.routesByDistance(start, end, 25));
+				queries.add(RouteQuery.routeDistance(start, end, start));
+			}
+		}
+		ForkJoinPool pool = new ForkJoinPool(3);
+		List<String> results = new BatchRouteEvaluator(routes, pool, 7).evaluate(queries);
+		pool.shutdown();
+		assertEquals(queries.size(), results.size());
+		for (int i = 0; i < queries.size(); i++)
+			assertEquals(queries.get(i).toString(), queries.get(i).evaluate(routes), results.get(i));
+	}
+
+	@Test
+	public void testGroupedCountsMatchSingleQueriesOnOverflow() {
+		//two parallel roads each way give 2^k routes of k stops from A back to A
+		RouteMap doubled = new RouteMap(Trains.createAdjacencyList("(A,B,1) (A,B,1) (B,A,1) (B,A,1) (A,C,1)"));
+		List<RouteQuery> queries = new ArrayList<RouteQuery>();
+		for (int stops : new int[] {40, 64}){
+			for (String end : new String[] {"A","B","C"})
+				queries.add(RouteQuery.routesByStops("A", end, stops, true));
+		}
+		queries.add(RouteQuery.routesByStops("A", "C", 1, false));
+		queries.add(RouteQuery.routesByStops("A", "A", 2, false));
+		List<String> results = new BatchRouteEvaluator(doubled, ForkJoinPool.commonPool(), 100).evaluate(queries);
+		for (int i = 0; i < queries.size(); i++){
+			String single;
+			try {
+				single = queries.get(i).evaluate(doubled);
+			} catch (ArithmeticException e){
+				single = "ERROR " + e;
+			}
+			assertEquals(queries.get(i).toString(), single, results.get(i));
+		}
+		assertTrue(results.get(0).startsWith("ERROR"));
+		assertEquals("1", results.get(6));
+	}
+
+	@Test
+	public void testEvaluateLines() throws Exception {
+		StringWriter out = new StringWriter();
+		new BatchRouteEvaluator(routes).evaluate(new BufferedReader(new StringReader(
+				"distance A-E-D\nshortest B B\n\nbogus\nexactstops A C 4\n")), out);
+		assertEquals("NO SUCH ROUTE\n9\nERROR Unknown query: bogus\n3\n", out.toString());
+	}
+
+	@Test
+	public void testAnswersEachLineWhenNoMoreInputIsReady() throws Exception {
+		final int[] flushes = new int[1];
+		StringWriter out = new StringWriter(){
+			@Override
+			public void flush(){
+				flushes[0]++;
+			}
+		};
+		String lines = "shortest A C\nshortest B B\nstops C C 3\n";
+		new BatchRouteEvaluator(routes).evaluate(new BufferedReader(new StringReader(lines)), out);
+		assertEquals(1, flushes[0]);
+		//a reader with nothing buffered, like a pipe from a process writing one query at a time
+		new BatchRouteEvaluator(routes).evaluate(new BufferedReader(new StringReader(lines), 1){
+			@Override
+			public boolean ready(){
+				return false;
+			}
+		}, out);
+		assertEquals(4, flushes[0]);
+		assertEquals("9\n9\n2\n9\n9\n2\n", out.toString());
+	}
+}
@@ -0,0 +1,83 @@
+package transportationEvaluation;
+
+import java.util.Arrays;
+
+/**
+ * Bidirectional Dijkstra search for point-to-point queries without preprocessing.
+ * One search runs forward from the start over CompactGraph's roads while a second runs backward from
+ * the destination over its reverse adjacency index, always advancing the side with the smaller frontier
+ * key. Every road relaxed towards a town the other side has reached closes a candidate route, and the
+ * search stops once the two frontier keys together reach the best candidate. On road-like networks the
+ * two balls together cover far fewer towns than one ball reaching the destination.
+ * @author Ryan C Smith
+ */
+public final class BidirectionalSearch {
+
+	private BidirectionalSearch(){
+	}
+
+	/**
+	 * Calculates the shortest route between two towns. When source == target the shortest cycle through
+	 * the town is returned, as with DijkstraSearch: the forward search is seeded with the roads leaving the
+	 * source, so a forward distance is never the empty route.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param source - ID of the start town.
+	 * @param target - ID of the destination town.
+	 * @return the shortest distance, or DijkstraSearch.UNREACHABLE, and the number of towns settled by both sides.
+	 */
+	public static SearchResult search(CompactGraph graph, int source, int target){
+		CompactGraph reverse = graph.reverse();
+		int townCount = graph.townCount();
+		int[] forward = new int[townCount];
+		int[] backward = new int[townCount];
+		Arrays.fill(forward, DijkstraSearch.UNREACHABLE);
+		Arrays.fill(backward, DijkstraSearch.UNREACHABLE);
+		IndexedMinHeap forwardHeap = new IndexedMinHeap(townCount);
+		IndexedMinHeap backwardHeap = new IndexedMinHeap(townCount);
+		backward[target] = 0;
+		backwardHeap.insertOrDecrease(target, 0);
+		long best = DijkstraSearch.UNREACHABLE;
+		if (source == target)
+			best = relax(graph, source, 0, forward, forwardHeap, backward, best);
+		else{
+			forward[source] = 0;
+			forwardHeap.insertOrDecrease(source, 0);
+		}
+		int settled = 0;
+		while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()
+				&& (long) forwardHeap.minKey() + backwardHeap.minKey() < best){
+			settled++;
+			if (forwardHeap.minKey() <= backwardHeap.minKey()){
+				int town = forwardHeap.poll();
+				best = relax(graph, town, forward[town], forward, forwardHeap, backward, best);
+			}
+			else{
+				int town = backwardHeap.poll();
+				best = relax(reverse, town, backward[town], backward, backwardHeap, forward, best);
+			}
+		}
+		return new SearchResult(best >= DijkstraSearch.UNREACHABLE ? DijkstraSearch.UNREACHABLE : (int) best, settled);
+	}
+
+	/**
+	 * Relaxes every road leaving a settled town on one side of the search, checking each road against the
+	 * distances reached by the other side.
+	 * @return the shortest complete route found so far.
+	 */
+	private static long relax(CompactGraph graph, int town, int townDistance, int[] distance, IndexedMinHeap heap,
+			int[] other, long best){
+		int[] targets = graph.targets;
+		int[] distances = graph.distances;
+		for (int edge = graph.offsets[town], end = graph.offsets[town + 1]; edge < end; edge++){
+			long candidate = (long) townDistance + distances[edge];
+			int next = targets[edge];
+			if (candidate < distance[next]){
+				distance[next] = (int) candidate;
+				heap.insertOrDecrease(next, (int) candidate);
+			}
+			if (other[next] != DijkstraSearch.UNREACHABLE && candidate + other[next] < best)
+				best = candidate + other[next];
+		}
+		return best;
+	}
+}
@@ -0,0 +1,90 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the reverse adjacency index and bidirectional search.
+ * @author Ryan C Smith
+ */
+public class BidirectionalSearchTest {
+	CompactGraph graph;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testReverseTransposesRoads() {
+		CompactGraph reverse = graph.reverse();
+		assertSame(reverse, graph.reverse());
+		assertSame(graph, reverse.reverse());
+		assertEquals(graph.townCount(), reverse.townCount());
+		assertEquals(graph.edgeCount(), reverse.edgeCount());
+		assertEquals(graph.version(), reverse.version());
+		assertEquals(graph.id("B"), reverse.id("B"));
+		assertEquals(5, reverse.edgeDistance(graph.id("B"), graph.id("A")));
+		assertEquals(3, reverse.edgeDistance(graph.id("B"), graph.id("E")));
+		assertEquals(CompactGraph.NO_EDGE, reverse.edgeDistance(graph.id("A"), graph.id("B")));
+	}
+
+	@Test
+	public void testMatchesDijkstra() {
+		assertMatchesDijkstra(graph);
+		assertEquals(9, BidirectionalSearch.search(graph, graph.id("B"), graph.id("B")).distance());
+	}
+
+	@Test
+	public void testMatchesDijkstraOnRandomGraphs() {
+		Random random = new Random(11);
+		for (int trial = 0; trial < 300; trial++)
+			assertMatchesDijkstra(randomGraph(random, 1 + random.nextInt(30), trial % 2 == 0 ? 3 : 40));
+	}
+
+	@Test
+	public void testUnreachable() {
+		CompactGraph split = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,1) (C,D,1)"));
+		SearchResult result = BidirectionalSearch.search(split, split.id("A"), split.id("D"));
+		assertFalse(result.found());
+		assertFalse(BidirectionalSearch.search(split, split.id("A"), split.id("A")).found());
+	}
+
+	@Test
+	public void testRouteMapStrategies() {
+		RouteMap routes = new RouteMap(graph);
+		for (SearchStrategy strategy : new SearchStrategy[] {SearchStrategy.DIJKSTRA, SearchStrategy.BIDIRECTIONAL}){
+			assertEquals(new Integer(9), routes.calculateShortestRoute("A", "C", strategy));
+			assertEquals(new Integer(9), routes.calculateShortestRoute("B", "B", strategy));
+			assertNull(routes.calculateShortestRoute("A", "A", strategy));
+			assertNull(routes.calculateShortestRoute("A", "Z", strategy));
+		}
+		routes.useContractionHierarchy(ContractionHierarchy.build(graph));
+		assertEquals(new Integer(9), routes.calculateShortestRoute("A", "C", SearchStrategy.CONTRACTION_HIERARCHY));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testHierarchyStrategyNeedsHierarchy() {
+		new RouteMap(graph).calculateShortestRoute("A", "C", SearchStrategy.CONTRACTION_HIERARCHY);
+	}
+
+	static CompactGraph randomGraph(Random random, int towns, int maxDistance){
+		CompactGraph.Builder builder = new CompactGraph.Builder();
+		for (int town = 0; town < towns; town++)
+			builder.intern("T" + town);
+		for (int road = random.nextInt(4 * towns); road > 0; road--)
+			builder.addEdge(random.nextInt(towns), random.nextInt(towns), random.nextInt(maxDistance));
+		return builder.build();
+	}
+
+	private static void assertMatchesDijkstra(CompactGraph graph){
+		for (int start = 0; start < graph.townCount(); start++){
+			for (int end = 0; end < graph.townCount(); end++)
+				assertEquals(DijkstraSearch.shortestDistance(graph, start, end), BidirectionalSearch.search(graph, start, end).distance());
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package transportationEvaluation;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Frozen compressed sparse row (CSR) representation of a transportation system.
+ * Every town is interned once to an int ID in the range [0, townCount). The roads leaving town u
+ * are stored in targets/distances between offsets[u] (inclusive) and offsets[u + 1] (exclusive),
+ * sorted by target ID so that a road between two towns can be found by binary search.
+ * Instances are immutable once built and can be shared freely between threads. Changes to a network
+ * produce a new CompactGraph with a higher version number (see GraphUpdate); town IDs are kept across versions.
+ * @author Ryan C Smith
+ */
+public final class CompactGraph {
+	/**
+	 * Returned by edgeDistance when no road exists between two towns.
+	 */
+	public static final int NO_EDGE = -1;
+
+	final String[] names;
+	final HashMap<String, Integer> ids;
+	final int[] offsets;
+	final int[] targets;
+	final int[] distances;
+	final long version;
+
+	/**
+	 * Transposed graph, built on first use by reverse().
+	 */
+	private volatile CompactGraph reverse;
+	/**
+	 * Expansion order of route counting by distance, built on first use by zeroRoadOrder().
+	 */
+	private volatile ZeroRoadOrder zeroRoadOrder;
+
+	CompactGraph(String[] names, HashMap<String, Integer> ids, int[] offsets, int[] targets, int[] distances){
+		this(names, ids, offsets, targets, distances, 0);
+	}
+
+	CompactGraph(String[] names, HashMap<String, Integer> ids, int[] offsets, int[] targets, int[] distances, long version){
+		this.names = names;
+		this.ids = ids;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.distances = distances;
+		this.version = version;
+	}
+
+	/**
+	 * Builds a CompactGraph from the adjacency list produced by Trains.createAdjacencyList.
+	 * Towns that only appear as destinations are interned as well.
+	 * @param adList - HashMap containing an adjacency list representation of a graph.
+	 * @return CompactGraph holding the same towns and roads.
+	 */
+	public static CompactGraph fromAdjacencyList(Map<String, ArrayList<Node>> adList){
+		Builder builder = new Builder();
+		for (Map.Entry<String, ArrayList<Node>> entry : adList.entrySet()){
+			int from = builder.intern(entry.getKey());
+			for (Node node : entry.getValue())
+				builder.addEdge(from, builder.intern(node.town), node.distance);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return version number of the graph, 0 for a freshly loaded graph and one higher after every applied update.
+	 */
+	public long version(){
+		return version;
+	}
+
+	/**
+	 * @return number of towns in the graph.
+	 */
+	public int townCount(){
+		return names.length;
+	}
+
+	/**
+	 * @return number of roads in the graph.
+	 */
+	public int edgeCount(){
+		return targets.length;
+	}
+
+	/**
+	 * Looks up the ID assigned to a town.
+	 * @param town - town name in String form.
+	 * @return ID of the town, or -1 if the town is not part of the graph.
+	 */
+	public int id(String town){
+		Integer id = ids.get(town);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id - town ID.
+	 * @return name of the town with the given ID.
+	 */
+	public String name(int id){
+		return names[id];
+	}
+
+	/**
+	 * @param towns - town IDs, for example a route from DijkstraSearch.shortestPath.
+	 * @return unmodifiable view of the towns' names. Names are looked up as the list is read, not copied.
+	 */
+	public List<String> names(final int[] towns){
+		return new AbstractList<String>(){
+			@Override
+			public String get(int index){
+				return names[towns[index]];
+			}
+
+			@Override
+			public int size(){
+				return towns.length;
+			}
+		};
+	}
+
+	/**
+	 * @param town - town ID.
+	 * @return index of the first road leaving the town.
+	 */
+	public int firstEdge(int town){
+		return offsets[town];
+	}
+
+	/**
+	 * @param town - town ID.
+	 * @return index one past the last road leaving the town.
+	 */
+	public int endEdge(int town){
+		return offsets[town + 1];
+	}
+
+	/**
+	 * @param edge - road index.
+	 * @return ID of the town the road leads to.
+	 */
+	public int target(int edge){
+		return targets[edge];
+	}
+
+	/**
+	 * @param edge - road index.
+	 * @return length of the road.
+	 */
+	public int distance(int edge){
+		return distances[edge];
+	}
+
+	/**
+	 * Finds the road between two towns using binary search over the sorted out-edges of from.
+	 * When several roads connect the same towns the first one read from the input is used.
+	 * @param from - ID of the origin town.
+	 * @param to - ID of the destination town.
+	 * @return index of the road, or -1 if no road exists.
+	 */
+	public int findEdge(int from, int to){
+		int low = offsets[from];
+		int high = offsets[from + 1] - 1;
+		int found = -1;
+		while (low <= high){
+			int mid = (low + high) >>> 1;
+			int midTarget = targets[mid];
+			if (midTarget < to)
+				low = mid + 1;
+			else{
+				if (midTarget == to)
+					found = mid;
+				high = mid - 1;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Calculates the length of the road between two towns.
+	 * @param from - ID of the origin town.
+	 * @param to - ID of the destination town.
+	 * @return length of the road, or NO_EDGE if no road exists.
+	 */
+	public int edgeDistance(int from, int to){
+		int edge = findEdge(from, to);
+		return edge < 0 ? NO_EDGE : distances[edge];
+	}
+
+	/**
+	 * Returns the reverse adjacency index: a graph with the same towns and IDs in which every road points
+	 * the other way, so the roads entering a town can be scanned like the roads leaving it. Built in
+	 * O(towns + roads) on first use and kept for the life of this graph; rows are sorted by town ID.
+	 * @return the transposed graph, whose own reverse() is this graph.
+	 */
+	public CompactGraph reverse(){
+		CompactGraph reversed = reverse;
+		if (reversed == null){
+			int townCount = names.length;
+			int[] reverseOffsets = new int[townCount + 1];
+			for (int target : targets)
+				reverseOffsets[target + 1]++;
+			for (int town = 0; town < townCount; town++)
+				reverseOffsets[town + 1] += reverseOffsets[town];
+			int[] next = Arrays.copyOf(reverseOffsets, townCount);
+			int[] sources = new int[targets.length];
+			int[] reverseDistances = new int[targets.length];
+			for (int town = 0; town < townCount; town++){
+				for (int edge = offsets[town]; edge < offsets[town + 1]; edge++){
+					int slot = next[targets[edge]]++;
+					sources[slot] = town;
+					reverseDistances[slot] = distances[edge];
+				}
+			}
+			reversed = new CompactGraph(names, ids, reverseOffsets, sources, reverseDistances, version);
+			reversed.reverse = this;
+			reverse = reversed;
+		}
+		return reversed;
+	}
+
+	/**
+	 * @return order of the towns along zero-length roads, built in O(towns + roads) on first use and kept for the life of this graph.
+	 */
+	ZeroRoadOrder zeroRoadOrder(){
+		ZeroRoadOrder order = zeroRoadOrder;
+		if (order == null){
+			order = ZeroRoadOrder.of(this);
+			zeroRoadOrder = order;
+		}
+		return order;
+	}
+
+	/**
+	 * Interning graph builder. Towns are assigned IDs in the order they are first seen and roads are
+	 * collected in growable primitive arrays until build() freezes them into CSR form.
+	 */
+	public static final class Builder {
+		private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+		private String[] names = new String[16];
+		private int townCount;
+		private int[] from = new int[16];
+		private int[] to = new int[16];
+		private int[] dist = new int[16];
+		private int edgeCount;
+
+		/**
+		 * Returns the ID for a town, assigning a new one if the town has not been seen before.
+		 * @param town - town name in String form.
+		 * @return ID of the town.
+		 */
+		public int intern(String town){
+			Integer id = ids.get(town);
+			if (id != null)
+				return id;
+			if (townCount == names.length)
+				names = Arrays.copyOf(names, townCount * 2);
+			names[townCount] = town;
+			ids.put(town, townCount);
+			return townCount++;
+		}
+
+		/**
+		 * Looks up the ID of a town without interning it.
+		 * @param town - town name in String form.
+		 * @return ID of the town, or -1 if it has not been interned.
+		 */
+		int id(String town){
+			Integer id = ids.get(town);
+			return id == null ? -1 : id;
+		}
+
+		/**
+		 * Adds a road between two interned towns.
+		 * @param fromId - ID of the origin town.
+		 * @param toId - ID of the destination town.
+		 * @param distance - length of the road.
+		 */
+		public void addEdge(int fromId, int toId, int distance){
+			if (edgeCount == from.length){
+				int capacity = edgeCount * 2;
+				from = Arrays.copyOf(from, capacity);
+				to = Arrays.copyOf(to, capacity);
+				dist = Arrays.copyOf(dist, capacity);
+			}
+			from[edgeCount] = fromId;
+			to[edgeCount] = toId;
+			dist[edgeCount] = distance;
+			edgeCount++;
+		}
+
+		/**
+		 * @return number of towns interned so far.
+		 */
+		public int townCount(){
+			return townCount;
+		}
+
+		/**
+		 * Freezes the collected towns and roads into a CompactGraph.
+		 * @return the CSR graph.
+		 */
+		public CompactGraph build(){
+			return build(0);
+		}
+
+		/**
+		 * Freezes the collected towns and roads into a CompactGraph with the given version number.
+		 */
+		CompactGraph build(long version){
+			//two stable counting-sort passes (by target, then by origin) leave every row sorted by target
+			int[] byTarget = countingOrder(to, edgeCount, townCount, null);
+			int[] order = countingOrder(from, edgeCount, townCount, byTarget);
+			int[] offsets = new int[townCount + 1];
+			for (int i = 0; i < edgeCount; i++)
+				offsets[from[i] + 1]++;
+			for (int i = 0; i < townCount; i++)
+				offsets[i + 1] += offsets[i];
+			int[] targets = new int[edgeCount];
+			int[] distances = new int[edgeCount];
+			for (int i = 0; i < edgeCount; i++){
+				targets[i] = to[order[i]];
+				distances[i] = dist[order[i]];
+			}
+			return new CompactGraph(Arrays.copyOf(names, townCount), new HashMap<String, Integer>(ids),
+					offsets, targets, distances, version);
+		}
+
+		/**
+		 * Stable counting sort of edge indices by key.
+		 * @param keys - key of every edge.
+		 * @param count - number of edges.
+		 * @param range - keys lie in [0, range).
+		 * @param input - edge indices in their current order, or null for input order.
+		 * @return edge indices ordered by key, ties kept in their current order.
+		 */
+		private static int[] countingOrder(int[] keys, int count, int range, int[] input){
+			int[] start = new int[range + 1];
+			for (int i = 0; i < count; i++)
+				start[keys[i] + 1]++;
+			for (int i = 0; i < range; i++)
+				start[i + 1] += start[i];
+			int[] output = new int[count];
+			for (int i = 0; i < count; i++){
+				int edge = input == null ? i : input[i];
+				output[start[keys[edge]]++] = edge;
+			}
+			return output;
+		}
+	}
+}
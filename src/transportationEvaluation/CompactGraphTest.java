@@ -0,0 +1,54 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the CSR graph representation.
+ * @author Ryan C Smith
+ */
+public class CompactGraphTest {
+	CompactGraph graph;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testInterning() {
+		assertEquals(5, graph.townCount());
+		assertEquals(9, graph.edgeCount());
+		for (String town : new String[] {"A","B","C","D","E"}){
+			assertTrue(graph.id(town) >= 0);
+			assertEquals(town, graph.name(graph.id(town)));
+		}
+		assertEquals(-1, graph.id("F"));
+	}
+
+	@Test
+	public void testEdgeDistance() {
+		assertEquals(5, graph.edgeDistance(graph.id("A"), graph.id("B")));
+		assertEquals(7, graph.edgeDistance(graph.id("A"), graph.id("E")));
+		assertEquals(2, graph.edgeDistance(graph.id("C"), graph.id("E")));
+		assertEquals(CompactGraph.NO_EDGE, graph.edgeDistance(graph.id("E"), graph.id("D")));
+		assertEquals(3, graph.endEdge(graph.id("A")) - graph.firstEdge(graph.id("A")));
+	}
+
+	@Test
+	public void testDuplicateRoadsKeepInputOrder() {
+		CompactGraph.Builder builder = new CompactGraph.Builder();
+		int a = builder.intern("A");
+		int b = builder.intern("B");
+		int c = builder.intern("C");
+		builder.addEdge(a, c, 1);
+		builder.addEdge(a, b, 4);
+		builder.addEdge(a, b, 2);
+		CompactGraph built = builder.build();
+		assertEquals(4, built.edgeDistance(a, b));
+		assertEquals(1, built.edgeDistance(a, c));
+		assertEquals(CompactGraph.NO_EDGE, built.edgeDistance(b, a));
+	}
+}
@@ -0,0 +1,791 @@
+package transportationEvaluation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+/**
+ * Contraction hierarchy over a CompactGraph: a preprocessing index that answers shortest route queries
+ * by settling a few hundred towns instead of most of the network.
+ * <p>
+ * Towns are contracted one level at a time. Contracting a town removes it and adds a shortcut road
+ * between each pair of its remaining neighbours whose shortest route ran through it, unless a bounded
+ * witness search finds another route that is no longer. Each round contracts an independent set of
+ * towns (every chosen town ranks below all of its neighbours by shortcuts added per road removed, plus
+ * depth), so their shortcuts are computed in parallel; witness searches skip every town of the
+ * round. A query is a bidirectional Dijkstra search that only climbs to higher-ranked towns, with
+ * stall-on-demand pruning, and returns exactly the distances of DijkstraSearch.shortestDistance,
+ * including the shortest cycle when start and end are the same town.
+ * <p>
+ * A hierarchy is tied to the graph it was built from and can be saved next to the graph file; the saved
+ * file records a fingerprint of the graph so that a stale index is never loaded.
+ * Roads must not be negative.
+ * @author Ryan C Smith
+ */
+public final class ContractionHierarchy {
+	static final int MAGIC = 0x54524348; //"TRCH"
+	static final int FORMAT_VERSION = 1;
+	static final int HEADER_BYTES = 28;
+
+	/**
+	 * File name suffix used for a hierarchy saved next to its graph file.
+	 */
+	public static final String FILE_SUFFIX = ".ch";
+
+	/**
+	 * Towns a witness search may settle before giving up and keeping the shortcut.
+	 */
+	static final int WITNESS_SETTLE_LIMIT = 500;
+
+	/**
+	 * Towns a witness search may settle when only estimating how many shortcuts a town would need.
+	 */
+	static final int ESTIMATE_SETTLE_LIMIT = 25;
+
+	private final CompactGraph graph;
+	private final int[] rank;
+	private final int[] loop;
+	private final int[] upOffsets;
+	private final int[] upTargets;
+	private final int[] upDistances;
+	private final int[] downOffsets;
+	private final int[] downSources;
+	private final int[] downDistances;
+	private final ThreadLocal<QueryState> states;
+
+	/**
+	 * The up arrays hold, for each town, the roads and shortcuts leading to higher-ranked towns; the down
+	 * arrays hold the roads and shortcuts arriving from higher-ranked towns. Both are in CompactGraph's
+	 * offsets/towns/distances layout.
+	 * @param rank - contraction order of every town.
+	 * @param loop - shortest cycle through each town using only lower-ranked towns, or UNREACHABLE.
+	 */
+	ContractionHierarchy(CompactGraph graph, int[] rank, int[] loop, int[] upOffsets, int[] upTargets, int[] upDistances,
+			int[] downOffsets, int[] downSources, int[] downDistances){
+		this.graph = graph;
+		this.rank = rank;
+		this.loop = loop;
+		this.upOffsets = upOffsets;
+		this.upTargets = upTargets;
+		this.upDistances = upDistances;
+		this.downOffsets = downOffsets;
+		this.downSources = downSources;
+		this.downDistances = downDistances;
+		final int townCount = graph.townCount();
+		this.states = ThreadLocal.withInitial(() -> new QueryState(townCount));
+	}
+
+	/**
+	 * Builds a hierarchy, contracting each round in parallel on the common ForkJoinPool.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @return hierarchy for the graph.
+	 * @throws IllegalStateException - if the graph has a road with a negative distance.
+	 */
+	public static ContractionHierarchy build(CompactGraph graph){
+		return build(graph, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Builds a hierarchy.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param pool - pool each contraction round runs on.
+	 * @return hierarchy for the graph.
+	 * @throws IllegalStateException - if the graph has a road with a negative distance.
+	 */
+	public static ContractionHierarchy build(CompactGraph graph, ForkJoinPool pool){
+		return new Contraction(graph).run(pool);
+	}
+
+	/**
+	 * @param graphFile - path of a graph file or graph snapshot.
+	 * @return path a hierarchy for that graph is saved at: the same path with FILE_SUFFIX appended.
+	 */
+	public static Path fileFor(Path graphFile){
+		return graphFile.resolveSibling(graphFile.getFileName() + FILE_SUFFIX);
+	}
+
+	/**
+	 * Loads the hierarchy saved next to a graph file, or builds one and saves it there if there is none
+	 * or the saved one was built for a different graph.
+	 * @param graph - graph loaded from graphFile.
+	 * @param graphFile - path the graph was loaded from.
+	 * @return hierarchy for the graph.
+	 * @throws IOException - if a new hierarchy cannot be written.
+	 */
+	public static ContractionHierarchy loadOrBuild(CompactGraph graph, Path graphFile) throws IOException {
+		Path file = fileFor(graphFile);
+		if (Files.isRegularFile(file)){
+			try {
+				return read(file, graph);
+			} catch (IOException e){
+				//stale or damaged index; rebuild it below
+			}
+		}
+		ContractionHierarchy hierarchy = build(graph);
+		hierarchy.write(file);
+		return hierarchy;
+	}
+
+	/**
+	 * @return the graph the hierarchy was built from.
+	 */
+	public CompactGraph graph(){
+		return graph;
+	}
+
+	/**
+	 * @param town - town ID.
+	 * @return position of the town in the contraction order; higher-ranked towns were contracted later.
+	 */
+	public int rank(int town){
+		return rank[town];
+	}
+
+	/**
+	 * @return number of shortcut roads the hierarchy added to the graph.
+	 */
+	public int shortcutCount(){
+		int roads = 0;
+		for (int town = 0; town < graph.townCount(); town++){
+			for (int edge = graph.offsets[town]; edge < graph.offsets[town + 1]; edge++){
+				if (graph.targets[edge] != town && (edge == graph.offsets[town] || graph.targets[edge - 1] != graph.targets[edge]))
+					roads++;
+			}
+		}
+		return upTargets.length + downSources.length - roads;
+	}
+
+	/**
+	 * Calculates the shortest route between two towns. When source == target the shortest cycle through the town is returned.
+	 * @param source - ID of the start town.
+	 * @param target - ID of the destination town.
+	 * @return total distance of the shortest route, or DijkstraSearch.UNREACHABLE if no route exists.
+	 */
+	public int shortestDistance(int source, int target){
+		return search(source, target).distance();
+	}
+
+	/**
+	 * Calculates the shortest route between two towns and reports how many towns the search settled.
+	 * When source == target the shortest cycle through the town is returned.
+	 * @param source - ID of the start town.
+	 * @param target - ID of the destination town.
+	 * @return the shortest distance, or DijkstraSearch.UNREACHABLE, and the number of towns settled.
+	 */
+	public SearchResult search(int source, int target){
+		QueryState state = states.get();
+		state.begin();
+		IndexedMinHeap forwardHeap = state.forwardHeap;
+		IndexedMinHeap backwardHeap = state.backwardHeap;
+		boolean cycle = source == target;
+		long best = cycle ? loop[source] : DijkstraSearch.UNREACHABLE;
+		state.setForward(source, 0);
+		forwardHeap.insertOrDecrease(source, 0);
+		state.setBackward(target, 0);
+		backwardHeap.insertOrDecrease(target, 0);
+		int settled = 0;
+		while (true){
+			boolean forwardOpen = !forwardHeap.isEmpty() && forwardHeap.minKey() < best;
+			boolean backwardOpen = !backwardHeap.isEmpty() && backwardHeap.minKey() < best;
+			if (!forwardOpen && !backwardOpen)
+				break;
+			settled++;
+			if (forwardOpen && (!backwardOpen || forwardHeap.minKey() <= backwardHeap.minKey())){
+				int town = forwardHeap.poll();
+				int distance = state.forward(town);
+				int other = state.backward(town);
+				if (other != DijkstraSearch.UNREACHABLE && !(cycle && town == source))
+					best = Math.min(best, (long) distance + other);
+				//stall: a higher-ranked town already reached offers a shorter route here, so this one is not on a shortest route
+				if (stalled(town, distance, downOffsets, downSources, downDistances, state.forwardStamp, state.forward, state.stamp))
+					continue;
+				for (int edge = upOffsets[town], end = upOffsets[town + 1]; edge < end; edge++){
+					long candidate = (long) distance + upDistances[edge];
+					int next = upTargets[edge];
+					if (candidate < state.forward(next)){
+						state.setForward(next, (int) candidate);
+						forwardHeap.insertOrDecrease(next, (int) candidate);
+					}
+				}
+			}
+			else{
+				int town = backwardHeap.poll();
+				int distance = state.backward(town);
+				int other = state.forward(town);
+				if (other != DijkstraSearch.UNREACHABLE && !(cycle && town == source))
+					best = Math.min(best, (long) distance + other);
+				if (stalled(town, distance, upOffsets, upTargets, upDistances, state.backwardStamp, state.backward, state.stamp))
+					continue;
+				for (int edge = downOffsets[town], end = downOffsets[town + 1]; edge < end; edge++){
+					long candidate = (long) distance + downDistances[edge];
+					int next = downSources[edge];
+					if (candidate < state.backward(next)){
+						state.setBackward(next, (int) candidate);
+						backwardHeap.insertOrDecrease(next, (int) candidate);
+					}
+				}
+			}
+		}
+		forwardHeap.clear();
+		backwardHeap.clear();
+		return new SearchResult(best >= DijkstraSearch.UNREACHABLE ? DijkstraSearch.UNREACHABLE : (int) best, settled);
+	}
+
+	/**
+	 * Checks whether a town was reached more cheaply through one of its higher-ranked neighbours, scanning
+	 * the roads that run the opposite way to the search direction.
+	 */
+	private static boolean stalled(int town, int distance, int[] offsets, int[] neighbours, int[] distances,
+			int[] stamps, int[] reached, int stamp){
+		for (int edge = offsets[town], end = offsets[town + 1]; edge < end; edge++){
+			int neighbour = neighbours[edge];
+			if (stamps[neighbour] == stamp && (long) reached[neighbour] + distances[edge] < distance)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the hierarchy. Layout (big-endian): a header of magic, format version, town count, upward and
+	 * downward road counts and the graph fingerprint; the rank and loop arrays; the upward and downward
+	 * roads as offsets, towns and distances; and a trailing CRC32 of everything before it.
+	 * @param file - destination path. Existing files are replaced.
+	 * @throws IOException - if the file cannot be written.
+	 */
+	public void write(Path file) throws IOException {
+		CRC32 checksum = new CRC32();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)){
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+			buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(rank.length).putInt(upTargets.length).putInt(downSources.length)
+					.putLong(fingerprint(graph));
+			for (int[] section : new int[][] {rank, loop, upOffsets, upTargets, upDistances, downOffsets, downSources, downDistances})
+				GraphSnapshot.writeInts(channel, buffer, checksum, section);
+			GraphSnapshot.flush(channel, buffer, checksum);
+			buffer.putLong(checksum.getValue());
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Loads a saved hierarchy and verifies its checksum.
+	 * @param file - hierarchy path.
+	 * @param graph - graph the hierarchy was built from.
+	 * @return the hierarchy held in the file, bound to graph.
+	 * @throws IOException - if the file cannot be read, is not a hierarchy, fails its checksum or was built for a different graph.
+	 */
+	public static ContractionHierarchy read(Path file, CompactGraph graph) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			long size = channel.size();
+			if (size < HEADER_BYTES + 8)
+				throw new IOException("File is too short to be a contraction hierarchy: " + file);
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			if (header.getInt() != MAGIC)
+				throw new IOException("Not a contraction hierarchy: " + file);
+			int version = header.getInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException("Unsupported contraction hierarchy version " + version + ": " + file);
+			int townCount = header.getInt();
+			int upCount = header.getInt();
+			int downCount = header.getInt();
+			long fingerprint = header.getLong();
+			long trailerStart = HEADER_BYTES + 4L * (4L * townCount + 2 + 2L * upCount + 2L * downCount);
+			if (townCount < 0 || upCount < 0 || downCount < 0 || trailerStart + 8 != size)
+				throw new IOException("Contraction hierarchy is truncated or corrupt: " + file);
+			if (townCount != graph.townCount() || fingerprint != fingerprint(graph))
+				throw new IOException("Contraction hierarchy was built for a different graph: " + file);
+			if (!GraphSnapshot.checksumMatches(channel, trailerStart))
+				throw new IOException("Contraction hierarchy checksum mismatch: " + file);
+			long position = HEADER_BYTES;
+			int[] rank = GraphSnapshot.readInts(channel, position, townCount);
+			int[] loop = GraphSnapshot.readInts(channel, position += 4L * townCount, townCount);
+			int[] upOffsets = GraphSnapshot.readInts(channel, position += 4L * townCount, townCount + 1);
+			int[] upTargets = GraphSnapshot.readInts(channel, position += 4L * (townCount + 1), upCount);
+			int[] upDistances = GraphSnapshot.readInts(channel, position += 4L * upCount, upCount);
+			int[] downOffsets = GraphSnapshot.readInts(channel, position += 4L * upCount, townCount + 1);
+			int[] downSources = GraphSnapshot.readInts(channel, position += 4L * (townCount + 1), downCount);
+			int[] downDistances = GraphSnapshot.readInts(channel, position += 4L * downCount, downCount);
+			return new ContractionHierarchy(graph, rank, loop, upOffsets, upTargets, upDistances, downOffsets, downSources, downDistances);
+		}
+	}
+
+	/**
+	 * @return CRC32 over the town count and the offsets, targets and distances arrays of a graph.
+	 */
+	static long fingerprint(CompactGraph graph){
+		CRC32 checksum = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		buffer.putInt(graph.townCount());
+		for (int[] section : new int[][] {graph.offsets, graph.targets, graph.distances}){
+			for (int value : section){
+				if (!buffer.hasRemaining()){
+					buffer.flip();
+					checksum.update(buffer);
+					buffer.clear();
+				}
+				buffer.putInt(value);
+			}
+		}
+		buffer.flip();
+		checksum.update(buffer);
+		return checksum.getValue();
+	}
+
+	/**
+	 * Per-thread query scratch space. Distances are valid only where the stamp matches the current query,
+	 * so starting a query costs O(1) instead of refilling arrays the size of the network.
+	 */
+	private static final class QueryState {
+		final int[] forward;
+		final int[] backward;
+		final int[] forwardStamp;
+		final int[] backwardStamp;
+		final IndexedMinHeap forwardHeap;
+		final IndexedMinHeap backwardHeap;
+		int stamp;
+
+		QueryState(int townCount){
+			forward = new int[townCount];
+			backward = new int[townCount];
+			forwardStamp = new int[townCount];
+			backwardStamp = new int[townCount];
+			forwardHeap = new IndexedMinHeap(townCount);
+			backwardHeap = new IndexedMinHeap(townCount);
+		}
+
+		void begin(){
+			if (++stamp == 0){
+				Arrays.fill(forwardStamp, 0);
+				Arrays.fill(backwardStamp, 0);
+				stamp = 1;
+			}
+		}
+
+		int forward(int town){
+			return forwardStamp[town] == stamp ? forward[town] : DijkstraSearch.UNREACHABLE;
+		}
+
+		int backward(int town){
+			return backwardStamp[town] == stamp ? backward[town] : DijkstraSearch.UNREACHABLE;
+		}
+
+		void setForward(int town, int distance){
+			forward[town] = distance;
+			forwardStamp[town] = stamp;
+		}
+
+		void setBackward(int town, int distance){
+			backward[town] = distance;
+			backwardStamp[town] = stamp;
+		}
+	}
+
+	/**
+	 * Mutable overlay graph and bookkeeping used while the hierarchy is built.
+	 * Each town keeps its remaining roads in both directions as parallel target/distance arrays; parallel
+	 * roads are merged to the shortest and self-loops are kept in loop[] instead.
+	 */
+	private static final class Contraction {
+		final CompactGraph graph;
+		final int townCount;
+		final int[][] outTargets;
+		final int[][] outDistances;
+		final int[] outSize;
+		final int[][] inSources;
+		final int[][] inDistances;
+		final int[] inSize;
+		final int[] rank;
+		final int[] loop;
+		final int[] depth;
+		final int[] priority;
+		final boolean[] dirty;
+		final boolean[] inRound;
+		final int[][] upTargets;
+		final int[][] upDistances;
+		final int[][] downSources;
+		final int[][] downDistances;
+		final ConcurrentLinkedQueue<Witness> idleWitnesses = new ConcurrentLinkedQueue<Witness>();
+
+		Contraction(CompactGraph graph){
+			this.graph = graph;
+			townCount = graph.townCount();
+			outTargets = new int[townCount][];
+			outDistances = new int[townCount][];
+			outSize = new int[townCount];
+			inSources = new int[townCount][];
+			inDistances = new int[townCount][];
+			inSize = new int[townCount];
+			rank = new int[townCount];
+			loop = new int[townCount];
+			depth = new int[townCount];
+			priority = new int[townCount];
+			dirty = new boolean[townCount];
+			inRound = new boolean[townCount];
+			upTargets = new int[townCount][];
+			upDistances = new int[townCount][];
+			downSources = new int[townCount][];
+			downDistances = new int[townCount][];
+			Arrays.fill(rank, -1);
+			Arrays.fill(loop, DijkstraSearch.UNREACHABLE);
+			Arrays.fill(dirty, true);
+			int[] inDegree = new int[townCount];
+			for (int town = 0; town < townCount; town++){
+				int degree = graph.offsets[town + 1] - graph.offsets[town];
+				outTargets[town] = new int[degree];
+				outDistances[town] = new int[degree];
+				for (int edge = graph.offsets[town]; edge < graph.offsets[town + 1]; edge++)
+					inDegree[graph.targets[edge]]++;
+			}
+			for (int town = 0; town < townCount; town++){
+				inSources[town] = new int[inDegree[town]];
+				inDistances[town] = new int[inDegree[town]];
+			}
+			for (int town = 0; town < townCount; town++){
+				for (int edge = graph.offsets[town]; edge < graph.offsets[town + 1]; edge++){
+					int target = graph.targets[edge];
+					int distance = graph.distances[edge];
+					if (distance < 0)
+						throw new IllegalStateException("Contraction hierarchies need non-negative distances; found " + distance
+								+ " from " + graph.name(town) + " to " + graph.name(target) + ".");
+					if (target == town)
+						loop[town] = Math.min(loop[town], distance);
+					else
+						addRoad(town, target, distance);
+				}
+			}
+		}
+
+		ContractionHierarchy run(ForkJoinPool pool){
+			int[] live = new int[townCount];
+			for (int town = 0; town < townCount; town++)
+				live[town] = town;
+			int liveCount = townCount;
+			int[] selected = new int[townCount];
+			int nextRank = 0;
+			while (liveCount > 0){
+				final int[] candidates = live;
+				final int count = liveCount;
+				int blockSize = Math.max(16, count / (8 * pool.getParallelism()));
+				pool.invoke(new RowBlocks((from, to) -> {
+					Witness witness = takeWitness();
+					for (int i = from; i < to; i++){
+						int town = candidates[i];
+						if (dirty[town]){
+							//shortcuts added per road removed, in sixteenths, plus depth to keep the hierarchy shallow
+							int roads = outSize[town] + inSize[town];
+							priority[town] = (int) (roads == 0 ? 0 : 16L * contract(town, witness, false) / roads) + depth[town];
+							dirty[town] = false;
+						}
+					}
+					idleWitnesses.add(witness);
+				}, 0, count, blockSize));
+				pool.invoke(new RowBlocks((from, to) -> {
+					for (int i = from; i < to; i++)
+						inRound[candidates[i]] = isLocalMinimum(candidates[i]);
+				}, 0, count, blockSize));
+				int selectedCount = 0;
+				for (int i = 0; i < count; i++){
+					if (inRound[candidates[i]])
+						selected[selectedCount++] = candidates[i];
+				}
+				final int[] round = selected;
+				final int[][] shortcuts = new int[selectedCount][];
+				pool.invoke(new RowBlocks((from, to) -> {
+					Witness witness = takeWitness();
+					for (int i = from; i < to; i++){
+						witness.foundSize = 0;
+						contract(round[i], witness, true);
+						shortcuts[i] = Arrays.copyOf(witness.found, witness.foundSize);
+					}
+					idleWitnesses.add(witness);
+				}, 0, selectedCount, Math.max(1, selectedCount / (8 * pool.getParallelism()))));
+				for (int i = 0; i < selectedCount; i++){
+					int town = round[i];
+					rank[town] = nextRank++;
+					inRound[town] = false;
+					upTargets[town] = Arrays.copyOf(outTargets[town], outSize[town]);
+					upDistances[town] = Arrays.copyOf(outDistances[town], outSize[town]);
+					downSources[town] = Arrays.copyOf(inSources[town], inSize[town]);
+					downDistances[town] = Arrays.copyOf(inDistances[town], inSize[town]);
+					int[] added = shortcuts[i];
+					for (int s = 0; s < added.length; s += 3){
+						if (added[s] == added[s + 1])
+							loop[added[s]] = Math.min(loop[added[s]], added[s + 2]);
+						else
+							addRoad(added[s], added[s + 1], added[s + 2]);
+					}
+				}
+				//detach contracted towns from their neighbours once every shortcut of the round is in place
+				for (int i = 0; i < selectedCount; i++){
+					int town = round[i];
+					for (int j = 0; j < upTargets[town].length; j++)
+						touch(upTargets[town][j], town);
+					for (int j = 0; j < downSources[town].length; j++)
+						touch(downSources[town][j], town);
+					outTargets[town] = outDistances[town] = inSources[town] = inDistances[town] = null;
+				}
+				int remaining = 0;
+				for (int i = 0; i < count; i++){
+					if (rank[candidates[i]] < 0)
+						live[remaining++] = candidates[i];
+				}
+				liveCount = remaining;
+			}
+			int[] upOffsets = offsets(upTargets);
+			int[] downOffsets = offsets(downSources);
+			return new ContractionHierarchy(graph, rank, loop, upOffsets, flatten(upTargets, upOffsets),
+					flatten(upDistances, upOffsets), downOffsets, flatten(downSources, downOffsets), flatten(downDistances, downOffsets));
+		}
+
+		private static int[] offsets(int[][] rows){
+			int[] offsets = new int[rows.length + 1];
+			for (int i = 0; i < rows.length; i++)
+				offsets[i + 1] = Math.addExact(offsets[i], rows[i].length);
+			return offsets;
+		}
+
+		private static int[] flatten(int[][] rows, int[] offsets){
+			int[] flat = new int[offsets[rows.length]];
+			for (int i = 0; i < rows.length; i++){
+				System.arraycopy(rows[i], 0, flat, offsets[i], rows[i].length);
+				rows[i] = null;
+			}
+			return flat;
+		}
+
+		/**
+		 * Finds the shortcuts needed to contract a town, skipping pairs with a witness route that avoids it.
+		 * When recording, each shortcut is appended to the witness as (from, to, distance); from == to marks a cycle.
+		 * @return number of shortcuts needed, not counting cycles.
+		 */
+		int contract(int town, Witness witness, boolean record){
+			int needed = 0;
+			int[] targets = outTargets[town];
+			int[] distances = outDistances[town];
+			int outCount = outSize[town];
+			for (int i = 0; i < inSize[town]; i++){
+				int source = inSources[town][i];
+				int toTown = inDistances[town][i];
+				long longest = -1;
+				for (int j = 0; j < outCount; j++){
+					long via = (long) toTown + distances[j];
+					if (targets[j] != source)
+						longest = Math.max(longest, via);
+					else if (record && via < DijkstraSearch.UNREACHABLE)
+						witness.add(source, source, (int) via);
+				}
+				if (longest < 0)
+					continue;
+				witness.search(source, town, toTown, targets, distances, outCount, record ? WITNESS_SETTLE_LIMIT : ESTIMATE_SETTLE_LIMIT);
+				for (int j = 0; j < outCount; j++){
+					long via = (long) toTown + distances[j];
+					int target = targets[j];
+					if (target == source || via >= DijkstraSearch.UNREACHABLE || witness.distance(target) <= via)
+						continue;
+					needed++;
+					if (record)
+						witness.add(source, target, (int) via);
+				}
+			}
+			return needed;
+		}
+
+		/**
+		 * A town joins the round when it ranks below every remaining neighbour. Ties are broken by a
+		 * bijective hash of the ID so that regular networks do not contract along a single chain.
+		 */
+		boolean isLocalMinimum(int town){
+			for (int i = 0; i < outSize[town]; i++){
+				if (!before(town, outTargets[town][i]))
+					return false;
+			}
+			for (int i = 0; i < inSize[town]; i++){
+				if (!before(town, inSources[town][i]))
+					return false;
+			}
+			return true;
+		}
+
+		private boolean before(int town, int other){
+			if (priority[town] != priority[other])
+				return priority[town] < priority[other];
+			return mix(town) < mix(other);
+		}
+
+		/**
+		 * Removes a contracted town from a neighbour's road lists and marks the neighbour for a new priority.
+		 */
+		private void touch(int neighbour, int contracted){
+			if (rank[neighbour] >= 0)
+				return;
+			outSize[neighbour] = removeContracted(outTargets[neighbour], outDistances[neighbour], outSize[neighbour]);
+			inSize[neighbour] = removeContracted(inSources[neighbour], inDistances[neighbour], inSize[neighbour]);
+			depth[neighbour] = Math.max(depth[neighbour], depth[contracted] + 1);
+			dirty[neighbour] = true;
+		}
+
+		private int removeContracted(int[] towns, int[] distances, int size){
+			int kept = 0;
+			for (int i = 0; i < size; i++){
+				if (rank[towns[i]] < 0){
+					towns[kept] = towns[i];
+					distances[kept++] = distances[i];
+				}
+			}
+			return kept;
+		}
+
+		/**
+		 * Adds a road to the overlay, or shortens the existing road between the same towns.
+		 */
+		private void addRoad(int from, int to, int distance){
+			int[] targets = outTargets[from];
+			for (int i = 0; i < outSize[from]; i++){
+				if (targets[i] == to){
+					if (distance < outDistances[from][i]){
+						outDistances[from][i] = distance;
+						int[] sources = inSources[to];
+						for (int j = 0; j < inSize[to]; j++){
+							if (sources[j] == from)
+								inDistances[to][j] = distance;
+						}
+					}
+					return;
+				}
+			}
+			if (outSize[from] == targets.length){
+				outTargets[from] = Arrays.copyOf(targets, Math.max(4, 2 * targets.length));
+				outDistances[from] = Arrays.copyOf(outDistances[from], outTargets[from].length);
+			}
+			outTargets[from][outSize[from]] = to;
+			outDistances[from][outSize[from]++] = distance;
+			if (inSize[to] == inSources[to].length){
+				inSources[to] = Arrays.copyOf(inSources[to], Math.max(4, 2 * inSources[to].length));
+				inDistances[to] = Arrays.copyOf(inDistances[to], inSources[to].length);
+			}
+			inSources[to][inSize[to]] = from;
+			inDistances[to][inSize[to]++] = distance;
+		}
+
+		private Witness takeWitness(){
+			Witness witness = idleWitnesses.poll();
+			return witness == null ? new Witness(this) : witness;
+		}
+	}
+
+	/**
+	 * Bounded Dijkstra search used to look for routes that make a shortcut unnecessary. One instance is
+	 * used by one thread at a time; instances are pooled for the duration of a build.
+	 */
+	private static final class Witness {
+		final Contraction contraction;
+		final int[] distance;
+		final int[] stamps;
+		final int[] targetStamps;
+		final IndexedMinHeap heap;
+		int stamp;
+		int[] found = new int[48];
+		int foundSize;
+
+		Witness(Contraction contraction){
+			this.contraction = contraction;
+			distance = new int[contraction.townCount];
+			stamps = new int[contraction.townCount];
+			targetStamps = new int[contraction.townCount];
+			heap = new IndexedMinHeap(contraction.townCount);
+		}
+
+		/**
+		 * Searches from source without passing through avoid, any contracted town or any town of the
+		 * current round, ignoring routes longer than limit. Stops once every town in targets[0, targetCount)
+		 * is settled or after WITNESS_SETTLE_LIMIT towns.
+		 */
+		void search(int source, int avoid, int toAvoid, int[] targets, int[] targetDistances, int targetCount, int settleLimit){
+			if (++stamp == 0){
+				Arrays.fill(stamps, 0);
+				Arrays.fill(targetStamps, 0);
+				stamp = 1;
+			}
+			int pending = 0;
+			for (int i = 0; i < targetCount; i++){
+				if (targets[i] != source && targetStamps[targets[i]] != stamp){
+					targetStamps[targets[i]] = stamp;
+					pending++;
+				}
+			}
+			long limit = longestPending(toAvoid, targets, targetDistances, targetCount);
+			Contraction graph = contraction;
+			distance[source] = 0;
+			stamps[source] = stamp;
+			heap.insertOrDecrease(source, 0);
+			for (int settled = 0; pending > 0 && !heap.isEmpty() && heap.minKey() <= limit && settled < settleLimit; settled++){
+				int town = heap.poll();
+				if (targetStamps[town] == stamp){
+					targetStamps[town] = 0;
+					pending--;
+					limit = longestPending(toAvoid, targets, targetDistances, targetCount);
+				}
+				int townDistance = distance[town];
+				int[] roads = graph.outTargets[town];
+				int[] distances = graph.outDistances[town];
+				for (int i = 0, end = graph.outSize[town]; i < end; i++){
+					int next = roads[i];
+					long candidate = (long) townDistance + distances[i];
+					if (next == avoid || candidate > limit || graph.inRound[next] || graph.rank[next] >= 0)
+						continue;
+					if (stamps[next] != stamp || candidate < distance[next]){
+						distance[next] = (int) candidate;
+						stamps[next] = stamp;
+						heap.insertOrDecrease(next, (int) candidate);
+					}
+				}
+			}
+			heap.clear();
+		}
+
+		/**
+		 * @return length of the longest route through the contracted town to a target not settled yet; a
+		 * witness longer than that cannot remove any shortcut.
+		 */
+		private long longestPending(int toAvoid, int[] targets, int[] targetDistances, int targetCount){
+			long longest = -1;
+			for (int i = 0; i < targetCount; i++){
+				if (targetStamps[targets[i]] == stamp)
+					longest = Math.max(longest, (long) toAvoid + targetDistances[i]);
+			}
+			return longest;
+		}
+
+		long distance(int town){
+			return stamps[town] == stamp ? distance[town] : Long.MAX_VALUE;
+		}
+
+		void add(int from, int to, int roadDistance){
+			if (foundSize + 3 > found.length)
+				found = Arrays.copyOf(found, 2 * found.length);
+			found[foundSize++] = from;
+			found[foundSize++] = to;
+			found[foundSize++] = roadDistance;
+		}
+	}
+
+	/**
+	 * Bijective 32-bit mix (the MurmurHash3 finalizer).
+	 */
+	static int mix(int value){
+		value ^= value >>> 16;
+		value *= 0x85ebca6b;
+		value ^= value >>> 13;
+		value *= 0xc2b2ae35;
+		return value ^ (value >>> 16);
+	}
+}
@@ -0,0 +1,157 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for contraction hierarchy preprocessing and queries.
+ * @author Ryan C Smith
+ */
+public class ContractionHierarchyTest {
+	CompactGraph graph;
+	Path text;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+		text = Files.createTempFile("graph", ".txt");
+		Files.write(text, "(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)".getBytes(StandardCharsets.UTF_8));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(ContractionHierarchy.fileFor(text));
+		Files.deleteIfExists(text);
+	}
+
+	@Test
+	public void testMatchesDijkstra() {
+		assertMatchesDijkstra(graph, ContractionHierarchy.build(graph));
+		assertEquals(9, ContractionHierarchy.build(graph).shortestDistance(graph.id("B"), graph.id("B")));
+	}
+
+	@Test
+	public void testMatchesDijkstraOnRandomGraphs() {
+		Random random = new Random(7);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (int trial = 0; trial < 300; trial++){
+			int towns = 1 + random.nextInt(30);
+			CompactGraph.Builder builder = new CompactGraph.Builder();
+			for (int town = 0; town < towns; town++)
+				builder.intern("T" + town);
+			for (int road = random.nextInt(4 * towns); road > 0; road--)
+				builder.addEdge(random.nextInt(towns), random.nextInt(towns), random.nextInt(trial % 2 == 0 ? 3 : 40));
+			CompactGraph randomGraph = builder.build();
+			assertMatchesDijkstra(randomGraph, ContractionHierarchy.build(randomGraph, pool));
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testSettlesFewerTownsOnGrid() {
+		int side = 40;
+		Random random = new Random(3);
+		CompactGraph.Builder builder = new CompactGraph.Builder();
+		for (int town = 0; town < side * side; town++)
+			builder.intern("T" + town);
+		for (int row = 0; row < side; row++){
+			for (int column = 0; column < side; column++){
+				int town = row * side + column;
+				if (column + 1 < side){
+					builder.addEdge(town, town + 1, 1 + random.nextInt(100));
+					builder.addEdge(town + 1, town, 1 + random.nextInt(100));
+				}
+				if (row + 1 < side){
+					builder.addEdge(town, town + side, 1 + random.nextInt(100));
+					builder.addEdge(town + side, town, 1 + random.nextInt(100));
+				}
+			}
+		}
+		CompactGraph grid = builder.build();
+		ContractionHierarchy hierarchy = ContractionHierarchy.build(grid);
+		SearchResult corner = hierarchy.search(0, side * side - 1);
+		assertEquals(DijkstraSearch.shortestDistance(grid, 0, side * side - 1), corner.distance());
+		assertTrue(corner.settled() < side * side / 4);
+	}
+
+	@Test
+	public void testRankIsPermutation() {
+		ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+		boolean[] seen = new boolean[graph.townCount()];
+		for (int town = 0; town < graph.townCount(); town++){
+			assertFalse(seen[hierarchy.rank(town)]);
+			seen[hierarchy.rank(town)] = true;
+		}
+	}
+
+	@Test
+	public void testUnreachable() {
+		CompactGraph split = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,1) (C,D,1)"));
+		SearchResult result = ContractionHierarchy.build(split).search(split.id("A"), split.id("D"));
+		assertFalse(result.found());
+		assertEquals(DijkstraSearch.UNREACHABLE, result.distance());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNegativeDistance() {
+		ContractionHierarchy.build(CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,-1)")));
+	}
+
+	@Test
+	public void testSavedNextToGraph() throws Exception {
+		CompactGraph loaded = Trains.loadGraph(text.toString());
+		ContractionHierarchy built = Trains.prepareHierarchy(text.toString());
+		assertTrue(Files.isRegularFile(ContractionHierarchy.fileFor(text)));
+		ContractionHierarchy read = ContractionHierarchy.read(ContractionHierarchy.fileFor(text), loaded);
+		assertSame(loaded, read.graph());
+		for (int town = 0; town < loaded.townCount(); town++)
+			assertEquals(built.rank(town), read.rank(town));
+		assertEquals(built.shortcutCount(), read.shortcutCount());
+		assertMatchesDijkstra(loaded, read);
+		RouteMap routes = new RouteMap(loaded);
+		Trains.attachHierarchy(routes, text.toString());
+		assertSame(loaded, routes.getContractionHierarchy().graph());
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsHierarchyOfOtherGraph() throws Exception {
+		Trains.prepareHierarchy(text.toString());
+		CompactGraph other = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,1)"));
+		ContractionHierarchy.read(ContractionHierarchy.fileFor(text), other);
+	}
+
+	@Test
+	public void testRouteMapUsesHierarchyUntilUpdated() {
+		RouteMap routes = new RouteMap(graph);
+		routes.useContractionHierarchy(ContractionHierarchy.build(graph));
+		assertNotNull(routes.getContractionHierarchy());
+		assertEquals(new Integer(9), routes.calculateShortestRoute("A", "C"));
+		assertNull(routes.calculateShortestRoute("A", "A"));
+		assertEquals(new Integer(9), routes.query(pinned -> pinned.calculateShortestRoute("C", "C")).value());
+		routes.apply(new GraphUpdate().addRoad("A", "C", 1));
+		assertNull(routes.getContractionHierarchy());
+		assertEquals(new Integer(1), routes.calculateShortestRoute("A", "C"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRouteMapRejectsHierarchyOfOtherGraph() {
+		new RouteMap(graph).useContractionHierarchy(ContractionHierarchy.build(CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,1)"))));
+	}
+
+	private static void assertMatchesDijkstra(CompactGraph graph, ContractionHierarchy hierarchy){
+		for (int start = 0; start < graph.townCount(); start++){
+			for (int end = 0; end < graph.townCount(); end++)
+				assertEquals(DijkstraSearch.shortestDistance(graph, start, end), hierarchy.shortestDistance(start, end));
+		}
+	}
+}
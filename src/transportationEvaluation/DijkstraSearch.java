@@ -0,0 +1,255 @@
+package transportationEvaluation;
+
+import java.util.Arrays;
+
+/**
+ * Heap-based Dijkstra searches over a CompactGraph.
+ * A town is settled once, when it leaves the heap, and its distance is not changed afterwards. On graphs
+ * with negative roads the results are therefore not always the shortest routes, but every search finishes,
+ * even when a cycle of negative total distance can be reached.
+ * @author Ryan C Smith
+ */
+public final class DijkstraSearch {
+	/**
+	 * Distance used for towns that cannot be reached.
+	 */
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+	/**
+	 * Predecessor of towns that have none: the origin of a route, or a town that cannot be reached.
+	 */
+	public static final int NO_TOWN = -1;
+
+	private DijkstraSearch(){
+	}
+
+	/**
+	 * Calculates the shortest route between two towns, stopping as soon as the destination is settled.
+	 * When source == target the shortest cycle through the town is returned instead of 0: the search is
+	 * seeded with the roads leaving the source and the source itself is left unsettled until it is reached again.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param source - ID of the start town.
+	 * @param target - ID of the destination town.
+	 * @return total distance of the shortest route, or UNREACHABLE if no route exists.
+	 */
+	public static int shortestDistance(CompactGraph graph, int source, int target){
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			return shortestDistance(graph, source, target, workspace);
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Same search as shortestDistance in a workspace the caller holds, which afterwards reports how many towns were settled.
+	 */
+	static int shortestDistance(CompactGraph graph, int source, int target, SearchWorkspace workspace){
+		return search(graph, source, target, false, workspace);
+	}
+
+	/**
+	 * Same search as shortestDistance, also reporting how many towns were settled.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param source - ID of the start town.
+	 * @param target - ID of the destination town.
+	 * @return the shortest distance, or UNREACHABLE, and the number of towns settled.
+	 */
+	public static SearchResult search(CompactGraph graph, int source, int target){
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			int distance = search(graph, source, target, false, workspace);
+			return new SearchResult(distance, (int) workspace.settled());
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Calculates the towns along the shortest route between two towns, with the same early exit and cycle
+	 * convention as shortestDistance. Predecessors are recorded during the one search, so the route costs
+	 * no second search. Use shortestPathTree instead when many routes from the same origin are needed.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param source - ID of the start town.
+	 * @param target - ID of the destination town.
+	 * @return IDs of the towns visited in order, starting with source and ending with target, or null if no route exists.
+	 */
+	public static int[] shortestPath(CompactGraph graph, int source, int target){
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			return shortestPath(graph, source, target, workspace);
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Same search as shortestPath in a workspace the caller holds, which afterwards reports how many towns were settled.
+	 */
+	static int[] shortestPath(CompactGraph graph, int source, int target, SearchWorkspace workspace){
+		if (search(graph, source, target, true, workspace) == UNREACHABLE)
+			return null;
+		return path(workspace.predecessor(), source, target);
+	}
+
+	/**
+	 * Search shared by shortestDistance, search and shortestPath, with distances and the heap kept in the
+	 * workspace. When tracePredecessors is set, the town each reached town was last improved from is
+	 * recorded in the workspace's predecessor array; for a cycle, predecessor[source] ends up as the town
+	 * the cycle returns from.
+	 */
+	private static int search(CompactGraph graph, int source, int target, boolean tracePredecessors, SearchWorkspace workspace){
+		workspace.startSearch(graph.townCount());
+		int[] predecessor = tracePredecessors ? workspace.predecessor() : null;
+		IndexedMinHeap heap = workspace.heap();
+		if (source == target)
+			relax(graph, source, 0, workspace, predecessor, heap);
+		else{
+			workspace.setDistance(source, 0);
+			heap.insertOrDecrease(source, 0);
+		}
+		while (!heap.isEmpty()){
+			int town = heap.poll();
+			workspace.settle(town);
+			int distance = workspace.distance(town);
+			if (town == target)
+				return distance;
+			relax(graph, town, distance, workspace, predecessor, heap);
+		}
+		return UNREACHABLE;
+	}
+
+	/**
+	 * Runs a full single-source search, so that the shortest route to every destination can be read off
+	 * the returned tree without searching again.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param source - ID of the start town.
+	 * @return tree of shortest distances and predecessors from source.
+	 */
+	public static ShortestPathTree shortestPathTree(CompactGraph graph, int source){
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			return shortestPathTree(graph, source, workspace);
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Same search as shortestPathTree in a workspace the caller holds, which afterwards reports how many towns were settled.
+	 */
+	static ShortestPathTree shortestPathTree(CompactGraph graph, int source, SearchWorkspace workspace){
+		int[] predecessor = new int[graph.townCount()];
+		Arrays.fill(predecessor, NO_TOWN);
+		return new ShortestPathTree(graph, source, distances(graph, source, predecessor, workspace), predecessor);
+	}
+
+	/**
+	 * @return shortest distance from source to every town (0 for the source itself), UNREACHABLE where there is no route.
+	 */
+	static int[] distances(CompactGraph graph, int source){
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			return distances(graph, source, null, workspace);
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Completes a full search from source with the shortest cycle back to it, scanning the roads entering
+	 * source in the graph's reverse adjacency index.
+	 * @param distance - shortest distance from source to every town, as returned by distances.
+	 * @return length of the shortest cycle through source, or UNREACHABLE if there is none.
+	 */
+	static int shortestCycle(CompactGraph graph, int source, int[] distance){
+		CompactGraph reverse = graph.reverse();
+		long shortestCycle = UNREACHABLE;
+		for (int edge = reverse.offsets[source], last = reverse.offsets[source + 1]; edge < last; edge++){
+			int from = reverse.targets[edge];
+			if (distance[from] != UNREACHABLE)
+				shortestCycle = Math.min(shortestCycle, (long) distance[from] + reverse.distances[edge]);
+		}
+		return (int) shortestCycle;
+	}
+
+	/**
+	 * Full single-source search. When predecessor is not null, it receives the town each reached town was
+	 * reached from; entries of the source and of unreached towns are left untouched.
+	 */
+	private static int[] distances(CompactGraph graph, int source, int[] predecessor, SearchWorkspace workspace){
+		int[] distance = new int[graph.townCount()];
+		Arrays.fill(distance, UNREACHABLE);
+		workspace.startSearch(graph.townCount());
+		IndexedMinHeap heap = workspace.heap();
+		distance[source] = 0;
+		heap.insertOrDecrease(source, 0);
+		while (!heap.isEmpty()){
+			int town = heap.poll();
+			workspace.settle(town);
+			relax(graph, town, distance[town], distance, predecessor, heap, workspace);
+		}
+		return distance;
+	}
+
+	/**
+	 * Follows predecessors back from target until source is reached, taking at least one step so that a
+	 * cycle through source is traced in full.
+	 * @return IDs of the towns from source to target.
+	 */
+	static int[] path(int[] predecessor, int source, int target){
+		int stops = 0;
+		int town = target;
+		do {
+			if (++stops > predecessor.length)
+				throw new IllegalStateException("Predecessors do not lead back to the origin; the graph has a negative distance.");
+			town = predecessor[town];
+		} while (town != source);
+		int[] path = new int[stops + 1];
+		path[0] = source;
+		town = target;
+		for (int i = stops; i > 0; i--){
+			path[i] = town;
+			town = predecessor[town];
+		}
+		return path;
+	}
+
+	/**
+	 * Relaxes every road leaving a settled town, recording it as the predecessor of every town it improves
+	 * when predecessor is not null. Roads into towns already settled are skipped, so a negative road never
+	 * queues a town again. Sums past Integer.MAX_VALUE are treated as overflows and ignored.
+	 */
+	private static void relax(CompactGraph graph, int town, int townDistance, int[] distance, int[] predecessor, IndexedMinHeap heap,
+			SearchWorkspace workspace){
+		int[] targets = graph.targets;
+		int[] distances = graph.distances;
+		for (int edge = graph.offsets[town], end = graph.offsets[town + 1]; edge < end; edge++){
+			long candidate = (long) townDistance + distances[edge];
+			int next = targets[edge];
+			if (candidate < distance[next] && !workspace.isSettled(next)){
+				distance[next] = (int) candidate;
+				if (predecessor != null)
+					predecessor[next] = town;
+				heap.insertOrDecrease(next, (int) candidate);
+			}
+		}
+	}
+
+	/**
+	 * relax for searches keeping their distances in a workspace.
+	 */
+	private static void relax(CompactGraph graph, int town, int townDistance, SearchWorkspace workspace, int[] predecessor, IndexedMinHeap heap){
+		int[] targets = graph.targets;
+		int[] distances = graph.distances;
+		for (int edge = graph.offsets[town], end = graph.offsets[town + 1]; edge < end; edge++){
+			long candidate = (long) townDistance + distances[edge];
+			int next = targets[edge];
+			if (candidate < workspace.distance(next) && !workspace.isSettled(next)){
+				workspace.setDistance(next, (int) candidate);
+				if (predecessor != null)
+					predecessor[next] = town;
+				heap.insertOrDecrease(next, (int) candidate);
+			}
+		}
+	}
+}
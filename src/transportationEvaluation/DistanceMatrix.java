@@ -0,0 +1,235 @@
+package transportationEvaluation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * All-pairs table of shortest route distances, computed with one Dijkstra search per origin town.
+ * The searches run in parallel on a ForkJoinPool and each writes its row straight into a row-major
+ * table of ints, so every later (start, end) lookup is a single array read. As with
+ * RouteMap.calculateShortestRoute, the entry for start == end is the shortest cycle through the town.
+ * The table takes 4 bytes per pair: small networks keep it in an int[] on the heap, while large ones can
+ * compute it straight into a memory-mapped file (see computeToFile) that later runs open without
+ * recomputing. Roads must not be negative.
+ * File layout (big-endian): magic, format version, town count and graph fingerprint; the table rows;
+ * and a trailing CRC32 of everything before it.
+ * @author Ryan C Smith
+ */
+public final class DistanceMatrix {
+	static final int MAGIC = 0x54524150; //"TRAP"
+	static final int FORMAT_VERSION = 1;
+	static final int HEADER_BYTES = 20;
+
+	/**
+	 * Networks with at most this many towns fit the table in one int[].
+	 */
+	public static final int HEAP_TOWN_LIMIT = 46340;
+
+	/**
+	 * Largest region of a file mapped as one buffer; each buffer holds whole rows.
+	 */
+	private static final long MAP_CHUNK = 1L << 30;
+
+	/**
+	 * Origins searched per fork-join leaf task.
+	 */
+	private static final int ROW_BLOCK = 8;
+
+	private final CompactGraph graph;
+	private final int[] table;
+	private final IntBuffer[] mapped;
+	private final int rowsPerBuffer;
+
+	private DistanceMatrix(CompactGraph graph, int[] table, IntBuffer[] mapped, int rowsPerBuffer){
+		this.graph = graph;
+		this.table = table;
+		this.mapped = mapped;
+		this.rowsPerBuffer = rowsPerBuffer;
+	}
+
+	/**
+	 * Computes the table on the heap, on the common ForkJoinPool.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @return shortest distance between every pair of towns.
+	 * @throws IllegalArgumentException - if the network has more than HEAP_TOWN_LIMIT towns.
+	 * @throws IllegalStateException - if the graph has a road with a negative distance.
+	 */
+	public static DistanceMatrix compute(CompactGraph graph){
+		return compute(graph, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Computes the table on the heap.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param pool - pool the searches run on.
+	 * @return shortest distance between every pair of towns.
+	 * @throws IllegalArgumentException - if the network has more than HEAP_TOWN_LIMIT towns.
+	 * @throws IllegalStateException - if the graph has a road with a negative distance.
+	 */
+	public static DistanceMatrix compute(final CompactGraph graph, ForkJoinPool pool){
+		checkDistances(graph);
+		final int n = graph.townCount();
+		if (n > HEAP_TOWN_LIMIT)
+			throw new IllegalArgumentException("Network is too large for an in-memory table; use computeToFile.");
+		final int[] table = new int[n * n];
+		pool.invoke(new RowBlocks((from, to) -> {
+			for (int source = from; source < to; source++)
+				System.arraycopy(row(graph, source), 0, table, source * n, n);
+		}, 0, n, ROW_BLOCK));
+		return new DistanceMatrix(graph, table, null, 0);
+	}
+
+	/**
+	 * Computes the table straight into a memory-mapped file, so that it never has to fit on the heap.
+	 * The returned table reads from the mapping; open(file, graph) maps it again in later runs.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param file - destination path. Existing files are replaced.
+	 * @param pool - pool the searches run on.
+	 * @return shortest distance between every pair of towns.
+	 * @throws IOException - if the file cannot be written.
+	 * @throws IllegalStateException - if the graph has a road with a negative distance.
+	 */
+	public static DistanceMatrix computeToFile(final CompactGraph graph, Path file, ForkJoinPool pool) throws IOException {
+		checkDistances(graph);
+		final int n = graph.townCount();
+		long trailerStart = HEADER_BYTES + 4L * n * n;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(n).putLong(ContractionHierarchy.fingerprint(graph)).flip();
+			while (header.hasRemaining())
+				channel.write(header, header.position());
+			final int rowsPerBuffer = rowsPerBuffer(n);
+			final IntBuffer[] mapped = map(channel, FileChannel.MapMode.READ_WRITE, n, rowsPerBuffer);
+			pool.invoke(new RowBlocks((from, to) -> {
+				for (int source = from; source < to; source++){
+					IntBuffer rows = mapped[source / rowsPerBuffer].duplicate();
+					rows.position((source % rowsPerBuffer) * n);
+					rows.put(row(graph, source));
+				}
+			}, 0, n, ROW_BLOCK));
+			ByteBuffer trailer = ByteBuffer.allocate(8);
+			trailer.putLong(GraphSnapshot.checksum(channel, trailerStart)).flip();
+			while (trailer.hasRemaining())
+				channel.write(trailer, trailerStart + trailer.position());
+			return new DistanceMatrix(graph, null, readOnly(mapped), rowsPerBuffer);
+		}
+	}
+
+	/**
+	 * Maps a table written by computeToFile. Only the header is checked unless verify is set, so opening
+	 * costs the same however large the table is.
+	 * @param file - path of the table.
+	 * @param graph - the graph the table is expected to describe.
+	 * @param verify - whether to check the CRC32 of the whole file first.
+	 * @return the mapped table.
+	 * @throws IOException - if the file is not a table for this graph, or is truncated or corrupt.
+	 */
+	public static DistanceMatrix open(Path file, CompactGraph graph, boolean verify) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			long size = channel.size();
+			if (size < HEADER_BYTES + 8)
+				throw new IOException("File is too short to be a distance table: " + file);
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			if (header.getInt() != MAGIC)
+				throw new IOException("Not a distance table: " + file);
+			int version = header.getInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException("Unsupported distance table version " + version + ": " + file);
+			int n = header.getInt();
+			long fingerprint = header.getLong();
+			long trailerStart = HEADER_BYTES + 4L * n * n;
+			if (n < 0 || trailerStart + 8 != size)
+				throw new IOException("Distance table is truncated or corrupt: " + file);
+			if (n != graph.townCount() || fingerprint != ContractionHierarchy.fingerprint(graph))
+				throw new IOException("Distance table was computed for a different graph: " + file);
+			if (verify && !GraphSnapshot.checksumMatches(channel, trailerStart))
+				throw new IOException("Distance table checksum mismatch: " + file);
+			int rowsPerBuffer = rowsPerBuffer(n);
+			return new DistanceMatrix(graph, null, map(channel, FileChannel.MapMode.READ_ONLY, n, rowsPerBuffer), rowsPerBuffer);
+		}
+	}
+
+	private static void checkDistances(CompactGraph graph){
+		for (int edge = 0; edge < graph.edgeCount(); edge++){
+			if (graph.distances[edge] < 0)
+				throw new IllegalStateException("Shortest distances need non-negative roads; found " + graph.distances[edge] + ".");
+		}
+	}
+
+	/**
+	 * One row of the table: distances from source, with the shortest cycle on the diagonal.
+	 */
+	private static int[] row(CompactGraph graph, int source){
+		int[] distance = DijkstraSearch.distances(graph, source);
+		distance[source] = DijkstraSearch.shortestCycle(graph, source, distance);
+		return distance;
+	}
+
+	private static int rowsPerBuffer(int n){
+		return (int) Math.max(1, Math.min(n, MAP_CHUNK / (4L * Math.max(1, n))));
+	}
+
+	private static IntBuffer[] map(FileChannel channel, FileChannel.MapMode mode, int n, int rowsPerBuffer) throws IOException {
+		IntBuffer[] buffers = new IntBuffer[(n + rowsPerBuffer - 1) / rowsPerBuffer];
+		for (int i = 0; i < buffers.length; i++){
+			int rows = Math.min(rowsPerBuffer, n - i * rowsPerBuffer);
+			buffers[i] = channel.map(mode, HEADER_BYTES + 4L * n * i * rowsPerBuffer, 4L * n * rows).asIntBuffer();
+		}
+		return buffers;
+	}
+
+	private static IntBuffer[] readOnly(IntBuffer[] buffers){
+		IntBuffer[] views = new IntBuffer[buffers.length];
+		for (int i = 0; i < buffers.length; i++)
+			views[i] = buffers[i].asReadOnlyBuffer();
+		return views;
+	}
+
+	/**
+	 * @return the graph the table was computed on.
+	 */
+	public CompactGraph graph(){
+		return graph;
+	}
+
+	/**
+	 * @return true if the table is read from a memory-mapped file rather than the heap.
+	 */
+	public boolean isMapped(){
+		return mapped != null;
+	}
+
+	/**
+	 * @param start - ID of the origin town.
+	 * @param end - ID of the destination town.
+	 * @return shortest distance from start to end (the shortest cycle if they are the same town),
+	 * or DijkstraSearch.UNREACHABLE if no route exists.
+	 */
+	public int distance(int start, int end){
+		int n = graph.townCount();
+		if (table != null)
+			return table[start * n + end];
+		return mapped[start / rowsPerBuffer].get((start % rowsPerBuffer) * n + end);
+	}
+
+	/**
+	 * Same contract as RouteMap.calculateShortestRoute, answered from the table.
+	 * @param start - start town in String form.
+	 * @param end - destination town in String form.
+	 * @return Total distance of shortest path between two towns. Returns null if no route exists.
+	 */
+	public Integer distance(String start, String end){
+		int startId = graph.id(start);
+		int endId = graph.id(end);
+		if (startId < 0 || endId < 0)
+			return null;
+		int distance = distance(startId, endId);
+		return distance == DijkstraSearch.UNREACHABLE ? null : distance;
+	}
+}
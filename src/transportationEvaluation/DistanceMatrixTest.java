@@ -0,0 +1,101 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the all-pairs shortest distance table.
+ * @author Ryan C Smith
+ */
+public class DistanceMatrixTest {
+	RouteMap routes;
+	Path file;
+
+	@Before
+	public void setUp() throws Exception {
+		routes = new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+		file = Files.createTempFile("distances", ".bin");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testMatchesShortestRoutes() {
+		DistanceMatrix table = routes.calculateShortestRouteTable();
+		assertFalse(table.isMapped());
+		String[] towns = {"A","B","C","D","E"};
+		for (String start : towns){
+			for (String end : towns)
+				assertEquals(routes.calculateShortestRoute(start, end), table.distance(start, end));
+		}
+		assertEquals(Integer.valueOf(9), table.distance("A", "C"));
+		assertEquals(Integer.valueOf(9), table.distance("B", "B"));
+		assertNull(table.distance("A", "A"));
+		assertNull(table.distance("A", "F"));
+	}
+
+	@Test
+	public void testMatchesDijkstraOnRandomGraphs() {
+		Random random = new Random(18);
+		ForkJoinPool pool = new ForkJoinPool(3);
+		for (int round = 0; round < 30; round++){
+			CompactGraph graph = BidirectionalSearchTest.randomGraph(random, 1 + random.nextInt(40), 20);
+			DistanceMatrix table = DistanceMatrix.compute(graph, pool);
+			for (int start = 0; start < graph.townCount(); start++){
+				for (int end = 0; end < graph.townCount(); end++)
+					assertEquals(DijkstraSearch.shortestDistance(graph, start, end), table.distance(start, end));
+			}
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testMappedFileRoundTrip() throws IOException {
+		CompactGraph graph = BidirectionalSearchTest.randomGraph(new Random(7), 60, 50);
+		DistanceMatrix heap = DistanceMatrix.compute(graph);
+		DistanceMatrix written = DistanceMatrix.computeToFile(graph, file, ForkJoinPool.commonPool());
+		DistanceMatrix opened = DistanceMatrix.open(file, graph, true);
+		assertTrue(written.isMapped());
+		assertTrue(opened.isMapped());
+		assertEquals(DistanceMatrix.HEADER_BYTES + 4L * 60 * 60 + 8, Files.size(file));
+		for (int start = 0; start < graph.townCount(); start++){
+			for (int end = 0; end < graph.townCount(); end++){
+				assertEquals(heap.distance(start, end), written.distance(start, end));
+				assertEquals(heap.distance(start, end), opened.distance(start, end));
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsTableOfAnotherGraph() throws IOException {
+		DistanceMatrix.computeToFile(routes.getGraph(), file, ForkJoinPool.commonPool());
+		RouteMap other = new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,8)"));
+		DistanceMatrix.open(file, other.getGraph(), false);
+	}
+
+	@Test(expected = IOException.class)
+	public void testRejectsCorruptTable() throws IOException {
+		DistanceMatrix.computeToFile(routes.getGraph(), file, ForkJoinPool.commonPool());
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[DistanceMatrix.HEADER_BYTES] ^= 1;
+		Files.write(file, bytes);
+		DistanceMatrix.open(file, routes.getGraph(), true);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNegativeRoadRejected() {
+		new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,A,-2)")).calculateShortestRouteTable();
+	}
+}
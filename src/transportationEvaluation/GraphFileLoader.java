@@ -0,0 +1,294 @@
+package transportationEvaluation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streaming loader for graph files in the (A,B,5) (B,C,4) ... format.
+ * Files are memory-mapped segment by segment and tokenized directly from bytes into a
+ * CompactGraph.Builder, so the text is never held as a String. Each town name is decoded once,
+ * the first time its bytes are seen; later occurrences are matched against a byte-level intern table.
+ * Entries may be separated by any whitespace, including line breaks, and the surrounding parentheses
+ * are optional. Malformed entries are reported with the byte offset at which parsing failed.
+ * @author Ryan C Smith
+ */
+public final class GraphFileLoader {
+	/**
+	 * Bytes mapped at a time. Kept well below the 2GB limit of a single MappedByteBuffer.
+	 */
+	static final long SEGMENT_SIZE = 1L << 28;
+
+	private static final int SEPARATOR = 0;
+	private static final int FROM = 1;
+	private static final int TO = 2;
+	private static final int DISTANCE_START = 3;
+	private static final int DISTANCE = 4;
+
+	private final CompactGraph.Builder builder = new CompactGraph.Builder();
+	private final NameTable names = new NameTable();
+	private byte[] token = new byte[64];
+	private int tokenLength;
+	private int tokenHash;
+	private int state = SEPARATOR;
+	private boolean parenthesized;
+	private boolean negative;
+	private long distance;
+	private int distanceDigits;
+	private int fromId;
+	private int toId;
+	private long offset;
+
+	private GraphFileLoader(){
+	}
+
+	/**
+	 * Loads a graph file through memory-mapped I/O.
+	 * @param file - path of the graph file.
+	 * @return CompactGraph holding the towns and roads in the file.
+	 * @throws IOException - if the file cannot be read.
+	 * @throws IllegalStateException - if the file contains an improperly formatted entry.
+	 */
+	public static CompactGraph load(Path file) throws IOException {
+		GraphFileLoader loader = new GraphFileLoader();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			long size = channel.size();
+			for (long position = 0; position < size; position += SEGMENT_SIZE){
+				MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+				loader.feed(segment);
+			}
+		}
+		return loader.finish();
+	}
+
+	/**
+	 * Loads a graph from a channel such as standard input, reading through a fixed-size buffer.
+	 * @param channel - channel positioned at the start of the graph data.
+	 * @return CompactGraph holding the towns and roads read.
+	 * @throws IOException - if the channel cannot be read.
+	 * @throws IllegalStateException - if the data contains an improperly formatted entry.
+	 */
+	public static CompactGraph load(ReadableByteChannel channel) throws IOException {
+		GraphFileLoader loader = new GraphFileLoader();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+		while (channel.read(buffer) >= 0){
+			buffer.flip();
+			loader.feed(buffer);
+			buffer.clear();
+		}
+		return loader.finish();
+	}
+
+	/**
+	 * Parses graph data already held in memory.
+	 * @param text - graph data in String form.
+	 * @return CompactGraph holding the towns and roads in the text.
+	 * @throws IllegalStateException - if the text contains an improperly formatted entry.
+	 */
+	public static CompactGraph parse(String text){
+		GraphFileLoader loader = new GraphFileLoader();
+		loader.feed(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+		return loader.finish();
+	}
+
+	/**
+	 * Runs the tokenizer over every remaining byte of the buffer. State carries over between calls,
+	 * so entries may straddle segment boundaries.
+	 */
+	private void feed(ByteBuffer buffer){
+		for (int i = buffer.position(), limit = buffer.limit(); i < limit; i++, offset++){
+			byte b = buffer.get(i);
+			switch (state){
+			case SEPARATOR:
+				if (isWhitespace(b))
+					break;
+				parenthesized = b == '(';
+				startToken();
+				state = FROM;
+				if (!parenthesized){
+					if (b == ')' || b == ',')
+						throw malformed();
+					appendToken(b);
+				}
+				break;
+			case FROM:
+			case TO:
+				if (b == ','){
+					if (tokenLength == 0)
+						throw malformed();
+					if (state == FROM){
+						fromId = internToken();
+						startToken();
+						state = TO;
+					}
+					else{
+						toId = internToken();
+						state = DISTANCE_START;
+					}
+				}
+				else if (isWhitespace(b) || b == '(' || b == ')')
+					throw malformed();
+				else
+					appendToken(b);
+				break;
+			case DISTANCE_START:
+				negative = b == '-';
+				distance = 0;
+				distanceDigits = 0;
+				if (!negative){
+					if (b < '0' || b > '9')
+						throw malformed();
+					distance = b - '0';
+					distanceDigits = 1;
+				}
+				state = DISTANCE;
+				break;
+			case DISTANCE:
+				if (b >= '0' && b <= '9'){
+					distance = distance * 10 + (b - '0');
+					distanceDigits++;
+					if (distance > Integer.MAX_VALUE + 1L)
+						throw malformed();
+				}
+				else if (b == ')' && parenthesized)
+					finishEntry();
+				else if (isWhitespace(b) && !parenthesized)
+					finishEntry();
+				else
+					throw malformed();
+				break;
+			}
+		}
+		buffer.position(buffer.limit());
+	}
+
+	private CompactGraph finish(){
+		if (state == DISTANCE && !parenthesized)
+			finishEntry();
+		if (state != SEPARATOR)
+			throw new IllegalStateException("Improper Format in Graph File: unexpected end of file at byte offset " + offset + ". Please Check.");
+		return builder.build();
+	}
+
+	private void finishEntry(){
+		long value = negative ? -distance : distance;
+		if (distanceDigits == 0 || value > Integer.MAX_VALUE || value < Integer.MIN_VALUE)
+			throw malformed();
+		builder.addEdge(fromId, toId, (int) value);
+		state = SEPARATOR;
+	}
+
+	private IllegalStateException malformed(){
+		return new IllegalStateException("Improper Format in Graph File at byte offset " + offset + ". Please Check.");
+	}
+
+	private static boolean isWhitespace(byte b){
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+	}
+
+	private void startToken(){
+		tokenLength = 0;
+		tokenHash = 0x811C9DC5;
+	}
+
+	private void appendToken(byte b){
+		if (tokenLength == token.length)
+			token = Arrays.copyOf(token, tokenLength * 2);
+		token[tokenLength++] = b;
+		tokenHash = (tokenHash ^ (b & 0xFF)) * 0x01000193;
+	}
+
+	private int internToken(){
+		int id = names.find(token, tokenLength, tokenHash);
+		if (id < 0){
+			id = builder.intern(new String(token, 0, tokenLength, StandardCharsets.UTF_8));
+			names.add(token, tokenLength, tokenHash, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Open-addressing table from town-name bytes to town IDs. Name bytes are copied once into a shared pool.
+	 * Each slot packs the name hash with the town ID, and each town's pool offset and length sit side by side,
+	 * so a lookup touches as few cache lines as possible on large networks.
+	 */
+	private static final class NameTable {
+		private static final long EMPTY = -1L;
+		private long[] slots = new long[1024];
+		private int[] nameRanges = new int[1024];
+		private byte[] pool = new byte[4096];
+		private int poolSize;
+		private int size;
+
+		NameTable(){
+			Arrays.fill(slots, EMPTY);
+		}
+
+		int find(byte[] bytes, int length, int hash){
+			int mask = slots.length - 1;
+			for (int slot = spread(hash) & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask){
+				long entry = slots[slot];
+				if ((int) (entry >>> 32) == hash && matches((int) entry, bytes, length))
+					return (int) entry;
+			}
+			return -1;
+		}
+
+		void add(byte[] bytes, int length, int hash, int id){
+			if (2 * id + 1 >= nameRanges.length)
+				nameRanges = Arrays.copyOf(nameRanges, Math.max(2 * id + 2, nameRanges.length * 2));
+			if (poolSize + length > pool.length)
+				pool = Arrays.copyOf(pool, Math.max(poolSize + length, pool.length * 2));
+			System.arraycopy(bytes, 0, pool, poolSize, length);
+			nameRanges[2 * id] = poolSize;
+			nameRanges[2 * id + 1] = length;
+			poolSize += length;
+			if (++size * 2 > slots.length)
+				grow();
+			insert(((long) hash << 32) | id);
+		}
+
+		/**
+		 * FNV-1a leaves the low bits of short names poorly mixed, so they are scrambled before masking.
+		 */
+		private static int spread(int hash){
+			hash *= 0x9E3779B9;
+			return hash ^ (hash >>> 16);
+		}
+
+		private boolean matches(int id, byte[] bytes, int length){
+			if (nameRanges[2 * id + 1] != length)
+				return false;
+			int start = nameRanges[2 * id];
+			for (int i = 0; i < length; i++){
+				if (pool[start + i] != bytes[i])
+					return false;
+			}
+			return true;
+		}
+
+		private void insert(long entry){
+			int mask = slots.length - 1;
+			int slot = spread((int) (entry >>> 32)) & mask;
+			while (slots[slot] != EMPTY)
+				slot = (slot + 1) & mask;
+			slots[slot] = entry;
+		}
+
+		private void grow(){
+			long[] oldSlots = slots;
+			slots = new long[oldSlots.length * 2];
+			Arrays.fill(slots, EMPTY);
+			for (long entry : oldSlots){
+				if (entry != EMPTY)
+					insert(entry);
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the streaming graph loader.
+ * @author Ryan C Smith
+ */
+public class GraphFileLoaderTest {
+	static final String SAMPLE = "(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)";
+
+	@Test
+	public void testParseMatchesAdjacencyList() {
+		RouteMap loaded = new RouteMap(GraphFileLoader.parse(SAMPLE));
+		assertEquals(5, loaded.getGraph().townCount());
+		assertEquals(9, loaded.getGraph().edgeCount());
+		assertEquals(new Integer(22), loaded.calculateRouteDistance(new String[] {"A","E","B","C","D"}));
+		assertEquals(new Integer(9), loaded.calculateShortestRoute("B", "B"));
+	}
+
+	@Test
+	public void testLoadFileWithLineBreaks() throws Exception {
+		Path file = Files.createTempFile("graph", ".txt");
+		try {
+			Files.write(file, "(A,B,5)\n(B,C,4)\r\n(C,A,-2)(A,C,12)".getBytes(StandardCharsets.UTF_8));
+			CompactGraph graph = Trains.loadGraph(file.toString());
+			assertEquals(3, graph.townCount());
+			assertEquals(-2, graph.edgeDistance(graph.id("C"), graph.id("A")));
+			assertEquals(12, graph.edgeDistance(graph.id("A"), graph.id("C")));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testEntriesStraddleBufferBoundaries() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 20000; i++)
+			text.append("(Town").append(i % 997).append(",Town").append((i * 31) % 997).append(',').append(i % 50 + 1).append(") ");
+		CompactGraph streamed = GraphFileLoader.load(Channels.newChannel(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8))));
+		CompactGraph parsed = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList(text.toString().trim()));
+		assertEquals(parsed.townCount(), streamed.townCount());
+		assertEquals(parsed.edgeCount(), streamed.edgeCount());
+		for (int i = 0; i < 997; i++){
+			String from = "Town" + i;
+			String to = "Town" + ((i * 31) % 997);
+			assertEquals(parsed.edgeDistance(parsed.id(from), parsed.id(to)), streamed.edgeDistance(streamed.id(from), streamed.id(to)));
+		}
+	}
+
+	@Test
+	public void testMalformedEntryReportsOffset() {
+		try {
+			GraphFileLoader.parse("(A,B,5) (B,C) (C,D,8)");
+			fail("expected IllegalStateException");
+		} catch (IllegalStateException e){
+			assertTrue(e.getMessage(), e.getMessage().contains("byte offset 12"));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testTruncatedEntry() {
+		GraphFileLoader.parse("(A,B,5) (B,C,4");
+	}
+}
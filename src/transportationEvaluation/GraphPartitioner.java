@@ -0,0 +1,146 @@
+package transportationEvaluation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a transportation system into shards of roughly equal town counts, so that each can be held by a
+ * separate process. Towns are ordered by a breadth-first search over the roads in both directions,
+ * restarted at the lowest unvisited town for every disconnected part, and cut into consecutive runs of
+ * that order; neighbouring towns therefore tend to share a shard, which keeps the boundary overlay small
+ * on geographic networks. No refinement pass is made, so the cut is not minimal.
+ * @author Ryan C Smith
+ */
+public final class GraphPartitioner {
+
+	private GraphPartitioner(){
+	}
+
+	/**
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param shards - number of shards, at least 1.
+	 * @return shard of every town, indexed by town ID.
+	 * @throws IllegalArgumentException - if shards < 1.
+	 */
+	public static int[] assign(CompactGraph graph, int shards){
+		if (shards < 1)
+			throw new IllegalArgumentException("At least one shard is needed.");
+		int townCount = graph.townCount();
+		CompactGraph[] directions = {graph, graph.reverse()};
+		int[] owner = new int[townCount];
+		boolean[] seen = new boolean[townCount];
+		int[] queue = new int[townCount];
+		int perShard = Math.max(1, (townCount + shards - 1) / shards);
+		int head = 0;
+		int tail = 0;
+		for (int seed = 0; seed < townCount; seed++){
+			if (seen[seed])
+				continue;
+			seen[seed] = true;
+			queue[tail++] = seed;
+			while (head < tail){
+				int town = queue[head];
+				owner[town] = head++ / perShard;
+				for (CompactGraph direction : directions){
+					for (int edge = direction.offsets[town], last = direction.offsets[town + 1]; edge < last; edge++){
+						int next = direction.targets[edge];
+						if (!seen[next]){
+							seen[next] = true;
+							queue[tail++] = next;
+						}
+					}
+				}
+			}
+		}
+		return owner;
+	}
+
+	/**
+	 * Splits a graph into shards held in this process.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param shards - number of shards, at least 1.
+	 * @return the shards, indexed by shard number.
+	 * @throws IllegalArgumentException - if shards < 1.
+	 */
+	public static GraphShard[] split(CompactGraph graph, int shards){
+		int[] owner = assign(graph, shards);
+		int townCount = graph.townCount();
+		int[] localId = new int[townCount];
+		int[] shardTowns = new int[shards];
+		boolean[] isBoundary = new boolean[townCount];
+		int[] cutCount = new int[shards];
+		for (int town = 0; town < townCount; town++){
+			localId[town] = shardTowns[owner[town]]++;
+			for (int edge = graph.offsets[town], last = graph.offsets[town + 1]; edge < last; edge++){
+				if (owner[graph.targets[edge]] != owner[town]){
+					isBoundary[town] = true;
+					isBoundary[graph.targets[edge]] = true;
+					cutCount[owner[town]]++;
+				}
+			}
+		}
+		//towns grouped by shard, each group in global ID order (which is also local ID order)
+		int[] first = new int[shards + 1];
+		for (int shard = 0; shard < shards; shard++)
+			first[shard + 1] = first[shard] + shardTowns[shard];
+		int[] members = new int[townCount];
+		for (int town = 0; town < townCount; town++)
+			members[first[owner[town]] + localId[town]] = town;
+		GraphShard[] result = new GraphShard[shards];
+		for (int shard = 0; shard < shards; shard++){
+			CompactGraph.Builder builder = new CompactGraph.Builder();
+			int boundaryCount = 0;
+			for (int i = first[shard]; i < first[shard + 1]; i++){
+				builder.intern(graph.name(members[i]));
+				if (isBoundary[members[i]])
+					boundaryCount++;
+			}
+			int[] boundary = new int[boundaryCount];
+			int[] cutOffsets = new int[shardTowns[shard] + 1];
+			String[] cutTargets = new String[cutCount[shard]];
+			int[] cutDistances = new int[cutCount[shard]];
+			int boundaryIndex = 0;
+			int cut = 0;
+			for (int i = first[shard]; i < first[shard + 1]; i++){
+				int town = members[i];
+				int local = localId[town];
+				if (isBoundary[town])
+					boundary[boundaryIndex++] = local;
+				for (int edge = graph.offsets[town], last = graph.offsets[town + 1]; edge < last; edge++){
+					int target = graph.targets[edge];
+					if (owner[target] == shard)
+						builder.addEdge(local, localId[target], graph.distances[edge]);
+					else {
+						cutTargets[cut] = graph.name(target);
+						cutDistances[cut++] = graph.distances[edge];
+					}
+				}
+				cutOffsets[local + 1] = cut;
+			}
+			result[shard] = new GraphShard(shard, shards, builder.build(), boundary, cutOffsets, cutTargets, cutDistances);
+		}
+		return result;
+	}
+
+	/**
+	 * Splits a graph file into shard files named after it, &lt;graph file&gt;.shard&lt;n&gt;, for Trains --shard.
+	 * @param graphFileName - path of the file containing graph data or a graph snapshot.
+	 * @param shards - number of shards, at least 1.
+	 * @return paths of the shard files, by shard number.
+	 * @throws IOException - if the graph cannot be read or a shard cannot be written.
+	 * @throws IllegalStateException - if the graph file is improperly formatted.
+	 */
+	public static List<Path> writeShards(String graphFileName, int shards) throws IOException {
+		GraphShard[] split = split(Trains.loadGraph(graphFileName), shards);
+		List<Path> files = new ArrayList<Path>(shards);
+		for (GraphShard shard : split){
+			Path file = Paths.get(graphFileName + ".shard" + shard.index());
+			shard.write(file);
+			files.add(file);
+		}
+		return files;
+	}
+}
@@ -0,0 +1,279 @@
+package transportationEvaluation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Shard held in this process: the towns GraphPartitioner assigned to one part of a network, the roads
+ * between them as a CompactGraph, and the roads from them to other shards. Queries run plain Dijkstra
+ * searches on the local graph; the boundary overlay is computed on first use with one search per
+ * boundary town, in parallel on the common ForkJoinPool.
+ * File layout (big-endian): magic, format version, shard index and shard count; the town names; the
+ * offsets, targets and distances of the local graph; the boundary towns; the roads to other shards as
+ * per-town offsets, destination names and distances; and a trailing CRC32 of everything before it.
+ * @author Ryan C Smith
+ */
+public final class GraphShard implements Shard {
+	static final int MAGIC = 0x54525348; //"TRSH"
+	static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Boundary towns searched per fork-join leaf task when the overlay is computed.
+	 */
+	private static final int ROW_BLOCK = 4;
+	private static final int INT_CHUNK = 1 << 14;
+
+	private final int index;
+	private final int shardCount;
+	private final CompactGraph graph;
+	//local IDs of the boundary towns, in overlay order
+	private final int[] boundary;
+	//roads leaving the shard, CSR by local origin town
+	private final int[] cutOffsets;
+	private final String[] cutTargets;
+	private final int[] cutDistances;
+	private volatile CompactGraph overlay;
+
+	GraphShard(int index, int shardCount, CompactGraph graph, int[] boundary, int[] cutOffsets, String[] cutTargets, int[] cutDistances){
+		this.index = index;
+		this.shardCount = shardCount;
+		this.graph = graph;
+		this.boundary = boundary;
+		this.cutOffsets = cutOffsets;
+		this.cutTargets = cutTargets;
+		this.cutDistances = cutDistances;
+	}
+
+	/**
+	 * @return position of this shard among the shards of its network.
+	 */
+	public int index(){
+		return index;
+	}
+
+	/**
+	 * @return number of shards the network was split into.
+	 */
+	public int shardCount(){
+		return shardCount;
+	}
+
+	/**
+	 * @return the towns owned by the shard and the roads between them.
+	 */
+	public CompactGraph graph(){
+		return graph;
+	}
+
+	/**
+	 * @return number of roads from this shard's towns to other shards.
+	 */
+	public int cutRoadCount(){
+		return cutTargets.length;
+	}
+
+	@Override
+	public int boundaryCount(){
+		return boundary.length;
+	}
+
+	@Override
+	public CompactGraph overlay(){
+		CompactGraph result = overlay;
+		if (result == null){
+			final int b = boundary.length;
+			final int[] table = new int[b * b];
+			ForkJoinPool.commonPool().invoke(new RowBlocks((from, to) -> {
+				for (int i = from; i < to; i++){
+					int[] distance = DijkstraSearch.distances(graph, boundary[i]);
+					for (int j = 0; j < b; j++)
+						table[i * b + j] = distance[boundary[j]];
+				}
+			}, 0, b, ROW_BLOCK));
+			CompactGraph.Builder builder = new CompactGraph.Builder();
+			for (int town : boundary)
+				builder.intern(graph.name(town));
+			for (int i = 0; i < b; i++){
+				for (int j = 0; j < b; j++){
+					if (i != j && table[i * b + j] != DijkstraSearch.UNREACHABLE)
+						builder.addEdge(i, j, table[i * b + j]);
+				}
+			}
+			for (int town = 0; town < graph.townCount(); town++){
+				for (int cut = cutOffsets[town]; cut < cutOffsets[town + 1]; cut++)
+					builder.addEdge(builder.intern(graph.name(town)), builder.intern(cutTargets[cut]), cutDistances[cut]);
+			}
+			result = builder.build();
+			overlay = result;
+		}
+		return result;
+	}
+
+	@Override
+	public int[] forward(String start, String end){
+		int startId = graph.id(start);
+		if (startId < 0)
+			return null;
+		int[] distance = DijkstraSearch.distances(graph, startId);
+		int[] reach = new int[1 + boundary.length];
+		int endId = graph.id(end);
+		if (endId < 0)
+			reach[0] = DijkstraSearch.UNREACHABLE;
+		else
+			reach[0] = endId == startId ? DijkstraSearch.shortestCycle(graph, startId, distance) : distance[endId];
+		for (int i = 0; i < boundary.length; i++)
+			reach[1 + i] = distance[boundary[i]];
+		return reach;
+	}
+
+	@Override
+	public int[] backward(String end){
+		int endId = graph.id(end);
+		if (endId < 0)
+			return null;
+		int[] distance = DijkstraSearch.distances(graph.reverse(), endId);
+		int[] reach = new int[boundary.length];
+		for (int i = 0; i < boundary.length; i++)
+			reach[i] = distance[boundary[i]];
+		return reach;
+	}
+
+	@Override
+	public long[] legs(String[] towns){
+		long[] legs = new long[Math.max(0, towns.length - 1)];
+		for (int i = 0; i < legs.length; i++){
+			int from = graph.id(towns[i]);
+			if (from < 0){
+				legs[i] = NOT_OWNED;
+				continue;
+			}
+			int to = graph.id(towns[i + 1]);
+			int edge = to < 0 ? -1 : graph.findEdge(from, to);
+			legs[i] = edge < 0 ? NO_ROAD : graph.distances[edge];
+			for (int cut = cutOffsets[from]; cut < cutOffsets[from + 1] && legs[i] == NO_ROAD; cut++){
+				if (cutTargets[cut].equals(towns[i + 1]))
+					legs[i] = cutDistances[cut];
+			}
+		}
+		return legs;
+	}
+
+	/**
+	 * Writes the shard to a file that read, or Trains --shard, loads again.
+	 * @param file - destination path. Existing files are replaced.
+	 * @throws IOException - if the file cannot be written, or a town name is longer than 65535 bytes.
+	 */
+	public void write(Path file) throws IOException {
+		CheckedOutputStream checked = new CheckedOutputStream(Files.newOutputStream(file), new CRC32());
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16))){
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(index);
+			out.writeInt(shardCount);
+			out.writeInt(graph.townCount());
+			for (int town = 0; town < graph.townCount(); town++)
+				out.writeUTF(graph.name(town));
+			out.writeInt(graph.edgeCount());
+			writeInts(out, graph.offsets);
+			writeInts(out, graph.targets);
+			writeInts(out, graph.distances);
+			out.writeInt(boundary.length);
+			writeInts(out, boundary);
+			out.writeInt(cutTargets.length);
+			writeInts(out, cutOffsets);
+			for (String target : cutTargets)
+				out.writeUTF(target);
+			writeInts(out, cutDistances);
+			out.flush();
+			out.writeLong(checked.getChecksum().getValue());
+		}
+	}
+
+	/**
+	 * Loads a shard written by write and verifies its checksum.
+	 * @param file - shard path.
+	 * @return the shard.
+	 * @throws IOException - if the file cannot be read, is not a shard, has an unsupported version or fails its checksum.
+	 */
+	public static GraphShard read(Path file) throws IOException {
+		CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16), new CRC32());
+		try (DataInputStream in = new DataInputStream(checked)){
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a graph shard: " + file);
+			int version = in.readInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException("Unsupported graph shard version " + version + ": " + file);
+			int index = in.readInt();
+			int shardCount = in.readInt();
+			int townCount = in.readInt();
+			String[] names = new String[townCount];
+			HashMap<String, Integer> ids = new HashMap<String, Integer>(Math.max(16, townCount * 4 / 3 + 1));
+			for (int town = 0; town < townCount; town++){
+				names[town] = in.readUTF();
+				ids.put(names[town], town);
+			}
+			int edgeCount = in.readInt();
+			int[] offsets = readInts(in, townCount + 1);
+			int[] targets = readInts(in, edgeCount);
+			int[] distances = readInts(in, edgeCount);
+			int[] boundary = readInts(in, in.readInt());
+			int cutCount = in.readInt();
+			int[] cutOffsets = readInts(in, townCount + 1);
+			String[] cutTargets = new String[cutCount];
+			for (int cut = 0; cut < cutCount; cut++)
+				cutTargets[cut] = in.readUTF();
+			int[] cutDistances = readInts(in, cutCount);
+			long expected = checked.getChecksum().getValue();
+			if (in.readLong() != expected || in.read() >= 0)
+				throw new IOException("Graph shard checksum mismatch: " + file);
+			CompactGraph graph = new CompactGraph(names, ids, offsets, targets, distances);
+			return new GraphShard(index, shardCount, graph, boundary, cutOffsets, cutTargets, cutDistances);
+		} catch (NegativeArraySizeException | EOFException e){
+			throw new IOException("Graph shard is truncated or corrupt: " + file);
+		}
+	}
+
+	/**
+	 * Arrays go through a byte buffer of up to INT_CHUNK values rather than one stream call per value.
+	 */
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(4 * Math.min(values.length, INT_CHUNK));
+		for (int done = 0; done < values.length; ){
+			int chunk = Math.min(values.length - done, INT_CHUNK);
+			bytes.clear();
+			bytes.asIntBuffer().put(values, done, chunk);
+			out.write(bytes.array(), 0, 4 * chunk);
+			done += chunk;
+		}
+	}
+
+	private static int[] readInts(DataInputStream in, int count) throws IOException {
+		int[] values = new int[count];
+		byte[] bytes = new byte[4 * Math.min(count, INT_CHUNK)];
+		for (int done = 0; done < count; ){
+			int chunk = Math.min(count - done, INT_CHUNK);
+			in.readFully(bytes, 0, 4 * chunk);
+			ByteBuffer.wrap(bytes, 0, 4 * chunk).asIntBuffer().get(values, done, chunk);
+			done += chunk;
+		}
+		return values;
+	}
+
+	@Override
+	public String toString(){
+		return "GraphShard " + index + "/" + shardCount + " (" + graph.townCount() + " towns, " + boundary.length
+				+ " boundary, " + cutTargets.length + " cut roads)";
+	}
+}
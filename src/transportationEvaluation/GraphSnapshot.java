@@ -0,0 +1,209 @@
+package transportationEvaluation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned, checksummed binary snapshot of a CompactGraph.
+ * Layout (big-endian): a header of magic, format version, town count, road count and name table size;
+ * the name table as length-prefixed UTF-8 strings padded to a 4-byte boundary; the offsets, targets and
+ * distances arrays exactly as CompactGraph holds them; and a trailing CRC32 of everything before it.
+ * Loading memory-maps the file and bulk-copies each array section, so no per-road parsing happens at startup.
+ * @author Ryan C Smith
+ */
+public final class GraphSnapshot {
+	static final int MAGIC = 0x54524753; //"TRGS"
+	static final int FORMAT_VERSION = 1;
+	static final int HEADER_BYTES = 20;
+
+	/**
+	 * Largest region mapped at once when copying an array section.
+	 */
+	private static final long MAP_CHUNK = 1L << 30;
+
+	private GraphSnapshot(){
+	}
+
+	/**
+	 * Writes a snapshot of a graph.
+	 * @param graph - CompactGraph to write.
+	 * @param file - destination path. Existing files are replaced.
+	 * @throws IOException - if the file cannot be written.
+	 */
+	public static void write(CompactGraph graph, Path file) throws IOException {
+		byte[][] encodedNames = new byte[graph.townCount()][];
+		long nameBytes = 0;
+		for (int i = 0; i < encodedNames.length; i++){
+			encodedNames[i] = graph.names[i].getBytes(StandardCharsets.UTF_8);
+			nameBytes += 4 + encodedNames[i].length;
+		}
+		nameBytes = (nameBytes + 3) & ~3L;
+		if (nameBytes > Integer.MAX_VALUE)
+			throw new IOException("Town name table is too large for the snapshot format.");
+		CRC32 checksum = new CRC32();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)){
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+			buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(graph.townCount()).putInt(graph.edgeCount()).putInt((int) nameBytes);
+			long written = HEADER_BYTES;
+			for (byte[] name : encodedNames){
+				ensureSpace(channel, buffer, checksum, 4);
+				buffer.putInt(name.length);
+				for (int offset = 0; offset < name.length; ){
+					ensureSpace(channel, buffer, checksum, 1);
+					int chunk = Math.min(buffer.remaining(), name.length - offset);
+					buffer.put(name, offset, chunk);
+					offset += chunk;
+				}
+				written += 4 + name.length;
+			}
+			for (; written < HEADER_BYTES + nameBytes; written++){
+				ensureSpace(channel, buffer, checksum, 1);
+				buffer.put((byte) 0);
+			}
+			writeInts(channel, buffer, checksum, graph.offsets);
+			writeInts(channel, buffer, checksum, graph.targets);
+			writeInts(channel, buffer, checksum, graph.distances);
+			flush(channel, buffer, checksum);
+			buffer.putLong(checksum.getValue());
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Loads a snapshot and verifies its checksum.
+	 * @param file - snapshot path.
+	 * @return the graph held in the snapshot.
+	 * @throws IOException - if the file cannot be read, is not a snapshot, has an unsupported version or fails its checksum.
+	 */
+	public static CompactGraph read(Path file) throws IOException {
+		return read(file, true);
+	}
+
+	/**
+	 * Loads a snapshot.
+	 * @param file - snapshot path.
+	 * @param verify - whether to check the CRC32 trailer. Skipping it avoids one pass over the file.
+	 * @return the graph held in the snapshot.
+	 * @throws IOException - if the file cannot be read, is not a snapshot, has an unsupported version or fails its checksum.
+	 */
+	public static CompactGraph read(Path file, boolean verify) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			long size = channel.size();
+			if (size < HEADER_BYTES + 8)
+				throw new IOException("File is too short to be a graph snapshot: " + file);
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			if (header.getInt() != MAGIC)
+				throw new IOException("Not a graph snapshot: " + file);
+			int version = header.getInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException("Unsupported graph snapshot version " + version + ": " + file);
+			int townCount = header.getInt();
+			int edgeCount = header.getInt();
+			int nameBytes = header.getInt();
+			long offsetsStart = HEADER_BYTES + (long) nameBytes;
+			long targetsStart = offsetsStart + 4L * (townCount + 1);
+			long distancesStart = targetsStart + 4L * edgeCount;
+			long trailerStart = distancesStart + 4L * edgeCount;
+			if (townCount < 0 || edgeCount < 0 || nameBytes < 0 || trailerStart + 8 != size)
+				throw new IOException("Graph snapshot is truncated or corrupt: " + file);
+			if (verify){
+				if (!checksumMatches(channel, trailerStart))
+					throw new IOException("Graph snapshot checksum mismatch: " + file);
+			}
+			String[] names = new String[townCount];
+			HashMap<String, Integer> ids = new HashMap<String, Integer>(Math.max(16, townCount * 4 / 3 + 1));
+			MappedByteBuffer nameTable = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, nameBytes);
+			byte[] scratch = new byte[64];
+			for (int i = 0; i < townCount; i++){
+				int length = nameTable.getInt();
+				if (length > scratch.length)
+					scratch = new byte[Math.max(length, scratch.length * 2)];
+				nameTable.get(scratch, 0, length);
+				names[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+				ids.put(names[i], i);
+			}
+			int[] offsets = readInts(channel, offsetsStart, townCount + 1);
+			int[] targets = readInts(channel, targetsStart, edgeCount);
+			int[] distances = readInts(channel, distancesStart, edgeCount);
+			return new CompactGraph(names, ids, offsets, targets, distances);
+		}
+	}
+
+	/**
+	 * Checks whether a file starts with the snapshot magic number.
+	 * @param file - path to check.
+	 * @return true if the file looks like a graph snapshot.
+	 * @throws IOException - if the file cannot be read.
+	 */
+	public static boolean isSnapshot(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			ByteBuffer magic = ByteBuffer.allocate(4);
+			while (magic.hasRemaining() && channel.read(magic) >= 0){
+			}
+			return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+		}
+	}
+
+	/**
+	 * Compares the CRC32 of the first trailerStart bytes of a file with the long stored right after them.
+	 */
+	static boolean checksumMatches(FileChannel channel, long trailerStart) throws IOException {
+		return checksum(channel, trailerStart) == channel.map(FileChannel.MapMode.READ_ONLY, trailerStart, 8).getLong();
+	}
+
+	/**
+	 * @return CRC32 of the first length bytes of the file, read through memory maps.
+	 */
+	static long checksum(FileChannel channel, long length) throws IOException {
+		CRC32 checksum = new CRC32();
+		for (long position = 0; position < length; position += MAP_CHUNK)
+			checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK, length - position)));
+		return checksum.getValue();
+	}
+
+	static int[] readInts(FileChannel channel, long start, int count) throws IOException {
+		int[] values = new int[count];
+		int done = 0;
+		while (done < count){
+			int chunk = (int) Math.min(count - done, MAP_CHUNK / 4);
+			IntBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start + 4L * done, 4L * chunk).asIntBuffer();
+			mapped.get(values, done, chunk);
+			done += chunk;
+		}
+		return values;
+	}
+
+	static void writeInts(FileChannel channel, ByteBuffer buffer, CRC32 checksum, int[] values) throws IOException {
+		for (int done = 0; done < values.length; ){
+			ensureSpace(channel, buffer, checksum, 4);
+			int chunk = Math.min(buffer.remaining() / 4, values.length - done);
+			buffer.asIntBuffer().put(values, done, chunk);
+			buffer.position(buffer.position() + 4 * chunk);
+			done += chunk;
+		}
+	}
+
+	static void ensureSpace(FileChannel channel, ByteBuffer buffer, CRC32 checksum, int bytes) throws IOException {
+		if (buffer.remaining() < bytes)
+			flush(channel, buffer, checksum);
+	}
+
+	static void flush(FileChannel channel, ByteBuffer buffer, CRC32 checksum) throws IOException {
+		buffer.flip();
+		checksum.update(buffer.duplicate());
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+}
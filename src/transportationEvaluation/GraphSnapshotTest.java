@@ -0,0 +1,65 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for binary graph snapshots.
+ * @author Ryan C Smith
+ */
+public class GraphSnapshotTest {
+	Path text;
+	Path snapshot;
+
+	@Before
+	public void setUp() throws Exception {
+		text = Files.createTempFile("graph", ".txt");
+		snapshot = Files.createTempFile("graph", ".snapshot");
+		Files.write(text, "(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7) (Z\u00fcrich,A,1)".getBytes(StandardCharsets.UTF_8));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(text);
+		Files.deleteIfExists(snapshot);
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		CompactGraph original = Trains.compileGraph(text.toString(), snapshot.toString());
+		assertTrue(GraphSnapshot.isSnapshot(snapshot));
+		assertFalse(GraphSnapshot.isSnapshot(text));
+		CompactGraph loaded = Trains.loadGraph(snapshot.toString());
+		assertEquals(original.townCount(), loaded.townCount());
+		assertEquals(original.edgeCount(), loaded.edgeCount());
+		for (int town = 0; town < original.townCount(); town++){
+			assertEquals(original.name(town), loaded.name(town));
+			assertEquals(town, loaded.id(original.name(town)));
+			for (int edge = original.firstEdge(town); edge < original.endEdge(town); edge++){
+				assertEquals(original.target(edge), loaded.target(edge));
+				assertEquals(original.distance(edge), loaded.distance(edge));
+			}
+		}
+		assertEquals(new Integer(9), new RouteMap(loaded).calculateShortestRoute("B", "B"));
+		assertEquals(1, loaded.edgeDistance(loaded.id("Z\u00fcrich"), loaded.id("A")));
+	}
+
+	@Test(expected = IOException.class)
+	public void testCorruptionIsDetected() throws Exception {
+		Trains.compileGraph(text.toString(), snapshot.toString());
+		try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")){
+			file.seek(file.length() - 12);
+			file.write(0x7F);
+		}
+		GraphSnapshot.read(snapshot);
+	}
+}
@@ -0,0 +1,156 @@
+package transportationEvaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch of road changes to apply to a transportation system in one step: new roads, closed roads and
+ * changed distances. Operations take effect in the order they were added. Applying a batch never changes
+ * the graph it is applied to; it builds a new CompactGraph with the next version number, so readers of
+ * the old version are unaffected (copy-on-write). Only added roads create towns; new towns are given IDs
+ * after the existing ones.
+ * @author Ryan C Smith
+ */
+public final class GraphUpdate {
+	private final List<String> from = new ArrayList<String>();
+	private final List<String> to = new ArrayList<String>();
+	private final List<Integer> distance = new ArrayList<Integer>();
+	private final List<Change> change = new ArrayList<Change>();
+
+	private enum Change {
+		ADD, REMOVE, REWEIGHT
+	}
+
+	/**
+	 * Adds a road. Adding a road between towns that are already connected adds a parallel road.
+	 * @param fromTown - origin town, created if it is not part of the graph.
+	 * @param toTown - destination town, created if it is not part of the graph.
+	 * @param roadDistance - length of the road.
+	 * @return this batch, for chaining.
+	 */
+	public GraphUpdate addRoad(String fromTown, String toTown, int roadDistance){
+		return record(Change.ADD, fromTown, toTown, roadDistance);
+	}
+
+	/**
+	 * Closes every road from one town to another. Closing a road that does not exist, including one between
+	 * towns that are not part of the graph, has no effect.
+	 * @param fromTown - origin town.
+	 * @param toTown - destination town.
+	 * @return this batch, for chaining.
+	 */
+	public GraphUpdate removeRoad(String fromTown, String toTown){
+		return record(Change.REMOVE, fromTown, toTown, 0);
+	}
+
+	/**
+	 * Changes the length of every road from one town to another.
+	 * @param fromTown - origin town.
+	 * @param toTown - destination town.
+	 * @param roadDistance - new length of the road.
+	 * @return this batch, for chaining.
+	 */
+	public GraphUpdate setDistance(String fromTown, String toTown, int roadDistance){
+		return record(Change.REWEIGHT, fromTown, toTown, roadDistance);
+	}
+
+	/**
+	 * @return number of operations in the batch.
+	 */
+	public int size(){
+		return change.size();
+	}
+
+	private GraphUpdate record(Change kind, String fromTown, String toTown, int roadDistance){
+		from.add(fromTown);
+		to.add(toTown);
+		distance.add(roadDistance);
+		change.add(kind);
+		return this;
+	}
+
+	/**
+	 * Builds the next version of a graph with this batch applied.
+	 * @param graph - current version of the graph. Not modified.
+	 * @return new CompactGraph with version graph.version() + 1.
+	 * @throws IllegalStateException - if a distance is changed on a road that does not exist.
+	 */
+	public CompactGraph applyTo(CompactGraph graph){
+		CompactGraph.Builder builder = new CompactGraph.Builder();
+		for (int town = 0; town < graph.townCount(); town++)
+			builder.intern(graph.names[town]);
+		//replay the batch into per-pair outcomes; pairIndex maps (from << 32 | to) to a position in pairs
+		LongLongHashMap pairIndex = new LongLongHashMap(change.size());
+		List<PairChange> pairs = new ArrayList<PairChange>();
+		for (int i = 0; i < change.size(); i++){
+			//only added roads create towns; the others name towns already in the graph or added earlier in the batch
+			boolean adding = change.get(i) == Change.ADD;
+			int fromId = adding ? builder.intern(from.get(i)) : builder.id(from.get(i));
+			int toId = adding ? builder.intern(to.get(i)) : builder.id(to.get(i));
+			if (fromId < 0 || toId < 0){
+				if (change.get(i) == Change.REMOVE)
+					continue;
+				throw new IllegalStateException("No road from " + from.get(i) + " to " + to.get(i) + " to change.");
+			}
+			long key = (long) fromId << 32 | toId;
+			int index = (int) pairIndex.get(key, -1);
+			if (index < 0){
+				index = pairs.size();
+				pairs.add(new PairChange(fromId, toId));
+				pairIndex.addTo(key, index);
+			}
+			PairChange pair = pairs.get(index);
+			switch (change.get(i)){
+			case ADD:
+				pair.added.add(distance.get(i));
+				break;
+			case REMOVE:
+				pair.closed = true;
+				pair.newDistance = null;
+				pair.added.clear();
+				break;
+			default:
+				boolean existing = !pair.closed && fromId < graph.townCount() && toId < graph.townCount()
+						&& graph.findEdge(fromId, toId) >= 0;
+				if (!existing && pair.added.isEmpty())
+					throw new IllegalStateException("No road from " + from.get(i) + " to " + to.get(i) + " to change.");
+				if (existing)
+					pair.newDistance = distance.get(i);
+				for (int j = 0; j < pair.added.size(); j++)
+					pair.added.set(j, distance.get(i));
+			}
+		}
+		for (int town = 0; town < graph.townCount(); town++){
+			for (int edge = graph.offsets[town]; edge < graph.offsets[town + 1]; edge++){
+				int target = graph.targets[edge];
+				int index = (int) pairIndex.get((long) town << 32 | target, -1);
+				PairChange pair = index < 0 ? null : pairs.get(index);
+				if (pair == null)
+					builder.addEdge(town, target, graph.distances[edge]);
+				else if (!pair.closed)
+					builder.addEdge(town, target, pair.newDistance == null ? graph.distances[edge] : pair.newDistance);
+			}
+		}
+		for (PairChange pair : pairs){
+			for (int added : pair.added)
+				builder.addEdge(pair.fromId, pair.toId, added);
+		}
+		return builder.build(graph.version + 1);
+	}
+
+	/**
+	 * Net effect of the batch on the roads between one pair of towns.
+	 */
+	private static final class PairChange {
+		final int fromId;
+		final int toId;
+		boolean closed;
+		Integer newDistance;
+		final List<Integer> added = new ArrayList<Integer>();
+
+		PairChange(int fromId, int toId){
+			this.fromId = fromId;
+			this.toId = toId;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for batched, versioned updates to a RouteMap.
+ * @author Ryan C Smith
+ */
+public class GraphUpdateTest {
+	RouteMap routes;
+
+	@Before
+	public void setUp() throws Exception {
+		routes = new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testAddRoad() {
+		assertEquals(1, routes.apply(new GraphUpdate().addRoad("A", "C", 1).addRoad("E", "F", 2)));
+		assertEquals(new Integer(1), routes.calculateShortestRoute("A", "C"));
+		assertEquals(new Integer(5), routes.calculateShortestRoute("A", "F"));
+		assertEquals(new Integer(13), routes.calculateRouteDistance(new String[]{"A","B","C","E","F"}));
+	}
+
+	@Test
+	public void testRemoveRoad() {
+		routes.apply(new GraphUpdate().removeRoad("A", "B").removeRoad("X", "Y"));
+		assertNull(routes.calculateRouteDistance(new String[]{"A","B","C"}));
+		assertEquals(new Integer(10), routes.calculateShortestRoute("A", "B"));
+		assertEquals(8, routes.getGraph().edgeCount());
+	}
+
+	@Test
+	public void testRemoveRoadBetweenUnknownTowns() {
+		routes.apply(new GraphUpdate().removeRoad("X", "Y").removeRoad("A", "Z").removeRoad("Z", "A"));
+		assertEquals(5, routes.getGraph().townCount());
+		assertEquals(-1, routes.getGraph().id("X"));
+		assertEquals(-1, routes.getGraph().id("Z"));
+		assertEquals(9, routes.getGraph().edgeCount());
+		routes.apply(new GraphUpdate().addRoad("E", "F", 2).removeRoad("E", "F"));
+		assertEquals(6, routes.getGraph().townCount());
+		assertNull(routes.calculateShortestRoute("A", "F"));
+		try {
+			routes.apply(new GraphUpdate().setDistance("A", "Y", 3));
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e){
+		}
+		assertEquals(-1, routes.getGraph().id("Y"));
+	}
+
+	@Test
+	public void testSetDistance() {
+		routes.apply(new GraphUpdate().setDistance("A", "B", 1).addRoad("B", "A", 2).setDistance("B", "A", 3));
+		assertEquals(new Integer(5), routes.calculateRouteDistance(new String[]{"A","B","C"}));
+		assertEquals(new Integer(4), routes.calculateShortestRoute("A", "A"));
+	}
+
+	@Test
+	public void testOperationsApplyInOrder() {
+		routes.apply(new GraphUpdate().removeRoad("A", "B").addRoad("A", "B", 2));
+		assertEquals(new Integer(2), routes.calculateRouteDistance(new String[]{"A","B"}));
+		routes.apply(new GraphUpdate().addRoad("B", "A", 2).removeRoad("B", "A"));
+		assertNull(routes.calculateRouteDistance(new String[]{"B","A"}));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSetDistanceOnMissingRoad() {
+		routes.apply(new GraphUpdate().setDistance("B", "A", 3));
+	}
+
+	@Test
+	public void testFailedBatchChangesNothing() {
+		CompactGraph before = routes.getGraph();
+		try {
+			routes.apply(new GraphUpdate().addRoad("A", "C", 1).setDistance("B", "A", 3));
+			fail();
+		} catch (IllegalStateException e){
+		}
+		assertSame(before, routes.getGraph());
+		assertEquals(0, routes.getVersion());
+	}
+
+	@Test
+	public void testOldVersionUnchanged() {
+		CompactGraph before = routes.getGraph();
+		routes.apply(new GraphUpdate().removeRoad("A", "B"));
+		assertEquals(0, before.version());
+		assertEquals(1, routes.getVersion());
+		assertEquals(new Integer(9), new RouteMap(before).calculateRouteDistance(new String[]{"A","B","C"}));
+	}
+
+	@Test
+	public void testQueryIsPinnedToOneVersion() {
+		VersionedResult<Integer> result = routes.query(pinned -> {
+			Integer first = pinned.calculateShortestRoute("A", "C");
+			routes.apply(new GraphUpdate().addRoad("A", "C", 1));
+			return first + pinned.calculateShortestRoute("A", "C");
+		});
+		assertEquals(new Integer(18), result.value());
+		assertEquals(0, result.version());
+		assertEquals(new Integer(1), routes.calculateShortestRoute("A", "C"));
+	}
+
+	@Test
+	public void testCacheClearsAfterUpdate() {
+		ShortestPathCache cache = new ShortestPathCache(routes, 1 << 20);
+		assertEquals(new Integer(9), cache.calculateShortestRoute("A", "C"));
+		routes.apply(new GraphUpdate().setDistance("A", "B", 1));
+		assertEquals(new Integer(5), cache.calculateShortestRoute("A", "C"));
+		assertEquals(2, cache.misses());
+	}
+
+	@Test
+	public void testConcurrentReadersSeeConsistentVersions() throws Exception {
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		Thread[] readers = new Thread[4];
+		for (int i = 0; i < readers.length; i++){
+			readers[i] = new Thread(() -> {
+				while (!done.get()){
+					//every version has A->B->C distance 9 + version, so the pair must agree
+					VersionedResult<Integer> result = routes.query(pinned -> pinned.calculateRouteDistance(new String[]{"A","B","C"}));
+					if (result.value() != 9 + result.version())
+						failure.set(result.toString());
+				}
+			});
+			readers[i].start();
+		}
+		for (int version = 1; version <= 200; version++)
+			routes.apply(new GraphUpdate().setDistance("A", "B", 5 + version));
+		done.set(true);
+		for (Thread reader : readers)
+			reader.join();
+		assertNull(failure.get());
+		assertEquals(200, routes.getVersion());
+	}
+}
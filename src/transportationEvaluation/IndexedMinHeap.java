@@ -0,0 +1,134 @@
+package transportationEvaluation;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap over town IDs in the range [0, capacity) keyed by int priorities.
+ * Keeps the heap position of every town so that decreaseKey runs in O(log n) without
+ * searching, which is what Dijkstra's algorithm needs when a shorter route to a queued town is found.
+ * @author Ryan C Smith
+ */
+public final class IndexedMinHeap {
+	private final int[] heap;
+	private final int[] keys;
+	private final int[] position;
+	private int size;
+
+	/**
+	 * @param capacity - number of distinct town IDs the heap can hold.
+	 */
+	public IndexedMinHeap(int capacity){
+		heap = new int[capacity];
+		keys = new int[capacity];
+		position = new int[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 * @return true if no towns are queued.
+	 */
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * @return number of towns queued.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @param town - town ID.
+	 * @return true if the town is currently queued.
+	 */
+	public boolean contains(int town){
+		return position[town] >= 0;
+	}
+
+	/**
+	 * @return priority of the town at the top of the heap.
+	 */
+	public int minKey(){
+		return keys[heap[0]];
+	}
+
+	/**
+	 * Queues a town, or lowers its priority if it is already queued with a higher one.
+	 * @param town - town ID.
+	 * @param key - priority of the town.
+	 */
+	public void insertOrDecrease(int town, int key){
+		int index = position[town];
+		if (index < 0){
+			index = size++;
+			heap[index] = town;
+			position[town] = index;
+		}
+		else if (key >= keys[town])
+			return;
+		keys[town] = key;
+		siftUp(index);
+	}
+
+	/**
+	 * Removes the town with the lowest priority.
+	 * @return ID of the removed town.
+	 */
+	public int poll(){
+		int top = heap[0];
+		position[top] = -1;
+		size--;
+		if (size > 0){
+			int last = heap[size];
+			heap[0] = last;
+			position[last] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	/**
+	 * Removes every queued town. Runs in O(size) rather than O(capacity).
+	 */
+	public void clear(){
+		for (int i = 0; i < size; i++)
+			position[heap[i]] = -1;
+		size = 0;
+	}
+
+	private void siftUp(int index){
+		int town = heap[index];
+		int key = keys[town];
+		while (index > 0){
+			int parent = (index - 1) >>> 1;
+			int parentTown = heap[parent];
+			if (keys[parentTown] <= key)
+				break;
+			heap[index] = parentTown;
+			position[parentTown] = index;
+			index = parent;
+		}
+		heap[index] = town;
+		position[town] = index;
+	}
+
+	private void siftDown(int index){
+		int town = heap[index];
+		int key = keys[town];
+		int half = size >>> 1;
+		while (index < half){
+			int child = 2 * index + 1;
+			int right = child + 1;
+			if (right < size && keys[heap[right]] < keys[heap[child]])
+				child = right;
+			if (key <= keys[heap[child]])
+				break;
+			heap[index] = heap[child];
+			position[heap[index]] = index;
+			index = child;
+		}
+		heap[index] = town;
+		position[town] = index;
+	}
+}
@@ -0,0 +1,205 @@
+package transportationEvaluation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Landmark distance tables for ALT (A*, landmarks and the triangle inequality) shortest route search.
+ * A few landmark towns are chosen far apart (each new one is the town farthest from those already
+ * chosen) and the shortest distances from and to every landmark are stored. For any town v and
+ * destination t, the triangle inequality gives d(v, t) >= d(L, t) - d(L, v) and d(v, t) >= d(v, L) - d(t, L);
+ * the largest of these bounds steers an A* search towards the destination. The bounds are consistent, so
+ * every town is settled at most once and the result equals DijkstraSearch.shortestDistance.
+ * Preprocessing is one forward and one backward Dijkstra search per landmark. Tables are interleaved by
+ * town so the bounds for one town are read from one place. Roads must not be negative.
+ * @author Ryan C Smith
+ */
+public final class Landmarks {
+	/**
+	 * Landmarks chosen by build(graph). Tables take 8 bytes per town per landmark.
+	 */
+	public static final int DEFAULT_COUNT = 8;
+
+	private final CompactGraph graph;
+	private final int[] landmarks;
+	private final int[] fromLandmark;
+	private final int[] toLandmark;
+
+	private Landmarks(CompactGraph graph, int[] landmarks, int[] fromLandmark, int[] toLandmark){
+		this.graph = graph;
+		this.landmarks = landmarks;
+		this.fromLandmark = fromLandmark;
+		this.toLandmark = toLandmark;
+	}
+
+	/**
+	 * Chooses DEFAULT_COUNT landmarks (fewer for tiny graphs) and computes their tables on the common ForkJoinPool.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @return landmark tables for the graph.
+	 * @throws IllegalStateException - if the graph has a road with a negative distance.
+	 */
+	public static Landmarks build(CompactGraph graph){
+		return build(graph, DEFAULT_COUNT, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param count - number of landmarks; capped at the number of towns.
+	 * @param pool - pool the backward searches run on. Choosing landmarks is sequential, since each
+	 * choice depends on the forward distances of the previous ones.
+	 * @return landmark tables for the graph.
+	 * @throws IllegalArgumentException - if count is less than 1.
+	 * @throws IllegalStateException - if the graph has a road with a negative distance.
+	 */
+	public static Landmarks build(final CompactGraph graph, int count, ForkJoinPool pool){
+		if (count < 1)
+			throw new IllegalArgumentException("At least one landmark is needed.");
+		for (int edge = 0; edge < graph.edgeCount(); edge++){
+			if (graph.distances[edge] < 0)
+				throw new IllegalStateException("Landmark bounds need non-negative distances; found " + graph.distances[edge] + ".");
+		}
+		final int townCount = graph.townCount();
+		final int k = Math.min(count, townCount);
+		final int[] chosen = new int[k];
+		final int[] fromLandmark = new int[townCount * k];
+		final int[] toLandmark = new int[townCount * k];
+		//distance from the nearest chosen landmark; UNREACHABLE sorts as farthest so other components get a landmark
+		int[] nearest = new int[townCount];
+		Arrays.fill(nearest, DijkstraSearch.UNREACHABLE);
+		int next = townCount == 0 ? 0 : farthest(DijkstraSearch.distances(graph, 0), null);
+		for (int i = 0; i < k; i++){
+			chosen[i] = next;
+			int[] distance = DijkstraSearch.distances(graph, next);
+			for (int town = 0; town < townCount; town++){
+				fromLandmark[town * k + i] = distance[town];
+				nearest[town] = Math.min(nearest[town], distance[town]);
+			}
+			next = farthest(nearest, chosen);
+		}
+		final CompactGraph reverse = graph.reverse();
+		pool.invoke(new RowBlocks((from, to) -> {
+			for (int i = from; i < to; i++){
+				int[] distance = DijkstraSearch.distances(reverse, chosen[i]);
+				for (int town = 0; town < townCount; town++)
+					toLandmark[town * k + i] = distance[town];
+			}
+		}, 0, k, 1));
+		return new Landmarks(graph, chosen, fromLandmark, toLandmark);
+	}
+
+	/**
+	 * @return the town with the largest distance, skipping towns already chosen. Ties go to the lowest ID.
+	 */
+	private static int farthest(int[] distance, int[] chosen){
+		int best = -1;
+		for (int town = 0; town < distance.length; town++){
+			if (distance[town] == 0 || (best >= 0 && distance[town] <= distance[best]))
+				continue;
+			if (chosen == null || !contains(chosen, town))
+				best = town;
+		}
+		return best < 0 ? 0 : best;
+	}
+
+	private static boolean contains(int[] towns, int town){
+		for (int chosen : towns){
+			if (chosen == town)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the graph the tables were computed on.
+	 */
+	public CompactGraph graph(){
+		return graph;
+	}
+
+	/**
+	 * @return IDs of the landmark towns.
+	 */
+	public int[] landmarks(){
+		return landmarks.clone();
+	}
+
+	/**
+	 * Lower bound on the shortest distance between two towns.
+	 * @param town - ID of the origin town.
+	 * @param target - ID of the destination town.
+	 * @return a distance no longer than the shortest route, or DijkstraSearch.UNREACHABLE if the tables prove there is no route.
+	 */
+	public int lowerBound(int town, int target){
+		int k = landmarks.length;
+		long bound = 0;
+		for (int i = 0; i < k; i++){
+			bound = Math.max(bound, bound(fromLandmark[target * k + i], fromLandmark[town * k + i],
+					toLandmark[town * k + i], toLandmark[target * k + i]));
+		}
+		return (int) Math.min(bound, DijkstraSearch.UNREACHABLE);
+	}
+
+	/**
+	 * Bound from one landmark L: d(L, t) - d(L, v) and d(v, L) - d(t, L). A missing table entry means the
+	 * route is at least Integer.MAX_VALUE long (or absent), so it stands in as Integer.MAX_VALUE; a bound
+	 * that reaches Integer.MAX_VALUE proves v has no route to t shorter than the unreachable marker.
+	 */
+	private static long bound(int landmarkToTarget, int landmarkToTown, int townToLandmark, int targetToLandmark){
+		long bound = 0;
+		if (landmarkToTown != DijkstraSearch.UNREACHABLE)
+			bound = landmarkToTarget - (long) landmarkToTown;
+		if (targetToLandmark != DijkstraSearch.UNREACHABLE)
+			bound = Math.max(bound, townToLandmark - (long) targetToLandmark);
+		return bound;
+	}
+
+	/**
+	 * Calculates the shortest route between two towns with A* search guided by the landmark bounds.
+	 * When source == target the shortest cycle through the town is returned, as with DijkstraSearch.
+	 * @param source - ID of the start town.
+	 * @param target - ID of the destination town.
+	 * @return the shortest distance, or DijkstraSearch.UNREACHABLE, and the number of towns settled.
+	 */
+	public SearchResult search(int source, int target){
+		int townCount = graph.townCount();
+		int[] distance = new int[townCount];
+		Arrays.fill(distance, DijkstraSearch.UNREACHABLE);
+		IndexedMinHeap heap = new IndexedMinHeap(townCount);
+		if (source == target)
+			relax(source, 0, target, distance, heap);
+		else{
+			int bound = lowerBound(source, target);
+			if (bound == DijkstraSearch.UNREACHABLE)
+				return new SearchResult(DijkstraSearch.UNREACHABLE, 0);
+			distance[source] = 0;
+			heap.insertOrDecrease(source, bound);
+		}
+		int settled = 0;
+		while (!heap.isEmpty()){
+			int town = heap.poll();
+			settled++;
+			if (town == target)
+				return new SearchResult(distance[town], settled);
+			relax(town, distance[town], target, distance, heap);
+		}
+		return new SearchResult(DijkstraSearch.UNREACHABLE, settled);
+	}
+
+	/**
+	 * Relaxes the roads leaving a settled town, keying each reached town by its distance plus its lower
+	 * bound. Towns that provably cannot reach the target, or only with a route past Integer.MAX_VALUE, are not queued.
+	 */
+	private void relax(int town, int townDistance, int target, int[] distance, IndexedMinHeap heap){
+		for (int edge = graph.offsets[town], end = graph.offsets[town + 1]; edge < end; edge++){
+			long candidate = (long) townDistance + graph.distances[edge];
+			int next = graph.targets[edge];
+			if (candidate >= distance[next])
+				continue;
+			long key = candidate + (next == target ? 0 : lowerBound(next, target));
+			if (key >= DijkstraSearch.UNREACHABLE)
+				continue;
+			distance[next] = (int) candidate;
+			heap.insertOrDecrease(next, (int) key);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for landmark tables and ALT search.
+ * @author Ryan C Smith
+ */
+public class LandmarksTest {
+	CompactGraph graph;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testMatchesDijkstra() {
+		Landmarks landmarks = Landmarks.build(graph);
+		assertEquals(graph.townCount(), landmarks.landmarks().length);
+		assertMatchesDijkstra(landmarks);
+		assertEquals(9, landmarks.search(graph.id("B"), graph.id("B")).distance());
+	}
+
+	@Test
+	public void testMatchesDijkstraOnRandomGraphs() {
+		Random random = new Random(13);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (int trial = 0; trial < 300; trial++){
+			CompactGraph randomGraph = BidirectionalSearchTest.randomGraph(random, 1 + random.nextInt(30), trial % 2 == 0 ? 3 : 40);
+			assertMatchesDijkstra(Landmarks.build(randomGraph, 1 + random.nextInt(4), pool));
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testBoundsNeverOverestimate() {
+		Landmarks landmarks = Landmarks.build(graph, 2, ForkJoinPool.commonPool());
+		for (int town = 0; town < graph.townCount(); town++){
+			for (int target = 0; target < graph.townCount(); target++){
+				if (town != target)
+					assertTrue(landmarks.lowerBound(town, target) <= DijkstraSearch.shortestDistance(graph, town, target));
+			}
+		}
+	}
+
+	@Test
+	public void testRoutesNearIntegerLimit() {
+		CompactGraph far = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,5) (B,C,2147483640) (C,D,3)"));
+		Landmarks landmarks = Landmarks.build(far, 1, ForkJoinPool.commonPool());
+		assertEquals(2147483645, landmarks.search(far.id("A"), far.id("C")).distance());
+		assertFalse(landmarks.search(far.id("A"), far.id("D")).found());
+		assertEquals(2147483643, landmarks.search(far.id("B"), far.id("D")).distance());
+	}
+
+	@Test
+	public void testSettlesFewerTownsOnGrid() {
+		int side = 40;
+		CompactGraph.Builder builder = new CompactGraph.Builder();
+		for (int town = 0; town < side * side; town++)
+			builder.intern("T" + town);
+		for (int row = 0; row < side; row++){
+			for (int column = 0; column < side; column++){
+				int town = row * side + column;
+				if (column + 1 < side){
+					builder.addEdge(town, town + 1, 10);
+					builder.addEdge(town + 1, town, 10);
+				}
+				if (row + 1 < side){
+					builder.addEdge(town, town + side, 10);
+					builder.addEdge(town + side, town, 10);
+				}
+			}
+		}
+		CompactGraph grid = builder.build();
+		int start = side / 2 * side;
+		int end = start + side - 1;
+		SearchResult dijkstra = DijkstraSearch.search(grid, start, end);
+		SearchResult alt = Landmarks.build(grid).search(start, end);
+		assertEquals(dijkstra.distance(), alt.distance());
+		assertTrue(alt.settled() < dijkstra.settled() / 2);
+	}
+
+	@Test
+	public void testRouteMapIgnoresLandmarksAfterUpdate() {
+		RouteMap routes = new RouteMap(graph);
+		routes.useLandmarks(Landmarks.build(graph));
+		assertNotNull(routes.getLandmarks());
+		assertEquals(new Integer(9), routes.calculateShortestRoute("A", "C", SearchStrategy.ALT));
+		assertEquals(new Integer(9), routes.query(pinned -> pinned.calculateShortestRoute("C", "C", SearchStrategy.ALT)).value());
+		routes.apply(new GraphUpdate().addRoad("A", "C", 1));
+		assertNull(routes.getLandmarks());
+		try {
+			routes.calculateShortestRoute("A", "C", SearchStrategy.ALT);
+			fail("Stale landmarks were used.");
+		}
+		catch (IllegalStateException expected){
+		}
+		assertEquals(new Integer(1), routes.calculateShortestRoute("A", "C", SearchStrategy.BIDIRECTIONAL));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRouteMapRejectsLandmarksOfOtherGraph() {
+		new RouteMap(graph).useLandmarks(Landmarks.build(CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,1)"))));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNegativeDistance() {
+		Landmarks.build(CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,-1)")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNeedsOneLandmark() {
+		Landmarks.build(graph, 0, ForkJoinPool.commonPool());
+	}
+
+	private static void assertMatchesDijkstra(Landmarks landmarks){
+		CompactGraph graph = landmarks.graph();
+		for (int start = 0; start < graph.townCount(); start++){
+			for (int end = 0; end < graph.townCount(); end++)
+				assertEquals(DijkstraSearch.shortestDistance(graph, start, end), landmarks.search(start, end).distance());
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package transportationEvaluation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, lock-free histogram of non-negative values such as latencies in nanoseconds.
+ * Buckets are log-linear, as in HdrHistogram: every power of two is split into SUB_BUCKETS equal
+ * buckets, so any recorded value is reported within 1/SUB_BUCKETS (12.5%) of its true value while the
+ * whole range of a long fits in 488 counters. Recording is one array increment and two LongAdder adds.
+ * @author Ryan C Smith
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	/**
+	 * Buckets per power of two.
+	 */
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+
+	/**
+	 * @param value - value to record; negative values are recorded as 0.
+	 */
+	public void record(long value){
+		if (value < 0)
+			value = 0;
+		counts.incrementAndGet(bucket(value));
+		total.increment();
+		sum.add(value);
+	}
+
+	/**
+	 * Values below SUB_BUCKETS get a bucket each; above that, the bucket is the power of two followed by
+	 * the next SUB_BUCKET_BITS bits of the value.
+	 */
+	static int bucket(long value){
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		if (magnitude < SUB_BUCKET_BITS)
+			return (int) value;
+		return (magnitude - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS | (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+	}
+
+	/**
+	 * @return the largest value that falls in a bucket.
+	 */
+	static long bucketLimit(int bucket){
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+		long lowest = (long) (SUB_BUCKETS | bucket & (SUB_BUCKETS - 1)) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/**
+	 * @return number of values recorded.
+	 */
+	public long count(){
+		return total.sum();
+	}
+
+	/**
+	 * @return sum of the values recorded.
+	 */
+	public long sum(){
+		return sum.sum();
+	}
+
+	/**
+	 * @param quantile - fraction of values, between 0 and 1.
+	 * @return upper limit of the bucket holding that quantile, or 0 if nothing was recorded.
+	 */
+	public long valueAtQuantile(double quantile){
+		long[] snapshot = snapshot();
+		long recorded = 0;
+		for (long count : snapshot)
+			recorded += count;
+		long rank = Math.max(1, (long) Math.ceil(quantile * recorded));
+		long seen = 0;
+		for (int bucket = 0; bucket < snapshot.length; bucket++){
+			seen += snapshot[bucket];
+			if (seen >= rank)
+				return bucketLimit(bucket);
+		}
+		return 0;
+	}
+
+	/**
+	 * @return count of every bucket. Buckets recorded into while the copy is made may or may not be included.
+	 */
+	long[] snapshot(){
+		long[] snapshot = new long[counts.length()];
+		for (int bucket = 0; bucket < snapshot.length; bucket++)
+			snapshot[bucket] = counts.get(bucket);
+		return snapshot;
+	}
+
+	/**
+	 * Forgets every recorded value.
+	 */
+	public void reset(){
+		for (int bucket = 0; bucket < counts.length(); bucket++)
+			counts.set(bucket, 0);
+		total.reset();
+		sum.reset();
+	}
+}
@@ -0,0 +1,149 @@
+package transportationEvaluation;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to long values. Used to hold search states such as
+ * (town, distance) pairs without boxing them into Long objects.
+ * Keys must not be Long.MIN_VALUE, which marks empty slots.
+ * @author Ryan C Smith
+ */
+public final class LongLongHashMap {
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private long[] keys;
+	private long[] values;
+	private int size;
+	private int mask;
+
+	/**
+	 * @param expectedSize - number of entries the map should hold before it needs to grow.
+	 */
+	public LongLongHashMap(int expectedSize){
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+		allocate(capacity);
+	}
+
+	/**
+	 * @return number of entries in the map.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @param key - key being sought.
+	 * @param missing - value returned if the key is absent.
+	 * @return value mapped to the key, or missing.
+	 */
+	public long get(long key, long missing){
+		int slot = slot(key);
+		while (keys[slot] != EMPTY){
+			if (keys[slot] == key)
+				return values[slot];
+			slot = (slot + 1) & mask;
+		}
+		return missing;
+	}
+
+	/**
+	 * Adds delta to the value mapped to key, inserting the key with value delta if it is absent.
+	 * @param key - key to update.
+	 * @param delta - amount to add.
+	 * @return true if the key was newly inserted.
+	 * @throws ArithmeticException - if the sum overflows a long.
+	 */
+	public boolean addTo(long key, long delta){
+		int slot = slot(key);
+		while (keys[slot] != EMPTY){
+			if (keys[slot] == key){
+				values[slot] = Math.addExact(values[slot], delta);
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = delta;
+		if (++size * 2 > keys.length)
+			rehash(keys.length * 2);
+		return true;
+	}
+
+	/**
+	 * Removes a key from the map.
+	 * @param key - key to remove.
+	 * @param missing - value returned if the key is absent.
+	 * @return value that was mapped to the key, or missing.
+	 */
+	public long remove(long key, long missing){
+		int slot = slot(key);
+		while (keys[slot] != EMPTY){
+			if (keys[slot] == key){
+				long value = values[slot];
+				shiftBack(slot);
+				size--;
+				return value;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return missing;
+	}
+
+	/**
+	 * Removes every entry while keeping the allocated table.
+	 */
+	public void clear(){
+		if (size > 0){
+			Arrays.fill(keys, EMPTY);
+			size = 0;
+		}
+	}
+
+	/**
+	 * Backward-shift deletion keeps probe sequences intact without tombstones.
+	 */
+	private void shiftBack(int hole){
+		int slot = hole;
+		while (true){
+			slot = (slot + 1) & mask;
+			long key = keys[slot];
+			if (key == EMPTY)
+				break;
+			int home = slot(key);
+			//move the entry into the hole unless its home lies cyclically in (hole, slot]
+			if (((slot - home) & mask) >= ((slot - hole) & mask)){
+				keys[hole] = key;
+				values[hole] = values[slot];
+				hole = slot;
+			}
+		}
+		keys[hole] = EMPTY;
+	}
+
+	private int slot(long key){
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity){
+		keys = new long[capacity];
+		values = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+	}
+
+	private void rehash(int capacity){
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++){
+			if (oldKeys[i] != EMPTY){
+				int slot = slot(oldKeys[i]);
+				while (keys[slot] != EMPTY)
+					slot = (slot + 1) & mask;
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package transportationEvaluation;
+
+import java.util.Arrays;
+
+/**
+ * Growable binary min-heap of primitive longs.
+ * @author Ryan C Smith
+ */
+public final class LongMinHeap {
+	private long[] heap;
+	private int size;
+
+	/**
+	 * @param capacity - initial capacity.
+	 */
+	public LongMinHeap(int capacity){
+		heap = new long[Math.max(4, capacity)];
+	}
+
+	/**
+	 * @return true if the heap holds no values.
+	 */
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * @return number of values in the heap.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @param value - value to add.
+	 */
+	public void add(long value){
+		if (size == heap.length)
+			heap = Arrays.copyOf(heap, size * 2);
+		int index = size++;
+		while (index > 0){
+			int parent = (index - 1) >>> 1;
+			if (heap[parent] <= value)
+				break;
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = value;
+	}
+
+	/**
+	 * Removes the smallest value.
+	 * @return the smallest value.
+	 */
+	public long poll(){
+		long top = heap[0];
+		long last = heap[--size];
+		int index = 0;
+		int half = size >>> 1;
+		while (index < half){
+			int child = 2 * index + 1;
+			if (child + 1 < size && heap[child + 1] < heap[child])
+				child++;
+			if (last <= heap[child])
+				break;
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = last;
+		return top;
+	}
+
+	/**
+	 * Removes every value while keeping the allocated storage.
+	 */
+	public void clear(){
+		size = 0;
+	}
+}
@@ -0,0 +1,113 @@
+package transportationEvaluation;
+
+import java.util.List;
+
+/**
+ * Result of a ParetoSearch: the routes between two towns that no other route beats on both distance and
+ * stops. Routes are indexed by increasing stops, and so by decreasing distance; route 0 has the fewest
+ * stops and the last route is the shortest. Each route is traced back through the search's labels only
+ * when it is asked for.
+ * @author Ryan C Smith
+ */
+public final class ParetoFront {
+	/**
+	 * Parent of the first label of every route.
+	 */
+	static final int NO_LABEL = -1;
+
+	private final CompactGraph graph;
+	private final int[] labelTown;
+	private final int[] labelDistance;
+	private final int[] labelStops;
+	private final int[] labelParent;
+	//labels settled at the destination, in the order they were settled: decreasing stops
+	private final int[] front;
+	private final int settled;
+
+	ParetoFront(CompactGraph graph, int[] labelTown, int[] labelDistance, int[] labelStops, int[] labelParent, int[] front, int settled){
+		this.graph = graph;
+		this.labelTown = labelTown;
+		this.labelDistance = labelDistance;
+		this.labelStops = labelStops;
+		this.labelParent = labelParent;
+		this.front = front;
+		this.settled = settled;
+	}
+
+	/**
+	 * @return the graph the routes were found on.
+	 */
+	public CompactGraph graph(){
+		return graph;
+	}
+
+	/**
+	 * @return number of routes on the front; 0 if no route exists within the stop limit.
+	 */
+	public int size(){
+		return front.length;
+	}
+
+	/**
+	 * @return number of labels the search settled.
+	 */
+	public int settled(){
+		return settled;
+	}
+
+	private int label(int route){
+		if (route < 0 || route >= front.length)
+			throw new IndexOutOfBoundsException("Route " + route + " of " + front.length);
+		return front[front.length - 1 - route];
+	}
+
+	/**
+	 * @param route - index of a route on the front.
+	 * @return number of stops on the route.
+	 */
+	public int stops(int route){
+		return labelStops[label(route)];
+	}
+
+	/**
+	 * @param route - index of a route on the front.
+	 * @return total distance of the route.
+	 */
+	public int distance(int route){
+		return labelDistance[label(route)];
+	}
+
+	/**
+	 * @param maxStops - the maximum number of stops allowed.
+	 * @return index of the shortest route with at most maxStops stops, or -1 if there is none.
+	 */
+	public int shortestWithin(int maxStops){
+		int route = -1;
+		while (route + 1 < front.length && stops(route + 1) <= maxStops)
+			route++;
+		return route;
+	}
+
+	/**
+	 * @param route - index of a route on the front.
+	 * @return IDs of the towns visited in order, starting with the origin and ending with the destination.
+	 */
+	public int[] path(int route){
+		int label = label(route);
+		int[] path = new int[labelStops[label] + 1];
+		for (int i = path.length - 1; i >= 0; i--){
+			path[i] = labelTown[label];
+			label = labelParent[label];
+		}
+		return path;
+	}
+
+	/**
+	 * Same route as path, as town names. Names are looked up as the list is read, not copied.
+	 * @param route - index of a route on the front.
+	 * @return unmodifiable list of the names of the towns visited in order.
+	 */
+	public List<String> route(int route){
+		return graph.names(path(route));
+	}
+}
@@ -0,0 +1,114 @@
+package transportationEvaluation;
+
+import java.util.Arrays;
+
+/**
+ * Label-setting search over two criteria, total distance and number of stops, between two towns.
+ * A label is one partial route: the town it ends at, its distance, its stops and the label it extends.
+ * Labels are settled in increasing distance, so a label is dominated, and dropped, exactly when its town
+ * already has a settled label with no more stops; each town therefore settles at most maxStops + 1
+ * labels, with strictly decreasing stops, and the labels settled at the destination form the Pareto front.
+ * Labels that cannot reach the destination in fewer stops than the best route found so far, or within
+ * maxStops, are pruned with the fewest stops from every town to the destination, computed by a
+ * breadth-first search over the reverse adjacency index.
+ * Labels live in parallel int arrays and are referenced from the heap by index, so a search allocates a
+ * few arrays rather than an object per label. Roads must not be negative.
+ * @author Ryan C Smith
+ */
+public final class ParetoSearch {
+
+	private ParetoSearch(){
+	}
+
+	/**
+	 * Finds every Pareto-optimal route between two towns with at most maxStops stops: for each number of
+	 * stops, the shortest route, unless a route with fewer stops is at least as short. As with
+	 * DijkstraSearch, start == end searches for cycles, and every route has at least one stop.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param source - ID of the origin town.
+	 * @param target - ID of the destination town.
+	 * @param maxStops - the maximum number of stops allowed on a route.
+	 * @return the routes on the front, by increasing stops and decreasing distance; empty if there are none.
+	 * @throws IllegalStateException - if the graph has a road with a negative distance.
+	 */
+	public static ParetoFront search(CompactGraph graph, int source, int target, int maxStops){
+		for (int edge = 0; edge < graph.edgeCount(); edge++){
+			if (graph.distances[edge] < 0)
+				throw new IllegalStateException("Pareto routes need non-negative roads; found " + graph.distances[edge] + ".");
+		}
+		int[] stopsTo = RouteEnumerator.stopsTo(graph, target);
+		//fewest stops of any settled label at each town; labels with at least as many are dominated
+		int[] minStops = new int[graph.townCount()];
+		Arrays.fill(minStops, Integer.MAX_VALUE);
+		Labels labels = new Labels();
+		//heap entries are (distance << 32 | label), so labels come out in increasing distance
+		LongMinHeap heap = new LongMinHeap(64);
+		heap.add(labels.add(source, 0, 0, ParetoFront.NO_LABEL));
+		int[] frontLabels = new int[4];
+		int frontSize = 0;
+		//routes need fewer stops than this to be worth extending: maxStops + 1 until the front has a route
+		long stopLimit = Math.max(maxStops, -1) + 1L;
+		int settled = 0;
+		while (!heap.isEmpty()){
+			int label = (int) heap.poll();
+			int town = labels.town[label];
+			int stops = labels.stops[label];
+			if (stops >= minStops[town] || stops + (long) stopsTo[town] >= stopLimit)
+				continue;
+			settled++;
+			//the label at the origin of a cycle search is not a route to the target yet, nor a bound on its cycles
+			if (stops > 0 || town != target)
+				minStops[town] = stops;
+			if (town == target && stops > 0){
+				//labels come out in increasing distance, so a label can only be dominated by the next one, at equal distance
+				if (frontSize > 0 && labels.distance[frontLabels[frontSize - 1]] == labels.distance[label])
+					frontSize--;
+				if (frontSize == frontLabels.length)
+					frontLabels = Arrays.copyOf(frontLabels, 2 * frontSize);
+				frontLabels[frontSize++] = label;
+				stopLimit = stops;
+				continue;
+			}
+			int distance = labels.distance[label];
+			for (int edge = graph.offsets[town], last = graph.offsets[town + 1]; edge < last; edge++){
+				int next = graph.targets[edge];
+				long nextDistance = (long) distance + graph.distances[edge];
+				if (nextDistance >= DijkstraSearch.UNREACHABLE || stops + 1 >= minStops[next]
+						|| stops + 1 + (long) stopsTo[next] >= stopLimit)
+					continue;
+				heap.add(labels.add(next, (int) nextDistance, stops + 1, label));
+			}
+		}
+		return new ParetoFront(graph, labels.town, labels.distance, labels.stops, labels.parent,
+				Arrays.copyOf(frontLabels, frontSize), settled);
+	}
+
+	/**
+	 * Growable columns of labels.
+	 */
+	private static final class Labels {
+		int[] town = new int[64];
+		int[] distance = new int[64];
+		int[] stops = new int[64];
+		int[] parent = new int[64];
+		int size;
+
+		/**
+		 * @return heap entry of the new label.
+		 */
+		long add(int town, int distance, int stops, int parent){
+			if (size == this.town.length){
+				int capacity = 2 * size;
+				this.town = Arrays.copyOf(this.town, capacity);
+				this.distance = Arrays.copyOf(this.distance, capacity);
+				this.stops = Arrays.copyOf(this.stops, capacity);
+				this.parent = Arrays.copyOf(this.parent, capacity);
+			}
+			this.town[size] = town;
+			this.distance[size] = distance;
+			this.stops[size] = stops;
+			this.parent[size] = parent;
+			return (long) distance << 32 | size++;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the distance and stops Pareto search.
+ * @author Ryan C Smith
+ */
+public class ParetoSearchTest {
+	RouteMap routes;
+
+	@Before
+	public void setUp() throws Exception {
+		routes = new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testCycleFront() {
+		ParetoFront front = routes.calculateParetoRoutes("C", "C", 10);
+		assertEquals(2, front.size());
+		assertEquals(2, front.stops(0));
+		assertEquals(16, front.distance(0));
+		assertEquals(Arrays.asList("C", "D", "C"), front.route(0));
+		assertEquals(3, front.stops(1));
+		assertEquals(9, front.distance(1));
+		assertEquals(Arrays.asList("C", "E", "B", "C"), front.route(1));
+		assertEquals(-1, front.shortestWithin(1));
+		assertEquals(0, front.shortestWithin(2));
+		assertEquals(1, front.shortestWithin(5));
+	}
+
+	@Test
+	public void testShortestRouteWithinStops() {
+		assertEquals(Integer.valueOf(9), routes.calculateShortestRouteWithinStops("A", "C", 2));
+		assertEquals(Integer.valueOf(16), routes.calculateShortestRouteWithinStops("C", "C", 2));
+		assertEquals(Integer.valueOf(9), routes.calculateShortestRouteWithinStops("C", "C", 3));
+		assertNull(routes.calculateShortestRouteWithinStops("C", "C", 1));
+		assertNull(routes.calculateShortestRouteWithinStops("A", "A", 10));
+		assertNull(routes.calculateParetoRoutes("A", "F", 10));
+		assertEquals(0, routes.calculateParetoRoutes("A", "C", 0).size());
+	}
+
+	@Test
+	public void testMatchesStopLayeredDistances() {
+		Random random = new Random(20);
+		for (int round = 0; round < 300; round++){
+			CompactGraph graph = BidirectionalSearchTest.randomGraph(random, 1 + random.nextInt(25), 1 + random.nextInt(30));
+			int source = random.nextInt(graph.townCount());
+			int target = random.nextInt(graph.townCount());
+			int maxStops = random.nextInt(12);
+			ParetoFront front = ParetoSearch.search(graph, source, target, maxStops);
+			//shortest walk with exactly k stops, by Bellman-Ford rounds, then the front of the running minimum
+			long[] exact = new long[graph.townCount()];
+			Arrays.fill(exact, Long.MAX_VALUE);
+			exact[source] = 0;
+			long best = Long.MAX_VALUE;
+			int route = 0;
+			for (int stops = 1; stops <= maxStops; stops++){
+				long[] next = new long[graph.townCount()];
+				Arrays.fill(next, Long.MAX_VALUE);
+				for (int town = 0; town < graph.townCount(); town++){
+					if (exact[town] == Long.MAX_VALUE)
+						continue;
+					for (int edge = graph.offsets[town]; edge < graph.offsets[town + 1]; edge++)
+						next[graph.targets[edge]] = Math.min(next[graph.targets[edge]], exact[town] + graph.distances[edge]);
+				}
+				exact = next;
+				if (exact[target] < best && exact[target] < DijkstraSearch.UNREACHABLE){
+					best = exact[target];
+					assertEquals(stops, front.stops(route));
+					assertEquals(best, front.distance(route));
+					assertRoute(graph, front.path(route), source, target, stops, (int) best);
+					route++;
+				}
+			}
+			assertEquals(route, front.size());
+		}
+	}
+
+	private static void assertRoute(CompactGraph graph, int[] path, int source, int target, int stops, int distance){
+		assertEquals(stops + 1, path.length);
+		assertEquals(source, path[0]);
+		assertEquals(target, path[stops]);
+		long total = 0;
+		for (int i = 0; i < stops; i++){
+			long road = Long.MAX_VALUE;
+			for (int edge = graph.offsets[path[i]]; edge < graph.offsets[path[i] + 1]; edge++){
+				if (graph.targets[edge] == path[i + 1])
+					road = Math.min(road, graph.distances[edge]);
+			}
+			total += road;
+		}
+		assertEquals(distance, total);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNegativeRoadRejected() {
+		new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,A,-2)")).calculateParetoRoutes("A", "B", 3);
+	}
+}
@@ -0,0 +1,441 @@
+package transportationEvaluation;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-operation counters, latency histograms and optional query traces for a RouteMap.
+ * Instrumentation is off until a QueryMetrics is attached with RouteMap.setMetrics; while none is
+ * attached each query pays only a null check. When attached, each query records its latency, the
+ * number of towns or search states it settled and, if enabled, the bytes its thread allocated.
+ * All updates are lock-free (LongAdder and atomic arrays), so one instance can be shared by every thread.
+ * Snapshots can be exported as JSON or in the Prometheus text exposition format.
+ * @author Ryan C Smith
+ */
+public final class QueryMetrics {
+	/**
+	 * Kinds of work measured separately.
+	 */
+	public enum Operation {
+		/** RouteMap.calculateRouteDistance. */
+		ROUTE_DISTANCE,
+		/** RouteMap.calculateShortestRoute and searchShortestRoute. */
+		SHORTEST_ROUTE,
+		/** RouteMap.calculateShortestPath and calculateShortestPathTree. */
+		SHORTEST_PATH,
+		/** RouteMap.calculateNumberOfRoutesByDistance and calculateNumberOfRoutesByDistanceFrom. */
+		ROUTES_BY_DISTANCE,
+		/** RouteMap.calculateNumberOfRoutesByStops. */
+		ROUTES_BY_STOPS,
+		/** RouteMap.calculateParetoRoutes and calculateShortestRouteWithinStops. Settled counts labels. */
+		PARETO_ROUTES,
+		/** Trains.loadGraph: parsing a graph file or mapping a snapshot. Settled counts the towns loaded. */
+		LOAD
+	}
+
+	/**
+	 * A query being measured: the metrics it is recorded in, when it started and how much its thread had
+	 * allocated by then. Obtain one with start and hand it to record when the query completes.
+	 */
+	public static final class Span {
+		private final QueryMetrics metrics;
+		private final long startNanos;
+		private final long startBytes;
+
+		private Span(QueryMetrics metrics){
+			this.metrics = metrics;
+			this.startNanos = System.nanoTime();
+			this.startBytes = metrics.allocatedBytes();
+		}
+	}
+
+	/**
+	 * One measured query, kept when tracing is enabled.
+	 */
+	public static final class QueryTrace {
+		private final long sequence;
+		private final Operation operation;
+		private final String start;
+		private final String end;
+		private final long version;
+		private final long nanos;
+		private final long settled;
+		private final long allocatedBytes;
+
+		QueryTrace(long sequence, Operation operation, String start, String end, long version, long nanos, long settled, long allocatedBytes){
+			this.sequence = sequence;
+			this.operation = operation;
+			this.start = start;
+			this.end = end;
+			this.version = version;
+			this.nanos = nanos;
+			this.settled = settled;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		/**
+		 * @return position of the query among all traced queries, starting at 0.
+		 */
+		public long sequence(){
+			return sequence;
+		}
+
+		/**
+		 * @return kind of query.
+		 */
+		public Operation operation(){
+			return operation;
+		}
+
+		/**
+		 * @return origin town (or file, for LOAD), possibly null.
+		 */
+		public String start(){
+			return start;
+		}
+
+		/**
+		 * @return destination town, possibly null.
+		 */
+		public String end(){
+			return end;
+		}
+
+		/**
+		 * @return graph version the query ran against.
+		 */
+		public long version(){
+			return version;
+		}
+
+		/**
+		 * @return latency of the query in nanoseconds.
+		 */
+		public long nanos(){
+			return nanos;
+		}
+
+		/**
+		 * @return towns or search states settled, 0 where the operation does not search.
+		 */
+		public long settled(){
+			return settled;
+		}
+
+		/**
+		 * @return bytes allocated by the query's thread, or 0 when allocation tracking is off.
+		 */
+		public long allocatedBytes(){
+			return allocatedBytes;
+		}
+
+		@Override
+		public String toString(){
+			return operation + " " + start + "->" + end + " @v" + version + " " + nanos + "ns " + settled + " settled " + allocatedBytes + "B";
+		}
+	}
+
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+	private static final int PROMETHEUS_FIRST_POWER = 10;
+	private static final int PROMETHEUS_LAST_POWER = 36;
+
+	private final LongAdder[] calls = adders();
+	private final LongAdder[] settled = adders();
+	private final LongAdder[] allocated = adders();
+	private final LatencyHistogram[] latency = new LatencyHistogram[Operation.values().length];
+	private final boolean trackAllocations;
+	private final AtomicReferenceArray<QueryTrace> traces;
+	private final AtomicLong traced = new AtomicLong();
+
+	/**
+	 * Counters and latency histograms only: no allocation tracking and no traces.
+	 */
+	public QueryMetrics(){
+		this(0, false);
+	}
+
+	/**
+	 * @param traceCapacity - number of most recent queries to keep traces of; 0 disables tracing.
+	 * @param trackAllocations - whether to measure the bytes each query allocates. Reading the thread's
+	 * allocation counter costs a few hundred nanoseconds per query, and is skipped on JVMs without one.
+	 */
+	public QueryMetrics(int traceCapacity, boolean trackAllocations){
+		if (traceCapacity < 0)
+			throw new IllegalArgumentException("Trace capacity cannot be negative.");
+		for (int i = 0; i < latency.length; i++)
+			latency[i] = new LatencyHistogram();
+		this.trackAllocations = trackAllocations && THREADS != null;
+		this.traces = traceCapacity == 0 ? null : new AtomicReferenceArray<QueryTrace>(traceCapacity);
+	}
+
+	private static LongAdder[] adders(){
+		LongAdder[] adders = new LongAdder[Operation.values().length];
+		for (int i = 0; i < adders.length; i++)
+			adders[i] = new LongAdder();
+		return adders;
+	}
+
+	private static com.sun.management.ThreadMXBean threads(){
+		try {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ? threads : null;
+		} catch (ClassCastException | LinkageError e){
+			return null;
+		}
+	}
+
+	/**
+	 * @return bytes allocated so far by the calling thread, or 0 when allocation tracking is off. Pass it to record.
+	 */
+	public long allocatedBytes(){
+		return trackAllocations ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+
+	/**
+	 * Starts measuring a query.
+	 * @param metrics - metrics to record the query in, or null when instrumentation is off.
+	 * @return span to pass to record, or null if metrics is null. Costs nothing without metrics.
+	 */
+	public static Span start(QueryMetrics metrics){
+		return metrics == null ? null : new Span(metrics);
+	}
+
+	/**
+	 * Records a query started with start. Does nothing if span is null.
+	 * @param span - value returned by start.
+	 * @param operation - kind of query.
+	 * @param settled - towns or search states settled, 0 if the operation does not search.
+	 * @param version - graph version the query ran against.
+	 * @param start - origin of the query, only kept in traces.
+	 * @param end - destination of the query, only kept in traces.
+	 */
+	public static void record(Span span, Operation operation, long settled, long version, String start, String end){
+		if (span != null)
+			span.metrics.record(operation, span.startNanos, span.startBytes, settled, version, start, end);
+	}
+
+	/**
+	 * Records one completed query.
+	 * @param operation - kind of query.
+	 * @param startNanos - System.nanoTime() when the query started.
+	 * @param startBytes - allocatedBytes() when the query started.
+	 * @param settled - towns or search states settled, 0 if the operation does not search.
+	 * @param version - graph version the query ran against.
+	 * @param start - origin of the query, only kept in traces.
+	 * @param end - destination of the query, only kept in traces.
+	 */
+	public void record(Operation operation, long startNanos, long startBytes, long settled, long version, String start, String end){
+		long nanos = System.nanoTime() - startNanos;
+		long bytes = trackAllocations ? allocatedBytes() - startBytes : 0;
+		int i = operation.ordinal();
+		calls[i].increment();
+		latency[i].record(nanos);
+		if (settled != 0)
+			this.settled[i].add(settled);
+		if (bytes != 0)
+			allocated[i].add(bytes);
+		if (traces != null){
+			long sequence = traced.getAndIncrement();
+			traces.set((int) (sequence % traces.length()), new QueryTrace(sequence, operation, start, end, version, nanos, settled, bytes));
+		}
+	}
+
+	/**
+	 * @return number of queries of a kind recorded.
+	 */
+	public long calls(Operation operation){
+		return calls[operation.ordinal()].sum();
+	}
+
+	/**
+	 * @return total towns or search states settled by queries of a kind.
+	 */
+	public long settled(Operation operation){
+		return settled[operation.ordinal()].sum();
+	}
+
+	/**
+	 * @return total bytes allocated by queries of a kind, 0 when allocation tracking is off.
+	 */
+	public long allocatedBytes(Operation operation){
+		return allocated[operation.ordinal()].sum();
+	}
+
+	/**
+	 * @return latency histogram of a kind of query, in nanoseconds.
+	 */
+	public LatencyHistogram latency(Operation operation){
+		return latency[operation.ordinal()];
+	}
+
+	/**
+	 * @return the most recent traces, oldest first; empty when tracing is off.
+	 */
+	public List<QueryTrace> traces(){
+		List<QueryTrace> recent = new ArrayList<QueryTrace>();
+		if (traces == null)
+			return recent;
+		long last = traced.get();
+		for (long sequence = Math.max(0, last - traces.length()); sequence < last; sequence++){
+			QueryTrace trace = traces.get((int) (sequence % traces.length()));
+			//a slot may still hold an older trace, or already a newer one, while writers race
+			if (trace != null && trace.sequence() == sequence)
+				recent.add(trace);
+		}
+		return recent;
+	}
+
+	/**
+	 * Clears every counter, histogram and trace.
+	 */
+	public void reset(){
+		for (int i = 0; i < latency.length; i++){
+			calls[i].reset();
+			settled[i].reset();
+			allocated[i].reset();
+			latency[i].reset();
+		}
+		if (traces != null){
+			for (int slot = 0; slot < traces.length(); slot++)
+				traces.set(slot, null);
+		}
+	}
+
+	/**
+	 * @return snapshot of every operation as a JSON object, latencies in nanoseconds.
+	 */
+	public String toJson(){
+		StringBuilder json = new StringBuilder("{\"operations\":{");
+		for (Operation operation : Operation.values()){
+			LatencyHistogram histogram = latency(operation);
+			if (operation.ordinal() > 0)
+				json.append(',');
+			json.append('"').append(name(operation)).append("\":{")
+				.append("\"calls\":").append(calls(operation))
+				.append(",\"settled\":").append(settled(operation))
+				.append(",\"allocatedBytes\":").append(allocatedBytes(operation))
+				.append(",\"latencyNanos\":{\"sum\":").append(histogram.sum())
+				.append(",\"p50\":").append(histogram.valueAtQuantile(0.5))
+				.append(",\"p90\":").append(histogram.valueAtQuantile(0.9))
+				.append(",\"p99\":").append(histogram.valueAtQuantile(0.99))
+				.append(",\"max\":").append(histogram.valueAtQuantile(1)).append("}}");
+		}
+		json.append("},\"traces\":[");
+		List<QueryTrace> recent = traces();
+		for (int i = 0; i < recent.size(); i++){
+			QueryTrace trace = recent.get(i);
+			if (i > 0)
+				json.append(',');
+			json.append("{\"sequence\":").append(trace.sequence())
+				.append(",\"operation\":\"").append(name(trace.operation())).append('"')
+				.append(",\"start\":").append(quote(trace.start()))
+				.append(",\"end\":").append(quote(trace.end()))
+				.append(",\"version\":").append(trace.version())
+				.append(",\"nanos\":").append(trace.nanos())
+				.append(",\"settled\":").append(trace.settled())
+				.append(",\"allocatedBytes\":").append(trace.allocatedBytes()).append('}');
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * @return snapshot in the Prometheus text exposition format. Latencies are exported as a cumulative
+	 * histogram in seconds with a fixed boundary at every power of two from about 1 microsecond to about 69 seconds.
+	 */
+	public String toPrometheus(){
+		StringBuilder text = new StringBuilder();
+		text.append("# HELP route_queries_total Queries answered, by operation.\n# TYPE route_queries_total counter\n");
+		for (Operation operation : Operation.values())
+			text.append("route_queries_total{operation=\"").append(name(operation)).append("\"} ").append(calls(operation)).append('\n');
+		text.append("# HELP route_settled_total Towns or search states settled, by operation.\n# TYPE route_settled_total counter\n");
+		for (Operation operation : Operation.values())
+			text.append("route_settled_total{operation=\"").append(name(operation)).append("\"} ").append(settled(operation)).append('\n');
+		text.append("# HELP route_allocated_bytes_total Bytes allocated by queries, by operation.\n# TYPE route_allocated_bytes_total counter\n");
+		for (Operation operation : Operation.values())
+			text.append("route_allocated_bytes_total{operation=\"").append(name(operation)).append("\"} ").append(allocatedBytes(operation)).append('\n');
+		text.append("# HELP route_query_seconds Query latency, by operation.\n# TYPE route_query_seconds histogram\n");
+		for (Operation operation : Operation.values()){
+			LatencyHistogram histogram = latency(operation);
+			long[] counts = histogram.snapshot();
+			long cumulative = 0;
+			int bucket = 0;
+			for (int power = PROMETHEUS_FIRST_POWER; power <= PROMETHEUS_LAST_POWER; power++){
+				//bucket groups end on powers of two, so every bucket below the boundary is counted whole
+				for (; bucket < counts.length && LatencyHistogram.bucketLimit(bucket) < 1L << power; bucket++)
+					cumulative += counts[bucket];
+				appendBucket(text, operation, String.format(Locale.ROOT, "%.9f", (1L << power) / 1e9), cumulative);
+			}
+			for (; bucket < counts.length; bucket++)
+				cumulative += counts[bucket];
+			appendBucket(text, operation, "+Inf", cumulative);
+			text.append("route_query_seconds_sum{operation=\"").append(name(operation)).append("\"} ")
+				.append(String.format(Locale.ROOT, "%.9f", histogram.sum() / 1e9)).append('\n');
+			text.append("route_query_seconds_count{operation=\"").append(name(operation)).append("\"} ").append(cumulative).append('\n');
+		}
+		return text.toString();
+	}
+
+	private static void appendBucket(StringBuilder text, Operation operation, String limit, long cumulative){
+		text.append("route_query_seconds_bucket{operation=\"").append(name(operation)).append("\",le=\"").append(limit).append("\"} ")
+			.append(cumulative).append('\n');
+	}
+
+	/**
+	 * Writes toJson() to a file, replacing it in one step so readers never see a partial snapshot.
+	 * @param file - destination file.
+	 * @throws IOException
+	 */
+	public void writeJson(Path file) throws IOException {
+		write(file, toJson());
+	}
+
+	/**
+	 * Writes toPrometheus() to a file, for example one read by the node exporter's textfile collector.
+	 * @param file - destination file.
+	 * @throws IOException
+	 */
+	public void writePrometheus(Path file) throws IOException {
+		write(file, toPrometheus());
+	}
+
+	private static void write(Path file, String text) throws IOException {
+		Path absolute = file.toAbsolutePath();
+		Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temporary, text.getBytes(StandardCharsets.UTF_8));
+			Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private static String name(Operation operation){
+		return operation.name().toLowerCase(Locale.ROOT);
+	}
+
+	private static String quote(String value){
+		if (value == null)
+			return "null";
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++){
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else if (c < 0x20)
+				quoted.append(String.format("\\u%04x", (int) c));
+			else
+				quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+}
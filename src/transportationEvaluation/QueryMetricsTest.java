@@ -0,0 +1,149 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for query metrics, latency histograms and traces.
+ * @author Ryan C Smith
+ */
+public class QueryMetricsTest {
+	RouteMap routes;
+
+	@Before
+	public void setUp() throws Exception {
+		routes = new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testHistogramBuckets() {
+		for (long value : new long[] {0, 1, 7, 8, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}){
+			long limit = LatencyHistogram.bucketLimit(LatencyHistogram.bucket(value));
+			assertTrue(limit >= value);
+			assertTrue(limit - value <= value / LatencyHistogram.SUB_BUCKETS);
+		}
+		for (int bucket = 1; bucket <= LatencyHistogram.bucket(Long.MAX_VALUE); bucket++)
+			assertEquals(bucket, LatencyHistogram.bucket(LatencyHistogram.bucketLimit(bucket)));
+	}
+
+	@Test
+	public void testHistogramQuantiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.valueAtQuantile(0.5));
+		for (long value = 1; value <= 1000; value++)
+			histogram.record(value);
+		assertEquals(1000, histogram.count());
+		assertEquals(500500, histogram.sum());
+		assertEquals(500, histogram.valueAtQuantile(0.5), 500 / LatencyHistogram.SUB_BUCKETS);
+		assertEquals(990, histogram.valueAtQuantile(0.99), 990 / LatencyHistogram.SUB_BUCKETS);
+		assertTrue(histogram.valueAtQuantile(1) >= 1000);
+		histogram.reset();
+		assertEquals(0, histogram.count());
+	}
+
+	@Test
+	public void testRecordsQueries() {
+		QueryMetrics metrics = new QueryMetrics();
+		routes.setMetrics(metrics);
+		routes.calculateShortestRoute("A", "C");
+		routes.calculateShortestRoute("A", "Z");
+		routes.calculateShortestRoute("C", "C", SearchStrategy.BIDIRECTIONAL);
+		routes.calculateRouteDistance(new String[] {"A", "B", "C"});
+		routes.calculateNumberOfRoutesByStops("C", "C", 3, false);
+		routes.calculateNumberOfRoutesByDistance("C", "C", 30);
+		routes.calculateShortestPath("A", "C");
+		assertEquals(3, metrics.calls(QueryMetrics.Operation.SHORTEST_ROUTE));
+		assertTrue(metrics.settled(QueryMetrics.Operation.SHORTEST_ROUTE) > 0);
+		assertEquals(1, metrics.calls(QueryMetrics.Operation.ROUTE_DISTANCE));
+		assertEquals(1, metrics.calls(QueryMetrics.Operation.ROUTES_BY_STOPS));
+		assertEquals(1, metrics.calls(QueryMetrics.Operation.ROUTES_BY_DISTANCE));
+		assertEquals(1, metrics.calls(QueryMetrics.Operation.SHORTEST_PATH));
+		assertTrue(metrics.settled(QueryMetrics.Operation.ROUTES_BY_STOPS) > 0);
+		assertTrue(metrics.settled(QueryMetrics.Operation.ROUTES_BY_DISTANCE) > 0);
+		assertTrue(metrics.settled(QueryMetrics.Operation.SHORTEST_PATH) > 0);
+		assertEquals(3, metrics.latency(QueryMetrics.Operation.SHORTEST_ROUTE).count());
+		assertEquals(0, metrics.allocatedBytes(QueryMetrics.Operation.SHORTEST_ROUTE));
+		assertTrue(metrics.traces().isEmpty());
+		routes.query(pinned -> pinned.calculateShortestRoute("A", "C"));
+		assertEquals(4, metrics.calls(QueryMetrics.Operation.SHORTEST_ROUTE));
+		routes.setMetrics(null);
+		routes.calculateShortestRoute("A", "C");
+		assertEquals(4, metrics.calls(QueryMetrics.Operation.SHORTEST_ROUTE));
+		metrics.reset();
+		assertEquals(0, metrics.calls(QueryMetrics.Operation.SHORTEST_ROUTE));
+		routes.setMetrics(metrics);
+		routes.calculateNumberOfRoutesByDistanceFrom("C", 30);
+		routes.calculateShortestPathTree("A");
+		assertTrue(metrics.settled(QueryMetrics.Operation.ROUTES_BY_DISTANCE) > 0);
+		assertEquals(5, metrics.settled(QueryMetrics.Operation.SHORTEST_PATH));
+	}
+
+	@Test
+	public void testTracesKeepMostRecent() {
+		QueryMetrics metrics = new QueryMetrics(2, true);
+		routes.setMetrics(metrics);
+		routes.calculateShortestRoute("A", "C");
+		routes.calculateShortestRoute("A", "D");
+		routes.apply(new GraphUpdate().addRoad("A", "C", 1));
+		routes.calculateShortestRoute("A", "C");
+		List<QueryMetrics.QueryTrace> traces = metrics.traces();
+		assertEquals(2, traces.size());
+		assertEquals(1, traces.get(0).sequence());
+		assertEquals("D", traces.get(0).end());
+		assertEquals(0, traces.get(0).version());
+		assertEquals(1, traces.get(1).version());
+		assertEquals(QueryMetrics.Operation.SHORTEST_ROUTE, traces.get(1).operation());
+		assertTrue(traces.get(1).settled() > 0);
+	}
+
+	@Test
+	public void testExports() throws Exception {
+		QueryMetrics metrics = new QueryMetrics(4, false);
+		routes.setMetrics(metrics);
+		routes.calculateShortestRoute("A", "C");
+		routes.calculateShortestRoute("A", "\"quoted\"");
+		String json = metrics.toJson();
+		assertTrue(json.startsWith("{\"operations\":{\"route_distance\":{\"calls\":0,"));
+		assertTrue(json.contains("\"shortest_route\":{\"calls\":2,"));
+		assertTrue(json.contains("\"end\":\"\\\"quoted\\\"\""));
+		String prometheus = metrics.toPrometheus();
+		assertTrue(prometheus.contains("route_queries_total{operation=\"shortest_route\"} 2\n"));
+		assertTrue(prometheus.contains("route_query_seconds_bucket{operation=\"shortest_route\",le=\"+Inf\"} 2\n"));
+		assertTrue(prometheus.contains("route_query_seconds_count{operation=\"load\"} 0\n"));
+		Path file = Files.createTempFile("metrics", ".prom");
+		try {
+			metrics.writePrometheus(file);
+			assertEquals(prometheus, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			metrics.writeJson(file);
+			assertEquals(json, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void testConcurrentRecording() throws Exception {
+		final QueryMetrics metrics = new QueryMetrics(16, false);
+		routes.setMetrics(metrics);
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++){
+			threads[i] = new Thread(() -> {
+				for (int query = 0; query < 1000; query++)
+					routes.calculateShortestRoute("A", "C");
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(4000, metrics.calls(QueryMetrics.Operation.SHORTEST_ROUTE));
+		assertEquals(4000, metrics.latency(QueryMetrics.Operation.SHORTEST_ROUTE).count());
+		assertEquals(16, metrics.traces().size());
+	}
+}
@@ -0,0 +1,337 @@
+package transportationEvaluation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Long-running query server that keeps a RouteMap loaded and answers queries over TCP, so callers do not
+ * pay JVM and graph startup for every query. The protocol is the RouteQuery line format: each query line
+ * sent on a connection gets exactly one result line back, in order, and many queries may be pipelined.
+ * The line "metrics" is answered with RouteMap's QueryMetrics as one line of JSON.
+ * One NIO selector thread accepts connections and moves bytes; the queries read from a connection are
+ * answered in chunks on a ForkJoinPool by a BatchRouteEvaluator, so shortest-route and route-count queries
+ * from the same origin share work, while a slow query on one connection never blocks the others' reads.
+ * A connection that stops reading its results is not read from until its pending output drains, and one
+ * that sends queries faster than they are answered is not read from while PENDING_HIGH_WATER lines wait.
+ * @author Ryan C Smith
+ */
+public final class QueryServer implements Closeable {
+	/**
+	 * Port used by Trains --serve unless another is given.
+	 */
+	public static final int DEFAULT_PORT = 7070;
+	/**
+	 * Longest query line accepted; longer lines close the connection.
+	 */
+	public static final int MAX_LINE_BYTES = 1 << 16;
+	private static final int OUTPUT_HIGH_WATER = 1 << 20;
+	/**
+	 * Query lines a connection may have waiting for a worker before it is no longer read from.
+	 */
+	static final int PENDING_HIGH_WATER = 4 * BatchRouteEvaluator.DEFAULT_CHUNK_SIZE;
+
+	private final RouteMap routeMap;
+	private final ForkJoinPool pool;
+	private final BatchRouteEvaluator evaluator;
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	//connections with new output, handed from worker threads to the selector thread
+	private final ConcurrentLinkedQueue<Connection> flushes = new ConcurrentLinkedQueue<Connection>();
+	private volatile boolean running = true;
+
+	/**
+	 * Binds a server to a port on the loopback interface, using the common ForkJoinPool.
+	 * @param routeMap - RouteMap to answer queries from.
+	 * @param port - TCP port, or 0 for any free port.
+	 * @throws IOException - if the port cannot be bound.
+	 */
+	public QueryServer(RouteMap routeMap, int port) throws IOException {
+		this(routeMap, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param routeMap - RouteMap to answer queries from.
+	 * @param address - address to listen on.
+	 * @param pool - pool queries are answered on.
+	 * @throws IOException - if the address cannot be bound.
+	 */
+	public QueryServer(RouteMap routeMap, InetSocketAddress address, ForkJoinPool pool) throws IOException {
+		this.routeMap = routeMap;
+		this.pool = pool;
+		this.evaluator = new BatchRouteEvaluator(routeMap, pool, BatchRouteEvaluator.DEFAULT_CHUNK_SIZE);
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		try {
+			server.bind(address);
+			server.configureBlocking(false);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e){
+			server.close();
+			selector.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the port the server listens on.
+	 */
+	public int port(){
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Runs the selector loop on the calling thread until close() is called.
+	 * @throws IOException - if the selector fails.
+	 */
+	public void run() throws IOException {
+		try {
+			while (running){
+				selector.select();
+				for (Connection connection; (connection = flushes.poll()) != null;)
+					connection.flush();
+				for (SelectionKey key : selector.selectedKeys()){
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable())
+						accept();
+					else {
+						Connection connection = (Connection) key.attachment();
+						if (key.isWritable())
+							connection.flush();
+						if (key.isValid() && key.isReadable())
+							connection.read();
+					}
+				}
+				selector.selectedKeys().clear();
+			}
+		} finally {
+			for (SelectionKey key : selector.keys())
+				key.channel().close();
+			selector.close();
+		}
+	}
+
+	/**
+	 * Runs the selector loop on a new daemon thread.
+	 * @return the thread.
+	 */
+	public Thread start(){
+		Thread thread = new Thread(() -> {
+			try {
+				run();
+			} catch (IOException e){
+				System.err.println("Query server stopped: " + e);
+			}
+		}, "QueryServer-" + port());
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Stops the selector loop, which closes the listening socket and every connection.
+	 */
+	@Override
+	public void close(){
+		running = false;
+		selector.wakeup();
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = server.accept();
+		if (channel == null)
+			return;
+		channel.configureBlocking(false);
+		Connection connection = new Connection(channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+	}
+
+	/**
+	 * Answers a chunk of lines in order. Each line is a query or the metrics command; the queries before a
+	 * metrics command are answered first, so that its snapshot includes them.
+	 */
+	private String[] answer(List<String> lines){
+		RouteQuery[] chunk = new RouteQuery[lines.size()];
+		String[] answers = new String[lines.size()];
+		int answered = 0;
+		for (int i = 0; i < lines.size(); i++){
+			if (!lines.get(i).trim().equalsIgnoreCase("metrics")){
+				BatchRouteEvaluator.parseInto(lines.get(i), chunk, answers, i);
+				continue;
+			}
+			evaluator.evaluateChunk(chunk, answers, i);
+			//answered queries are cleared so the next evaluateChunk skips them
+			Arrays.fill(chunk, answered, i, null);
+			answered = i + 1;
+			QueryMetrics metrics = routeMap.getMetrics();
+			answers[i] = metrics == null ? "ERROR Metrics are not enabled." : metrics.toJson();
+		}
+		evaluator.evaluateChunk(chunk, answers, lines.size());
+		return answers;
+	}
+
+	/**
+	 * State of one client. Bytes are read and written only on the selector thread; query lines are handed
+	 * to at most one worker at a time, so answers go out in the order the queries came in.
+	 */
+	private final class Connection {
+		private final SocketChannel channel;
+		SelectionKey key;
+		private final ByteBuffer input = ByteBuffer.allocate(8192);
+		private byte[] line = new byte[256];
+		private int lineLength;
+		//guarded by this: lines waiting for a worker, whether a worker owns them, and output not yet written
+		private final ArrayDeque<String> pending = new ArrayDeque<String>();
+		private boolean busy;
+		private final ArrayDeque<ByteBuffer> output = new ArrayDeque<ByteBuffer>();
+		private long outputBytes;
+		private boolean endOfInput;
+
+		Connection(SocketChannel channel){
+			this.channel = channel;
+		}
+
+		void read() throws IOException {
+			int read;
+			try {
+				read = channel.read(input);
+			} catch (IOException e){
+				close();
+				return;
+			}
+			if (read < 0){
+				endOfInput = true;
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+				closeIfDone();
+				return;
+			}
+			input.flip();
+			List<String> lines = new ArrayList<String>();
+			while (input.hasRemaining()){
+				byte b = input.get();
+				if (b == '\n'){
+					int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+					String text = new String(line, 0, length, StandardCharsets.UTF_8);
+					if (!text.trim().isEmpty())
+						lines.add(text);
+					lineLength = 0;
+				}
+				else if (lineLength == MAX_LINE_BYTES){
+					close();
+					return;
+				}
+				else {
+					if (lineLength == line.length)
+						line = Arrays.copyOf(line, Math.min(2 * line.length, MAX_LINE_BYTES));
+					line[lineLength++] = b;
+				}
+			}
+			input.clear();
+			if (lines.isEmpty())
+				return;
+			boolean dispatch;
+			boolean full;
+			synchronized (this){
+				pending.addAll(lines);
+				dispatch = !busy;
+				busy = true;
+				full = pending.size() >= PENDING_HIGH_WATER;
+			}
+			//reading resumes in flush once the worker has taken lines and written their answers
+			if (full)
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+			if (dispatch)
+				pool.execute(this::work);
+		}
+
+		/**
+		 * Worker loop: answers pending lines in chunks until none are left.
+		 */
+		private void work(){
+			while (true){
+				List<String> lines = new ArrayList<String>();
+				synchronized (this){
+					while (!pending.isEmpty() && lines.size() < BatchRouteEvaluator.DEFAULT_CHUNK_SIZE)
+						lines.add(pending.poll());
+					if (lines.isEmpty()){
+						busy = false;
+						break;
+					}
+				}
+				StringBuilder text = new StringBuilder();
+				for (String answer : answer(lines))
+					text.append(answer).append('\n');
+				ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+				synchronized (this){
+					output.add(bytes);
+					outputBytes += bytes.remaining();
+				}
+				flushes.add(this);
+				selector.wakeup();
+			}
+			//the selector may be waiting for this worker to finish before closing a half-closed connection
+			flushes.add(this);
+			selector.wakeup();
+		}
+
+		/**
+		 * Writes as much pending output as the socket takes, then adjusts interest in reads and writes.
+		 */
+		void flush() throws IOException {
+			if (!key.isValid())
+				return;
+			long buffered;
+			int queued;
+			synchronized (this){
+				try {
+					while (!output.isEmpty()){
+						ByteBuffer bytes = output.peek();
+						outputBytes -= channel.write(bytes);
+						if (bytes.hasRemaining())
+							break;
+						output.poll();
+					}
+				} catch (IOException e){
+					close();
+					return;
+				}
+				buffered = outputBytes;
+				queued = pending.size();
+			}
+			int interest = buffered > 0 ? SelectionKey.OP_WRITE : 0;
+			if (!endOfInput && buffered < OUTPUT_HIGH_WATER && queued < PENDING_HIGH_WATER)
+				interest |= SelectionKey.OP_READ;
+			key.interestOps(interest);
+			closeIfDone();
+		}
+
+		private void closeIfDone() throws IOException {
+			if (!endOfInput)
+				return;
+			synchronized (this){
+				if (busy || !pending.isEmpty() || !output.isEmpty())
+					return;
+			}
+			close();
+		}
+
+		private void close() throws IOException {
+			key.cancel();
+			channel.close();
+		}
+	}
+}
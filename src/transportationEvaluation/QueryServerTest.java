@@ -0,0 +1,184 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the TCP query server.
+ * @author Ryan C Smith
+ */
+public class QueryServerTest {
+	RouteMap routes;
+	QueryServer server;
+
+	@Before
+	public void setUp() throws Exception {
+		routes = new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+		server = new QueryServer(routes, 0);
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+	}
+
+	@Test
+	public void testAnswersInOrder() throws Exception {
+		try (Socket socket = connect()){
+			BufferedReader in = reader(socket);
+			send(socket, "distance A-B-C\r\nshortest B B\n\nbogus\nexactstops A C 4\n");
+			assertEquals("9", in.readLine());
+			assertEquals("9", in.readLine());
+			assertEquals("ERROR Unknown query: bogus", in.readLine());
+			assertEquals("3", in.readLine());
+			send(socket, "within C C 30\n");
+			assertEquals("7", in.readLine());
+		}
+	}
+
+	@Test
+	public void testPipelinedQueries() throws Exception {
+		try (Socket socket = connect()){
+			StringBuilder queries = new StringBuilder();
+			for (int i = 0; i < 20000; i++)
+				queries.append(i % 2 == 0 ? "shortest A C\n" : "stops C C 3\n");
+			send(socket, queries.toString());
+			socket.shutdownOutput();
+			BufferedReader in = reader(socket);
+			for (int i = 0; i < 20000; i++)
+				assertEquals(i % 2 == 0 ? "9" : "2", in.readLine());
+			assertNull(in.readLine());
+		}
+	}
+
+	@Test
+	public void testStopsReadingWhileQueriesWait() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(1);
+		CountDownLatch blocked = new CountDownLatch(1);
+		pool.execute(() -> {
+			try {
+				blocked.await();
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+		});
+		QueryServer busy = new QueryServer(routes, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), pool);
+		busy.start();
+		final int queries = 1 << 21;
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), busy.port())){
+			final Throwable[] failure = new Throwable[1];
+			Thread writer = new Thread(() -> {
+				try {
+					byte[] query = "shortest A C\n".getBytes(StandardCharsets.UTF_8);
+					byte[] block = new byte[query.length * 1024];
+					for (int i = 0; i < 1024; i++)
+						System.arraycopy(query, 0, block, i * query.length, query.length);
+					OutputStream out = socket.getOutputStream();
+					for (int i = 0; i < queries / 1024; i++)
+						out.write(block);
+					out.flush();
+				} catch (Throwable e){
+					failure[0] = e;
+				}
+			});
+			writer.start();
+			//with no worker running, the server holds at most PENDING_HIGH_WATER lines and the socket buffers fill up
+			writer.join(3000);
+			assertTrue(writer.isAlive());
+			blocked.countDown();
+			BufferedReader in = reader(socket);
+			for (int i = 0; i < queries; i++)
+				assertEquals("9", in.readLine());
+			writer.join();
+			assertNull(failure[0]);
+		} finally {
+			blocked.countDown();
+			busy.close();
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testConcurrentClients() throws Exception {
+		Thread[] clients = new Thread[4];
+		final Throwable[] failure = new Throwable[1];
+		for (int c = 0; c < clients.length; c++){
+			clients[c] = new Thread(() -> {
+				try (Socket socket = connect()){
+					BufferedReader in = reader(socket);
+					for (int i = 0; i < 200; i++){
+						send(socket, "shortest A C\n");
+						assertEquals("9", in.readLine());
+					}
+				} catch (Throwable e){
+					failure[0] = e;
+				}
+			});
+			clients[c].start();
+		}
+		for (Thread client : clients)
+			client.join();
+		assertNull(failure[0]);
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		try (Socket socket = connect()){
+			BufferedReader in = reader(socket);
+			send(socket, "metrics\n");
+			assertEquals("ERROR Metrics are not enabled.", in.readLine());
+			routes.setMetrics(new QueryMetrics());
+			send(socket, "shortest A C\nmetrics\n");
+			assertEquals("9", in.readLine());
+			assertTrue(in.readLine().contains("\"shortest_route\":{\"calls\":1,"));
+			send(socket, "stops C C 3\nwithin C C 30\nexactstops C C 3\nshortest A C\nshortest A D\ndistance A-B-C\nmetrics\n");
+			for (String expected : new String[] {"2", "7", "1", "9", "5", "9"})
+				assertEquals(expected, in.readLine());
+			String json = in.readLine();
+			assertTrue(json, json.contains("\"shortest_route\":{\"calls\":3,"));
+			assertTrue(json, json.contains("\"routes_by_stops\":{\"calls\":2,"));
+			assertTrue(json, json.contains("\"routes_by_distance\":{\"calls\":1,"));
+			assertTrue(json, json.contains("\"route_distance\":{\"calls\":1,"));
+			assertFalse(json, json.contains("\"routes_by_stops\":{\"calls\":2,\"settled\":0,"));
+		}
+	}
+
+	@Test
+	public void testClosesOverlongLine() throws Exception {
+		try (Socket socket = connect()){
+			StringBuilder line = new StringBuilder("distance A");
+			while (line.length() <= QueryServer.MAX_LINE_BYTES)
+				line.append("-A");
+			send(socket, line.toString());
+			assertNull(reader(socket).readLine());
+		}
+	}
+
+	private Socket connect() throws Exception {
+		return new Socket(InetAddress.getLoopbackAddress(), server.port());
+	}
+
+	private static BufferedReader reader(Socket socket) throws Exception {
+		return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+	}
+
+	private static void send(Socket socket, String text) throws Exception {
+		OutputStream out = socket.getOutputStream();
+		out.write(text.getBytes(StandardCharsets.UTF_8));
+		out.flush();
+	}
+}
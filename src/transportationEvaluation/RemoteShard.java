@@ -0,0 +1,100 @@
+package transportationEvaluation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Client side of the ShardServer protocol: a Shard answered by another process over one TCP connection.
+ * Requests on the connection are serialized; the overlay is fetched once and kept.
+ * @author Ryan C Smith
+ */
+final class RemoteShard implements Shard, Closeable {
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private CompactGraph overlay;
+	private int boundaryCount;
+
+	RemoteShard(InetSocketAddress address) throws IOException {
+		socket = new Socket();
+		try {
+			socket.connect(address);
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		} catch (IOException e){
+			socket.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public synchronized CompactGraph overlay() throws IOException {
+		if (overlay == null){
+			out.writeByte(ShardServer.OVERLAY);
+			awaitResponse();
+			boundaryCount = in.readInt();
+			overlay = ShardServer.readGraph(in);
+		}
+		return overlay;
+	}
+
+	@Override
+	public synchronized int boundaryCount() throws IOException {
+		overlay();
+		return boundaryCount;
+	}
+
+	@Override
+	public synchronized int[] forward(String start, String end) throws IOException {
+		out.writeByte(ShardServer.FORWARD);
+		out.writeUTF(start);
+		out.writeUTF(end);
+		awaitResponse();
+		return ShardServer.readInts(in);
+	}
+
+	@Override
+	public synchronized int[] backward(String end) throws IOException {
+		out.writeByte(ShardServer.BACKWARD);
+		out.writeUTF(end);
+		awaitResponse();
+		return ShardServer.readInts(in);
+	}
+
+	@Override
+	public synchronized long[] legs(String[] towns) throws IOException {
+		out.writeByte(ShardServer.LEGS);
+		out.writeInt(towns.length);
+		for (String town : towns)
+			out.writeUTF(town);
+		awaitResponse();
+		return ShardServer.readLongs(in);
+	}
+
+	/**
+	 * Sends the buffered request and reads the status of its response.
+	 * @throws IOException - carrying the shard's message if the query failed there.
+	 */
+	private void awaitResponse() throws IOException {
+		out.flush();
+		if (in.readByte() != ShardServer.OK)
+			throw new IOException("Shard " + socket.getRemoteSocketAddress() + " failed: " + in.readUTF());
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	@Override
+	public String toString(){
+		return "RemoteShard " + socket.getRemoteSocketAddress();
+	}
+}
@@ -0,0 +1,451 @@
+package transportationEvaluation;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Counts routes with dynamic programming over search states instead of enumerating every path.
+ * Counting by stops works over (town, stops) states: after s steps count[v] holds the number of
+ * distinct routes of exactly s stops from the origin to v. Counting by distance works over
+ * (town, distance) states processed in increasing distance, so every state is expanded once
+ * no matter how many routes lead to it. Both can count the routes to every destination in the same
+ * pass; for long budgets the distance count can instead sweep a table of one row per distance, in parallel.
+ * The long variants throw ArithmeticException on overflow; the Exact variants use BigInteger counters.
+ * @author Ryan C Smith
+ */
+public final class RouteCounter {
+	/**
+	 * Largest layered kernel table used by default (32MB).
+	 */
+	public static final long LAYER_CELL_LIMIT = 1 << 22;
+	/**
+	 * Towns per fork-join leaf task of the layered kernel.
+	 */
+	private static final int TOWN_BLOCK = 256;
+
+	private RouteCounter(){
+	}
+
+	/**
+	 * Counts the distinct routes between two towns with at most (or exactly) maxStops stops.
+	 * Routes must have at least one stop, so a town only counts as a route to itself through a cycle.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param start - ID of the origin town.
+	 * @param end - ID of the destination town.
+	 * @param maxStops - the maximum number of stops allowed on a route.
+	 * @param exact - when true only routes with exactly maxStops stops are counted.
+	 * @return number of routes.
+	 * @throws ArithmeticException - if the count does not fit in a long.
+	 */
+	public static long countByStops(CompactGraph graph, int start, int end, int maxStops, boolean exact){
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			return countByStops(graph, start, end, maxStops, exact, null, workspace);
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Same count as countByStops in a workspace the caller holds, which afterwards reports how many (town, stops) states were expanded.
+	 */
+	static long countByStops(CompactGraph graph, int start, int end, int maxStops, boolean exact, SearchWorkspace workspace){
+		return countByStops(graph, start, end, maxStops, exact, null, workspace);
+	}
+
+	/**
+	 * Counts the routes from one origin to every town in a single pass, with at most (or exactly) maxStops stops.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param start - ID of the origin town.
+	 * @param maxStops - the maximum number of stops allowed on a route.
+	 * @param exact - when true only routes with exactly maxStops stops are counted.
+	 * @return number of routes to each town, indexed by town ID.
+	 * @throws ArithmeticException - if a count does not fit in a long.
+	 */
+	public static long[] countByStopsToAll(CompactGraph graph, int start, int maxStops, boolean exact){
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			return countByStopsToAll(graph, start, maxStops, exact, workspace);
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Same count as countByStopsToAll in a workspace the caller holds, which afterwards reports how many (town, stops) states were expanded.
+	 */
+	static long[] countByStopsToAll(CompactGraph graph, int start, int maxStops, boolean exact, SearchWorkspace workspace){
+		long[] routes = new long[graph.townCount()];
+		countByStops(graph, start, -1, maxStops, exact, routes, workspace);
+		return routes;
+	}
+
+	/**
+	 * Shared (town, stops) pass. Accumulates into totals for every town when totals is given,
+	 * otherwise only the count for end is kept and returned.
+	 */
+	private static long countByStops(CompactGraph graph, int start, int end, int maxStops, boolean exact, long[] totals,
+			SearchWorkspace workspace){
+		boolean clean = false;
+		long expanded = 0;
+		try {
+			workspace.startSearch(graph.townCount());
+			long[] current = workspace.counts();
+			long[] next = workspace.nextCounts();
+			//towns with a non-zero count in current/next, so each step only touches the live frontier
+			int[] currentTowns = workspace.towns();
+			int[] nextTowns = workspace.nextTowns();
+			int currentSize = 1;
+			current[start] = 1;
+			currentTowns[0] = start;
+			long routes = 0;
+			for (int stops = 1; stops <= maxStops && currentSize > 0; stops++){
+				int nextSize = 0;
+				expanded += currentSize;
+				for (int i = 0; i < currentSize; i++){
+					int town = currentTowns[i];
+					long count = current[town];
+					current[town] = 0;
+					for (int edge = graph.offsets[town], last = graph.offsets[town + 1]; edge < last; edge++){
+						int target = graph.targets[edge];
+						if (next[target] == 0)
+							nextTowns[nextSize++] = target;
+						next[target] = Math.addExact(next[target], count);
+					}
+				}
+				if (!exact || stops == maxStops){
+					if (totals == null)
+						routes = Math.addExact(routes, next[end]);
+					else{
+						for (int i = 0; i < nextSize; i++)
+							totals[nextTowns[i]] = Math.addExact(totals[nextTowns[i]], next[nextTowns[i]]);
+					}
+				}
+				long[] swapCounts = current;
+				current = next;
+				next = swapCounts;
+				int[] swapTowns = currentTowns;
+				currentTowns = nextTowns;
+				nextTowns = swapTowns;
+				currentSize = nextSize;
+			}
+			//leave the buffers zeroed for the next pass
+			for (int i = 0; i < currentSize; i++)
+				current[currentTowns[i]] = 0;
+			clean = true;
+			return routes;
+		} finally {
+			if (!clean)
+				workspace.discardCounts();
+			workspace.recordSettled(expanded);
+		}
+	}
+
+	/**
+	 * BigInteger version of countByStops for counts that do not fit in a long.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param start - ID of the origin town.
+	 * @param end - ID of the destination town.
+	 * @param maxStops - the maximum number of stops allowed on a route.
+	 * @param exact - when true only routes with exactly maxStops stops are counted.
+	 * @return number of routes.
+	 */
+	public static BigInteger countByStopsExact(CompactGraph graph, int start, int end, int maxStops, boolean exact){
+		int townCount = graph.townCount();
+		BigInteger[] current = new BigInteger[townCount];
+		current[start] = BigInteger.ONE;
+		BigInteger routes = BigInteger.ZERO;
+		for (int stops = 1; stops <= maxStops; stops++){
+			BigInteger[] next = new BigInteger[townCount];
+			boolean live = false;
+			for (int town = 0; town < townCount; town++){
+				if (current[town] == null)
+					continue;
+				for (int edge = graph.offsets[town], last = graph.offsets[town + 1]; edge < last; edge++){
+					int target = graph.targets[edge];
+					next[target] = next[target] == null ? current[town] : next[target].add(current[town]);
+					live = true;
+				}
+			}
+			if ((!exact || stops == maxStops) && next[end] != null)
+				routes = routes.add(next[end]);
+			if (!live)
+				break;
+			current = next;
+		}
+		return routes;
+	}
+
+	/**
+	 * Counts the distinct routes between two towns with a total distance of less than maxDistance.
+	 * Routes must have at least one stop. Roads of distance 0 are allowed, but a cycle of them reachable
+	 * within the limit would give infinitely many routes and is rejected.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param start - ID of the origin town.
+	 * @param end - ID of the destination town.
+	 * @param maxDistance - distance limit for a given route (exclusive).
+	 * @return number of routes.
+	 * @throws ArithmeticException - if the count does not fit in a long.
+	 * @throws IllegalStateException - if a road with a negative distance, or a cycle of zero-length roads, is reached.
+	 */
+	public static long countByDistance(CompactGraph graph, int start, int end, int maxDistance){
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			return countByDistance(graph, start, end, maxDistance, workspace);
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Same count as countByDistance in a workspace the caller holds, which afterwards reports how many (town, distance) states were expanded.
+	 */
+	static long countByDistance(CompactGraph graph, int start, int end, int maxDistance, SearchWorkspace workspace){
+		return countByDistance(graph, start, end, maxDistance, null, Long.MAX_VALUE, workspace);
+	}
+
+	/**
+	 * Counts the routes from one origin to every town in a single pass, with a total distance of less than
+	 * maxDistance. The (town, distance) states are kept in a hash table while they are sparse; once there are
+	 * so many that the layered kernel would be cheaper, and its table fits in LAYER_CELL_LIMIT cells, the
+	 * count is restarted on the layered kernel on the common ForkJoinPool. Graphs with zero-length roads
+	 * always use the hash table.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param start - ID of the origin town.
+	 * @param maxDistance - distance limit for a given route (exclusive).
+	 * @return number of routes to each town, indexed by town ID.
+	 * @throws ArithmeticException - if a count does not fit in a long.
+	 * @throws IllegalStateException - if a road with a negative distance, or a cycle of zero-length roads, is reached.
+	 */
+	public static long[] countByDistanceToAll(CompactGraph graph, int start, int maxDistance){
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			return countByDistanceToAll(graph, start, maxDistance, workspace);
+		} finally {
+			workspace.release();
+		}
+	}
+
+	/**
+	 * Same count as countByDistanceToAll in a workspace the caller holds, which afterwards reports how many
+	 * (town, distance) states were expanded, counting every cell of the layered kernel when it is used.
+	 */
+	static long[] countByDistanceToAll(CompactGraph graph, int start, int maxDistance, SearchWorkspace workspace){
+		long[] routes = new long[graph.townCount()];
+		long maxStates = Long.MAX_VALUE;
+		if (!graph.zeroRoadOrder().hasZeroRoads() && layerCells(graph, maxDistance) <= LAYER_CELL_LIMIT){
+			//a state costs about as much as 32 of the layered kernel's road visits
+			maxStates = Math.max(maxDistance, 1) * ((long) graph.edgeCount() + graph.townCount()) / 32;
+		}
+		if (countByDistance(graph, start, -1, maxDistance, routes, maxStates, workspace) < 0){
+			long expanded = workspace.settled();
+			Arrays.fill(routes, 0);
+			countByDistanceLayered(graph, start, maxDistance, routes, ForkJoinPool.commonPool());
+			workspace.recordSettled(expanded + (long) Math.max(maxDistance - 1, 0) * graph.townCount());
+		}
+		return routes;
+	}
+
+	/**
+	 * Counts the routes from one origin to every town with a chosen kernel.
+	 * The layered kernel keeps, for the last few distances d, the number of routes of distance exactly d
+	 * ending at every town, in one long[] of (longest road + shortest road) rows of townCount cells. Row d
+	 * is summed from the rows d - w of the towns with a road of length w into each town, so the rows of
+	 * every distance in [d, d + shortest road) only read earlier rows and are computed together, split
+	 * across the pool by town. Its cost grows with maxDistance times the number of roads, however many
+	 * routes there are, so it suits budgets much longer than the roads.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param start - ID of the origin town.
+	 * @param maxDistance - distance limit for a given route (exclusive).
+	 * @param layered - true for the layered kernel, false for the hash table of (town, distance) states.
+	 * @param pool - pool the layered kernel runs on.
+	 * @return number of routes to each town, indexed by town ID.
+	 * @throws ArithmeticException - if a count does not fit in a long.
+	 * @throws IllegalArgumentException - if the layered kernel's table would not fit in an array.
+	 * @throws IllegalStateException - if a road with a negative distance, or a cycle of zero-length roads, is
+	 * reached; for the layered kernel, if a road with a distance <= 0 exists.
+	 */
+	public static long[] countByDistanceToAll(CompactGraph graph, int start, int maxDistance, boolean layered, ForkJoinPool pool){
+		long[] routes = new long[graph.townCount()];
+		if (layered)
+			countByDistanceLayered(graph, start, maxDistance, routes, pool);
+		else{
+			SearchWorkspace workspace = SearchWorkspace.acquire();
+			try {
+				countByDistance(graph, start, -1, maxDistance, routes, Long.MAX_VALUE, workspace);
+			} finally {
+				workspace.release();
+			}
+		}
+		return routes;
+	}
+
+	/**
+	 * Shared (town, distance) pass. Accumulates into totals for every town when totals is given,
+	 * otherwise only the count for end is kept and returned. Gives up and returns -1 once more than
+	 * maxStates states have been expanded.
+	 */
+	private static long countByDistance(CompactGraph graph, int start, int end, int maxDistance, long[] totals, long maxStates,
+			SearchWorkspace workspace){
+		//states are keyed (distance << 32 | town) so the heap yields them in increasing distance
+		LongLongHashMap counts = workspace.states();
+		LongMinHeap pending = workspace.pending();
+		ZeroRoadOrder order = graph.zeroRoadOrder();
+		long expanded = 0;
+		try {
+			counts.addTo(order.rank(start), 1);
+			pending.add(order.rank(start));
+			long routes = 0;
+			while (!pending.isEmpty()){
+				if (++expanded > maxStates)
+					return -1;
+				long state = pending.poll();
+				long count = counts.remove(state, 0);
+				int town = order.town((int) state);
+				long distance = state >>> 32;
+				checkCycle(order, town, distance, maxDistance);
+				//a zero cycle through start is rejected, so (start, 0) is only ever the empty route
+				if (distance > 0 || town != start){
+					if (totals != null)
+						totals[town] = Math.addExact(totals[town], count);
+					else if (town == end)
+						routes = Math.addExact(routes, count);
+				}
+				for (int edge = graph.offsets[town], last = graph.offsets[town + 1]; edge < last; edge++){
+					long nextDistance = distance + checkedDistance(graph, edge);
+					if (nextDistance < maxDistance){
+						long nextState = nextDistance << 32 | order.rank(graph.targets[edge]);
+						if (counts.addTo(nextState, count))
+							pending.add(nextState);
+					}
+				}
+			}
+			return routes;
+		} finally {
+			//only left non-empty by giving up or failing
+			counts.clear();
+			pending.clear();
+			workspace.recordSettled(expanded);
+		}
+	}
+
+	/**
+	 * Cells the layered kernel needs: (longest road + shortest road) rows of townCount, or fewer rows if
+	 * the budget is shorter than that.
+	 * @throws IllegalStateException - if a road with a negative distance exists.
+	 */
+	static long layerCells(CompactGraph graph, int maxDistance){
+		int shortestRoad = Integer.MAX_VALUE;
+		int longestRoad = 0;
+		for (int edge = 0; edge < graph.edgeCount(); edge++){
+			int distance = checkedDistance(graph, edge);
+			shortestRoad = Math.min(shortestRoad, distance);
+			longestRoad = Math.max(longestRoad, distance);
+		}
+		return Math.min((long) longestRoad + shortestRoad, Math.max(maxDistance, 1)) * graph.townCount();
+	}
+
+	private static void countByDistanceLayered(CompactGraph graph, int start, int maxDistance, long[] totals, ForkJoinPool pool){
+		if (graph.zeroRoadOrder().hasZeroRoads())
+			throw new IllegalStateException("The layered kernel requires positive road distances.");
+		long cells = layerCells(graph, maxDistance);
+		if (cells > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Roads are too long for the layered kernel.");
+		if (graph.edgeCount() == 0 || maxDistance <= 1)
+			return;
+		final int n = graph.townCount();
+		final int rows = (int) (cells / n);
+		int shortestRoad = Integer.MAX_VALUE;
+		for (int edge = 0; edge < graph.edgeCount(); edge++)
+			shortestRoad = Math.min(shortestRoad, graph.distances[edge]);
+		//row (d % rows) holds the routes of distance exactly d; a row is only overwritten once no later
+		//distance in the batch being computed can read it
+		final long[] layers = new long[(int) cells];
+		layers[start] = 1;
+		final CompactGraph reverse = graph.reverse();
+		for (int first = 1; first < maxDistance; first += shortestRoad){
+			final int from = first;
+			final int to = (int) Math.min((long) first + shortestRoad, maxDistance);
+			RowKernel kernel = (fromTown, toTown) -> {
+				for (int distance = from; distance < to; distance++){
+					int row = (distance % rows) * n;
+					for (int town = fromTown; town < toTown; town++){
+						long count = 0;
+						for (int edge = reverse.offsets[town], last = reverse.offsets[town + 1]; edge < last; edge++){
+							int road = reverse.distances[edge];
+							if (road <= distance)
+								count = Math.addExact(count, layers[((distance - road) % rows) * n + reverse.targets[edge]]);
+						}
+						layers[row + town] = count;
+						totals[town] = Math.addExact(totals[town], count);
+					}
+				}
+			};
+			if (n <= TOWN_BLOCK)
+				kernel.computeRows(0, n);
+			else
+				pool.invoke(new RowBlocks(kernel, 0, n, TOWN_BLOCK));
+		}
+	}
+
+	/**
+	 * BigInteger version of countByDistance for counts that do not fit in a long.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param start - ID of the origin town.
+	 * @param end - ID of the destination town.
+	 * @param maxDistance - distance limit for a given route (exclusive).
+	 * @return number of routes.
+	 * @throws IllegalStateException - if a road with a negative distance, or a cycle of zero-length roads, is reached.
+	 */
+	public static BigInteger countByDistanceExact(CompactGraph graph, int start, int end, int maxDistance){
+		HashMap<Long, BigInteger> counts = new HashMap<Long, BigInteger>();
+		PriorityQueue<Long> pending = new PriorityQueue<Long>();
+		ZeroRoadOrder order = graph.zeroRoadOrder();
+		counts.put((long) order.rank(start), BigInteger.ONE);
+		pending.add((long) order.rank(start));
+		BigInteger routes = BigInteger.ZERO;
+		while (!pending.isEmpty()){
+			long state = pending.poll();
+			BigInteger count = counts.remove(state);
+			int town = order.town((int) state);
+			long distance = state >>> 32;
+			checkCycle(order, town, distance, maxDistance);
+			if (town == end && (distance > 0 || town != start))
+				routes = routes.add(count);
+			for (int edge = graph.offsets[town], last = graph.offsets[town + 1]; edge < last; edge++){
+				long nextDistance = distance + checkedDistance(graph, edge);
+				if (nextDistance < maxDistance){
+					long nextState = nextDistance << 32 | order.rank(graph.targets[edge]);
+					BigInteger previous = counts.put(nextState, count);
+					if (previous == null)
+						pending.add(nextState);
+					else
+						counts.put(nextState, previous.add(count));
+				}
+			}
+		}
+		return routes;
+	}
+
+	/**
+	 * Distance states are only expanded in order if no road moves the route backward.
+	 */
+	private static int checkedDistance(CompactGraph graph, int edge){
+		int distance = graph.distances[edge];
+		if (distance < 0)
+			throw new IllegalStateException("Counting routes by distance requires non-negative road distances.");
+		return distance;
+	}
+
+	/**
+	 * A state within the limit at a town that reaches a cycle of zero-length roads reaches the cycle
+	 * within the limit too, and the routes around it never end.
+	 */
+	private static void checkCycle(ZeroRoadOrder order, int town, long distance, int maxDistance){
+		if (distance < maxDistance && order.reachesCycle(town))
+			throw new IllegalStateException("Infinitely many routes: a cycle of zero-length roads is reachable within the distance limit.");
+	}
+}
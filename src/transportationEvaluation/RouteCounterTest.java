@@ -0,0 +1,158 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for dynamic-programming route counting.
+ * @author Ryan C Smith
+ */
+public class RouteCounterTest {
+	CompactGraph graph;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testCountByStops() {
+		assertEquals(2, RouteCounter.countByStops(graph, graph.id("C"), graph.id("C"), 3, false));
+		assertEquals(3, RouteCounter.countByStops(graph, graph.id("A"), graph.id("C"), 4, true));
+		assertEquals(BigInteger.valueOf(3), RouteCounter.countByStopsExact(graph, graph.id("A"), graph.id("C"), 4, true));
+		assertEquals(0, RouteCounter.countByStops(graph, graph.id("A"), graph.id("A"), 10, false));
+	}
+
+	@Test
+	public void testCountByDistance() {
+		assertEquals(7, RouteCounter.countByDistance(graph, graph.id("C"), graph.id("C"), 30));
+		assertEquals(3, RouteCounter.countByDistance(graph, graph.id("A"), graph.id("C"), 15));
+		assertEquals(BigInteger.valueOf(7), RouteCounter.countByDistanceExact(graph, graph.id("C"), graph.id("C"), 30));
+	}
+
+	@Test
+	public void testCountByDistanceToAll() {
+		String[] towns = {"A","B","C","D","E"};
+		ForkJoinPool pool = new ForkJoinPool(2);
+		for (int maxDistance = 0; maxDistance <= 40; maxDistance++){
+			for (String start : towns){
+				long[] hashed = RouteCounter.countByDistanceToAll(graph, graph.id(start), maxDistance, false, pool);
+				long[] layered = RouteCounter.countByDistanceToAll(graph, graph.id(start), maxDistance, true, pool);
+				for (String end : towns){
+					long expected = RouteCounter.countByDistance(graph, graph.id(start), graph.id(end), maxDistance);
+					assertEquals(expected, hashed[graph.id(end)]);
+					assertEquals(expected, layered[graph.id(end)]);
+				}
+			}
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testLayeredKernelOnRandomGraphs() {
+		Random random = new Random(19);
+		ForkJoinPool pool = new ForkJoinPool(3);
+		for (int round = 0; round < 20; round++){
+			//a ring with a few chords keeps counts within a long over long budgets; 600 towns span several blocks
+			int towns = round % 4 == 0 ? 600 : 2 + random.nextInt(30);
+			StringBuilder text = new StringBuilder();
+			for (int town = 0; town < towns; town++)
+				text.append("(T").append(town).append(",T").append((town + 1) % towns).append(',').append(1 + random.nextInt(9)).append(") ");
+			for (int chord = 0; chord < 3; chord++)
+				text.append("(T").append(random.nextInt(towns)).append(",T").append(random.nextInt(towns)).append(',').append(20 + random.nextInt(20)).append(") ");
+			CompactGraph ring = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList(text.toString()));
+			int start = random.nextInt(towns);
+			int maxDistance = 1 + random.nextInt(400);
+			assertArrayEquals(RouteCounter.countByDistanceToAll(ring, start, maxDistance, false, pool),
+					RouteCounter.countByDistanceToAll(ring, start, maxDistance, true, pool));
+		}
+		pool.shutdown();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testLayeredKernelRejectsZeroRoads() {
+		CompactGraph zero = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,0) (B,A,1)"));
+		RouteCounter.countByDistanceToAll(zero, zero.id("A"), 5, true, ForkJoinPool.commonPool());
+	}
+
+	@Test
+	public void testZeroLengthRoads() {
+		Random random = new Random(3);
+		for (int round = 0; round < 40; round++){
+			//zero-length roads only lead to higher IDs, so they form no cycle
+			CompactGraph.Builder builder = new CompactGraph.Builder();
+			int towns = 2 + random.nextInt(5);
+			for (int town = 0; town < towns; town++)
+				builder.intern("T" + town);
+			for (int road = random.nextInt(3 * towns); road > 0; road--){
+				int from = random.nextInt(towns);
+				int to = random.nextInt(towns);
+				builder.addEdge(from, to, to > from && random.nextBoolean() ? 0 : 1 + random.nextInt(5));
+			}
+			CompactGraph graph = builder.build();
+			int start = random.nextInt(towns);
+			int maxDistance = random.nextInt(12);
+			long[] all = RouteCounter.countByDistanceToAll(graph, start, maxDistance);
+			for (int end = 0; end < towns; end++){
+				long expected = enumerate(graph, start, end, 0, maxDistance);
+				assertEquals(expected, RouteCounter.countByDistance(graph, start, end, maxDistance));
+				assertEquals(BigInteger.valueOf(expected), RouteCounter.countByDistanceExact(graph, start, end, maxDistance));
+				assertEquals(expected, all[end]);
+			}
+		}
+	}
+
+	@Test
+	public void testZeroLengthCycleWithinLimitIsRejected() {
+		CompactGraph graph = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,0) (B,A,0) (C,A,5) (C,D,1)"));
+		//the cycle is only reached at distance 5
+		assertEquals(1, RouteCounter.countByDistance(graph, graph.id("C"), graph.id("D"), 5));
+		try {
+			RouteCounter.countByDistance(graph, graph.id("C"), graph.id("D"), 6);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e){
+		}
+	}
+
+	/**
+	 * Counts routes by walking every one of them.
+	 */
+	private static long enumerate(CompactGraph graph, int town, int end, int distance, int maxDistance){
+		long routes = 0;
+		for (int edge = graph.offsets[town]; edge < graph.offsets[town + 1]; edge++){
+			int next = distance + graph.distances[edge];
+			if (next < maxDistance)
+				routes += (graph.targets[edge] == end ? 1 : 0) + enumerate(graph, graph.targets[edge], end, next, maxDistance);
+		}
+		return routes;
+	}
+
+	@Test
+	public void testLargeCounts() {
+		//two parallel roads between A and B give 2^k routes of k stops
+		CompactGraph doubled = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,1) (A,B,1) (B,A,1) (B,A,1)"));
+		int a = doubled.id("A");
+		assertEquals(1L << 40, RouteCounter.countByStops(doubled, a, a, 40, true));
+		assertEquals(BigInteger.ONE.shiftLeft(100), RouteCounter.countByStopsExact(doubled, a, a, 100, true));
+		assertEquals(BigInteger.ONE.shiftLeft(100), RouteCounter.countByDistanceExact(doubled, a, a, 101).subtract(
+				RouteCounter.countByDistanceExact(doubled, a, a, 100)));
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testOverflowIsReported() {
+		CompactGraph doubled = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,1) (A,B,1) (B,A,1) (B,A,1)"));
+		RouteCounter.countByStops(doubled, doubled.id("A"), doubled.id("A"), 100, true);
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testLayeredOverflowIsReported() {
+		CompactGraph doubled = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,1) (A,B,1) (B,A,1) (B,A,1)"));
+		RouteCounter.countByDistanceToAll(doubled, doubled.id("A"), 100, true, new ForkJoinPool(2));
+	}
+}
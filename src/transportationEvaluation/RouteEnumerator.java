@@ -0,0 +1,215 @@
+package transportationEvaluation;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily enumerates the routes between two towns under a stop or distance limit, the routes that
+ * RouteCounter only counts. Routes are found by a depth-first search over one reusable path stack, so
+ * an iteration holds memory proportional to the longest route rather than to the number of routes, and
+ * stopping early (for example with Stream.limit) skips the rest of the search.
+ * Branches that cannot reach the destination within the limit are pruned using a lower bound on the
+ * remaining stops or distance from every town, computed once per enumerator with a search backward from
+ * the destination over the graph's reverse adjacency index.
+ * Routes follow RouteCounter's definition: they have at least one stop and may pass through a town more
+ * than once. They are yielded in depth-first order of each town's roads.
+ * @author Ryan C Smith
+ */
+public final class RouteEnumerator implements Iterable<int[]> {
+	private final CompactGraph graph;
+	private final int start;
+	private final int end;
+	private final int limit;
+	private final boolean byDistance;
+	private final boolean exact;
+	//fewest stops, or shortest distance, from each town to end; Integer.MAX_VALUE where end cannot be reached
+	private final int[] remaining;
+
+	private RouteEnumerator(CompactGraph graph, int start, int end, int limit, boolean byDistance, boolean exact, int[] remaining){
+		this.graph = graph;
+		this.start = start;
+		this.end = end;
+		this.limit = limit;
+		this.byDistance = byDistance;
+		this.exact = exact;
+		this.remaining = remaining;
+	}
+
+	/**
+	 * Enumerates the routes between two towns with at most (or exactly) maxStops stops.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param start - ID of the origin town.
+	 * @param end - ID of the destination town.
+	 * @param maxStops - the maximum number of stops allowed on a route.
+	 * @param exact - when true only routes with exactly maxStops stops are yielded.
+	 * @return enumerator of the same routes RouteCounter.countByStops counts.
+	 */
+	public static RouteEnumerator byStops(CompactGraph graph, int start, int end, int maxStops, boolean exact){
+		return new RouteEnumerator(graph, start, end, maxStops, false, exact, stopsTo(graph, end));
+	}
+
+	/**
+	 * Enumerates the routes between two towns with a total distance of less than maxDistance.
+	 * Road distances must be positive, or the number of routes would not be finite.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param start - ID of the origin town.
+	 * @param end - ID of the destination town.
+	 * @param maxDistance - distance limit for a given route (exclusive).
+	 * @return enumerator of the same routes RouteCounter.countByDistance counts.
+	 * @throws IllegalStateException - if the graph has a road with a distance <= 0.
+	 */
+	public static RouteEnumerator byDistance(CompactGraph graph, int start, int end, int maxDistance){
+		for (int edge = 0; edge < graph.edgeCount(); edge++){
+			if (graph.distances[edge] <= 0)
+				throw new IllegalStateException("Enumerating routes by distance requires positive road distances.");
+		}
+		return new RouteEnumerator(graph, start, end, maxDistance, true, false, DijkstraSearch.distances(graph.reverse(), end));
+	}
+
+	/**
+	 * Breadth-first search backward from end: the fewest stops from every town to end.
+	 */
+	static int[] stopsTo(CompactGraph graph, int end){
+		CompactGraph reverse = graph.reverse();
+		int[] stops = new int[graph.townCount()];
+		Arrays.fill(stops, Integer.MAX_VALUE);
+		int[] queue = new int[graph.townCount()];
+		int head = 0;
+		int tail = 0;
+		stops[end] = 0;
+		queue[tail++] = end;
+		while (head < tail){
+			int town = queue[head++];
+			for (int edge = reverse.offsets[town], last = reverse.offsets[town + 1]; edge < last; edge++){
+				int next = reverse.targets[edge];
+				if (stops[next] == Integer.MAX_VALUE){
+					stops[next] = stops[town] + 1;
+					queue[tail++] = next;
+				}
+			}
+		}
+		return stops;
+	}
+
+	/**
+	 * @return the graph the routes are enumerated on.
+	 */
+	public CompactGraph graph(){
+		return graph;
+	}
+
+	/**
+	 * Starts a new depth-first search. Each route is a fresh array of the town IDs visited in order,
+	 * starting with the origin and ending with the destination.
+	 */
+	@Override
+	public Iterator<int[]> iterator(){
+		return new Search();
+	}
+
+	/**
+	 * @return sequential stream of the routes as town IDs. Operations such as skip, limit and findFirst stop
+	 * the search as soon as they are satisfied.
+	 */
+	public Stream<int[]> stream(){
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * @return sequential stream of the routes as unmodifiable lists of town names.
+	 */
+	public Stream<List<String>> routes(){
+		return stream().map(graph::names);
+	}
+
+	/**
+	 * Counts the routes by walking the search without copying any of them.
+	 * @return number of routes.
+	 */
+	public long count(){
+		Search search = new Search();
+		long routes = 0;
+		while (search.advance())
+			routes++;
+		return routes;
+	}
+
+	/**
+	 * One depth-first search. towns[0..depth] is the current route; cursor[d] is the next road of
+	 * towns[d] to try and reached[d] the stops or distance used to get to towns[d].
+	 */
+	private final class Search implements Iterator<int[]> {
+		private int[] towns = new int[16];
+		private int[] cursor = new int[16];
+		private int[] reached = new int[16];
+		private int depth;
+		//whether towns[0..depth] is a route not yet returned by next()
+		private boolean pending;
+
+		Search(){
+			towns[0] = start;
+			cursor[0] = graph.offsets[start];
+			depth = 0;
+		}
+
+		/**
+		 * Moves the search to the next route.
+		 * @return false once every route has been visited.
+		 */
+		boolean advance(){
+			int[] offsets = graph.offsets;
+			int[] targets = graph.targets;
+			int[] distances = graph.distances;
+			while (depth >= 0){
+				int town = towns[depth];
+				if (cursor[depth] == offsets[town + 1]){
+					depth--;
+					continue;
+				}
+				int edge = cursor[depth]++;
+				int next = targets[edge];
+				long used = reached[depth] + (long) (byDistance ? distances[edge] : 1);
+				//the route through next needs at least remaining[next] more, and must stay under (or at) the limit
+				if (byDistance ? used + remaining[next] >= limit : used + remaining[next] > limit)
+					continue;
+				push(next, (int) used);
+				if (next == end && (!exact || used == limit))
+					return true;
+			}
+			return false;
+		}
+
+		private void push(int town, int used){
+			if (++depth == towns.length){
+				towns = Arrays.copyOf(towns, 2 * depth);
+				cursor = Arrays.copyOf(cursor, 2 * depth);
+				reached = Arrays.copyOf(reached, 2 * depth);
+			}
+			towns[depth] = town;
+			reached[depth] = used;
+			//a route at the stop limit cannot be extended
+			cursor[depth] = (!byDistance && used == limit) ? graph.offsets[town + 1] : graph.offsets[town];
+		}
+
+		@Override
+		public boolean hasNext(){
+			if (!pending)
+				pending = advance();
+			return pending;
+		}
+
+		@Override
+		public int[] next(){
+			if (!hasNext())
+				throw new NoSuchElementException();
+			pending = false;
+			return Arrays.copyOf(towns, depth + 1);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for lazy route enumeration.
+ * @author Ryan C Smith
+ */
+public class RouteEnumeratorTest {
+	RouteMap routes;
+	CompactGraph graph;
+
+	@Before
+	public void setUp() throws Exception {
+		routes = new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+		graph = routes.getGraph();
+	}
+
+	@Test
+	public void testRoutesByStops() {
+		List<List<String>> found = routes.listRoutesByStops("C", "C", 3, false).collect(Collectors.toList());
+		assertEquals(2, found.size());
+		assertTrue(found.contains(Arrays.asList("C", "D", "C")));
+		assertTrue(found.contains(Arrays.asList("C", "E", "B", "C")));
+		List<List<String>> exact = routes.listRoutesByStops("A", "C", 4, true).collect(Collectors.toList());
+		assertEquals(3, exact.size());
+		for (List<String> route : exact)
+			assertEquals(5, route.size());
+		assertTrue(exact.contains(Arrays.asList("A", "B", "C", "D", "C")));
+	}
+
+	@Test
+	public void testRoutesByDistance() {
+		List<List<String>> found = routes.listRoutesByDistance("C", "C", 30).collect(Collectors.toList());
+		assertEquals(7, found.size());
+		for (List<String> route : found)
+			assertTrue(routes.calculateRouteDistance(route.toArray(new String[0])) < 30);
+		assertTrue(found.contains(Arrays.asList("C", "E", "B", "C", "E", "B", "C", "E", "B", "C")));
+	}
+
+	@Test
+	public void testCountsMatchRouteCounterOnRandomGraphs() {
+		Random random = new Random(19);
+		for (int trial = 0; trial < 100; trial++){
+			CompactGraph.Builder builder = new CompactGraph.Builder();
+			int towns = 1 + random.nextInt(8);
+			for (int town = 0; town < towns; town++)
+				builder.intern("T" + town);
+			for (int road = random.nextInt(3 * towns); road > 0; road--)
+				builder.addEdge(random.nextInt(towns), random.nextInt(towns), 1 + random.nextInt(9));
+			CompactGraph randomGraph = builder.build();
+			for (int start = 0; start < towns; start++){
+				for (int end = 0; end < towns; end++){
+					assertEquals(RouteCounter.countByStops(randomGraph, start, end, 4, false), RouteEnumerator.byStops(randomGraph, start, end, 4, false).count());
+					assertEquals(RouteCounter.countByStops(randomGraph, start, end, 3, true), RouteEnumerator.byStops(randomGraph, start, end, 3, true).stream().count());
+					assertEquals(RouteCounter.countByDistance(randomGraph, start, end, 20), RouteEnumerator.byDistance(randomGraph, start, end, 20).count());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSkipAndLimit() {
+		RouteEnumerator enumerator = RouteEnumerator.byDistance(graph, graph.id("C"), graph.id("C"), 30);
+		List<int[]> all = enumerator.stream().collect(Collectors.toList());
+		List<int[]> page = enumerator.stream().skip(2).limit(3).collect(Collectors.toList());
+		assertEquals(3, page.size());
+		for (int i = 0; i < page.size(); i++)
+			assertArrayEquals(all.get(i + 2), page.get(i));
+	}
+
+	@Test
+	public void testStopsEarlyOnHugeRouteCount() {
+		//the full count is far beyond what could ever be enumerated
+		CompactGraph loop = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,1) (B,A,1) (A,A,1) (B,B,1)"));
+		assertTrue(RouteCounter.countByStops(loop, 0, 1, 60, false) > 1L << 55);
+		assertEquals(1000, RouteEnumerator.byStops(loop, 0, 1, 60, false).stream().limit(1000).count());
+		assertEquals(61, RouteEnumerator.byStops(loop, 0, 1, 60, true).iterator().next().length);
+	}
+
+	@Test
+	public void testNoRoutes() {
+		assertEquals(0, routes.listRoutesByStops("A", "A", 10, false).count());
+		assertEquals(0, routes.listRoutesByDistance("A", "Z", 10).count());
+		Iterator<int[]> none = RouteEnumerator.byStops(graph, graph.id("C"), graph.id("C"), 1, false).iterator();
+		assertFalse(none.hasNext());
+		try {
+			none.next();
+			fail("No route should have been returned.");
+		}
+		catch (NoSuchElementException expected){
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testZeroDistance() {
+		RouteEnumerator.byDistance(CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,0)")), 0, 1, 10);
+	}
+}
@@ -0,0 +1,140 @@
+package transportationEvaluation;
+
+import java.util.Iterator;
+
+/**
+ * Linear, allocation-free evaluation of itineraries against a CompactGraph.
+ * Every method walks the itinerary once, looking up each leg with CompactGraph.findEdge, and fills in a
+ * caller-owned Result: the total distance of the route, or the index of the first leg that does not exist
+ * (leg i runs from towns[i] to towns[i + 1]). A Result can be reused for any number of evaluations, so
+ * repeated calls allocate nothing. Roads may have negative distances, so totals can be negative; whether
+ * the route exists is recorded separately. Totals are summed in a long, so long itineraries cannot overflow.
+ * @author Ryan C Smith
+ */
+public final class RouteEvaluator {
+	/**
+	 * Outcome of one evaluation, overwritten by the next evaluation into the same instance.
+	 */
+	public static final class Result {
+		private long distance;
+		private int missingLeg = -1;
+
+		/**
+		 * @return true if every leg of the route exists.
+		 */
+		public boolean exists(){
+			return missingLeg < 0;
+		}
+
+		/**
+		 * @return total distance of the route.
+		 * @throws IllegalStateException - if the route does not exist.
+		 */
+		public long distance(){
+			if (missingLeg >= 0)
+				throw new IllegalStateException("Route does not exist; missing leg " + missingLeg);
+			return distance;
+		}
+
+		/**
+		 * @return index of the first missing leg, or -1 if the route exists.
+		 */
+		public int missingLeg(){
+			return missingLeg;
+		}
+
+		private boolean found(long total){
+			distance = total;
+			missingLeg = -1;
+			return true;
+		}
+
+		private boolean missing(int leg){
+			distance = 0;
+			missingLeg = leg;
+			return false;
+		}
+	}
+
+	private RouteEvaluator(){
+	}
+
+	/**
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param towns - ID of each town to be visited in order.
+	 * @param result - receives the total distance, or the first missing leg.
+	 * @return true if every leg of the route exists.
+	 */
+	public static boolean evaluate(CompactGraph graph, int[] towns, Result result){
+		return evaluate(graph, towns, 0, towns.length, result);
+	}
+
+	/**
+	 * Evaluates the itinerary held in towns[from, to). Leg indices in the result are relative to from.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param towns - array holding town IDs.
+	 * @param from - index of the first town of the itinerary.
+	 * @param to - index one past the last town of the itinerary.
+	 * @param result - receives the total distance, or the first missing leg.
+	 * @return true if every leg of the route exists.
+	 */
+	public static boolean evaluate(CompactGraph graph, int[] towns, int from, int to, Result result){
+		long total = 0;
+		for (int i = from + 1; i < to; i++){
+			int edge = graph.findEdge(towns[i - 1], towns[i]);
+			if (edge < 0)
+				return result.missing(i - 1 - from);
+			total += graph.distances[edge];
+		}
+		return result.found(total);
+	}
+
+	/**
+	 * Town names that are not part of the graph make the leg entering them (or leaving them, for the
+	 * first town) the missing one.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param towns - name of each town to be visited in order.
+	 * @param result - receives the total distance, or the first missing leg.
+	 * @return true if every leg of the route exists.
+	 */
+	public static boolean evaluate(CompactGraph graph, String[] towns, Result result){
+		if (towns.length < 2)
+			return result.found(0);
+		int previous = graph.id(towns[0]);
+		if (previous < 0)
+			return result.missing(0);
+		long total = 0;
+		for (int i = 1; i < towns.length; i++){
+			int town = graph.id(towns[i]);
+			int edge = town < 0 ? -1 : graph.findEdge(previous, town);
+			if (edge < 0)
+				return result.missing(i - 1);
+			total += graph.distances[edge];
+			previous = town;
+		}
+		return result.found(total);
+	}
+
+	/**
+	 * Evaluates an itinerary streamed one town at a time, so it never has to be held in memory.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param towns - iterator over the name of each town to be visited in order.
+	 * @param result - receives the total distance, or the first missing leg.
+	 * @return true if every leg of the route exists.
+	 */
+	public static boolean evaluate(CompactGraph graph, Iterator<String> towns, Result result){
+		if (!towns.hasNext())
+			return result.found(0);
+		int previous = graph.id(towns.next());
+		long total = 0;
+		for (int leg = 0; towns.hasNext(); leg++){
+			int town = graph.id(towns.next());
+			int edge = (previous < 0 || town < 0) ? -1 : graph.findEdge(previous, town);
+			if (edge < 0)
+				return result.missing(leg);
+			total += graph.distances[edge];
+			previous = town;
+		}
+		return result.found(total);
+	}
+}
@@ -0,0 +1,86 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for itinerary evaluation.
+ * @author Ryan C Smith
+ */
+public class RouteEvaluatorTest {
+	CompactGraph graph;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testExistingRoute() {
+		String[] route = {"A","E","B","C","D"};
+		RouteEvaluator.Result result = new RouteEvaluator.Result();
+		assertTrue(RouteEvaluator.evaluate(graph, route, result));
+		assertTrue(result.exists());
+		assertEquals(22, result.distance());
+		assertEquals(-1, result.missingLeg());
+		assertTrue(RouteEvaluator.evaluate(graph, Arrays.asList(route).iterator(), result));
+		assertEquals(22, result.distance());
+		int[] ids = new int[route.length];
+		for (int i = 0; i < route.length; i++)
+			ids[i] = graph.id(route[i]);
+		assertTrue(RouteEvaluator.evaluate(graph, ids, result));
+		assertEquals(22, result.distance());
+		assertTrue(RouteEvaluator.evaluate(graph, ids, 2, 5, result));
+		assertEquals(12, result.distance());
+	}
+
+	@Test
+	public void testMissingLeg() {
+		RouteEvaluator.Result result = new RouteEvaluator.Result();
+		assertFalse(RouteEvaluator.evaluate(graph, new String[] {"A","E","D"}, result));
+		assertFalse(result.exists());
+		assertEquals(1, result.missingLeg());
+		RouteEvaluator.evaluate(graph, new String[] {"F","A"}, result);
+		assertEquals(0, result.missingLeg());
+		RouteEvaluator.evaluate(graph, Arrays.asList("A","B","C","F").iterator(), result);
+		assertEquals(2, result.missingLeg());
+		try {
+			result.distance();
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e){
+		}
+		assertTrue(RouteEvaluator.evaluate(graph, new String[] {"A","B"}, result));
+		assertEquals(-1, result.missingLeg());
+	}
+
+	@Test
+	public void testNegativeTotal() {
+		CompactGraph negative = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,-5) (B,C,2) (C,A,-1)"));
+		RouteEvaluator.Result result = new RouteEvaluator.Result();
+		assertTrue(RouteEvaluator.evaluate(negative, new String[] {"A","B","C"}, result));
+		assertEquals(-3, result.distance());
+		assertTrue(RouteEvaluator.evaluate(negative, Arrays.asList("A","B","C","A").iterator(), result));
+		assertEquals(-4, result.distance());
+		assertFalse(RouteEvaluator.evaluate(negative, new String[] {"A","C"}, result));
+		assertEquals(0, result.missingLeg());
+		RouteMap routes = new RouteMap(negative);
+		assertEquals(Integer.valueOf(-5), routes.calculateRouteDistance(new String[] {"A","B"}));
+		assertNull(routes.calculateRouteDistance(new String[] {"B","A"}));
+	}
+
+	@Test
+	public void testLongItinerary() {
+		//a million-town cycle would overflow the stack and take exponential time in the recursive version
+		String[] route = new String[1000001];
+		for (int i = 0; i < route.length; i++)
+			route[i] = (i % 2 == 0) ? "C" : "D";
+		RouteEvaluator.Result result = new RouteEvaluator.Result();
+		assertTrue(RouteEvaluator.evaluate(graph, route, result));
+		assertEquals(8000000L, result.distance());
+		assertEquals(new Integer(8000000), new RouteMap(graph).calculateRouteDistance(route));
+	}
+}
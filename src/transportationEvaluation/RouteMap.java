@@ -1,118 +1,356 @@
 package transportationEvaluation;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Represents a transportation system and provides operations for evaluating available routes.
+ * Queries read the current graph version once and run against that immutable CompactGraph without
+ * locking. Changes are applied in batches with apply(GraphUpdate), which publishes a new version;
+ * queries already running keep the version they started with.
  * @author Ryan C Smith
  */
 public class RouteMap {
 	HashMap<String, ArrayList<Node>> adList;
+	volatile CompactGraph graph;
+	volatile ContractionHierarchy hierarchy;
+	volatile Landmarks landmarks;
+	volatile QueryMetrics metrics;
+	private final Object updateLock = new Object();
 	
 	public RouteMap(HashMap<String, ArrayList<Node>> adList){
 		this.adList = adList;
+		this.graph = CompactGraph.fromAdjacencyList(adList);
+	}
+	
+	/**
+	 * Creates a RouteMap over an already compiled graph. The adjacency list is not kept in this case.
+	 * @param graph - CompactGraph representing a transportation system.
+	 */
+	public RouteMap(CompactGraph graph){
+		this.graph = graph;
+	}
+	
+	/**
+	 * @return the current version of the compiled graph queries are answered from.
+	 */
+	public CompactGraph getGraph(){
+		return graph;
+	}
+	
+	/**
+	 * @return version number of the current graph.
+	 */
+	public long getVersion(){
+		return graph.version();
+	}
+	
+	/**
+	 * Starts recording per-query counters, latencies and traces into the given metrics, or stops if null.
+	 * Without metrics the queries only pay a null check.
+	 * @param metrics - metrics to record into, possibly shared with other RouteMaps.
+	 */
+	public void setMetrics(QueryMetrics metrics){
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return the metrics queries are recorded into, or null if instrumentation is off.
+	 */
+	public QueryMetrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * Applies a batch of road changes and publishes the result as the next graph version.
+	 * Writers are serialized with each other; readers are never blocked. The adjacency list passed to the
+	 * constructor is not updated.
+	 * @param update - batch of road changes.
+	 * @return version number of the graph the batch produced.
+	 * @throws IllegalStateException - if the batch changes the distance of a road that does not exist.
+	 */
+	public long apply(GraphUpdate update){
+		synchronized (updateLock){
+			CompactGraph next = update.applyTo(graph);
+			graph = next;
+			return next.version();
+		}
+	}
+	
+	/**
+	 * Runs one or more queries against a single graph version and reports which version that was.
+	 * The RouteMap handed to the query is pinned to the version current when this method was called,
+	 * so several calls made inside the query see a consistent network even while updates are applied.
+	 * @param query - function issuing queries against the pinned RouteMap.
+	 * @return the query result together with the graph version it was answered from.
+	 */
+	public <T> VersionedResult<T> query(Function<RouteMap, T> query){
+		RouteMap pinned = pin();
+		return new VersionedResult<T>(query.apply(pinned), pinned.graph.version());
+	}
+	
+	/**
+	 * @return a RouteMap fixed to the current graph version, sharing its contraction hierarchy, landmarks and metrics if there are any.
+	 */
+	RouteMap pin(){
+		CompactGraph graph = this.graph;
+		RouteMap pinned = new RouteMap(graph);
+		ContractionHierarchy hierarchy = this.hierarchy;
+		if (hierarchy != null && hierarchy.graph() == graph)
+			pinned.hierarchy = hierarchy;
+		Landmarks landmarks = this.landmarks;
+		if (landmarks != null && landmarks.graph() == graph)
+			pinned.landmarks = landmarks;
+		pinned.metrics = metrics;
+		return pinned;
+	}
+	
+	/**
+	 * Answers calculateShortestRoute from a contraction hierarchy instead of a plain Dijkstra search.
+	 * The hierarchy only covers the graph it was built from: once apply(GraphUpdate) publishes a new version,
+	 * shortest routes fall back to Dijkstra's algorithm until a hierarchy for the new version is supplied.
+	 * @param hierarchy - hierarchy built from the current graph, or null to stop using one.
+	 * @throws IllegalArgumentException - if the hierarchy was built from a different graph.
+	 */
+	public void useContractionHierarchy(ContractionHierarchy hierarchy){
+		if (hierarchy != null && hierarchy.graph() != graph)
+			throw new IllegalArgumentException("Contraction hierarchy was built from a different graph.");
+		this.hierarchy = hierarchy;
+	}
+	
+	/**
+	 * @return the contraction hierarchy in use, or null if shortest routes are answered by Dijkstra's algorithm.
+	 */
+	public ContractionHierarchy getContractionHierarchy(){
+		ContractionHierarchy hierarchy = this.hierarchy;
+		return (hierarchy != null && hierarchy.graph() == graph) ? hierarchy : null;
+	}
+	
+	/**
+	 * Supplies the landmark tables used by SearchStrategy.ALT. Like a contraction hierarchy, they only cover
+	 * the graph they were built from and are ignored once apply(GraphUpdate) publishes a new version.
+	 * @param landmarks - landmarks built from the current graph, or null to drop them.
+	 * @throws IllegalArgumentException - if the landmarks were built from a different graph.
+	 */
+	public void useLandmarks(Landmarks landmarks){
+		if (landmarks != null && landmarks.graph() != graph)
+			throw new IllegalArgumentException("Landmarks were built from a different graph.");
+		this.landmarks = landmarks;
+	}
+	
+	/**
+	 * @return the landmarks in use for the current graph, or null if there are none.
+	 */
+	public Landmarks getLandmarks(){
+		Landmarks landmarks = this.landmarks;
+		return (landmarks != null && landmarks.graph() == graph) ? landmarks : null;
 	}
 	
 	/**
 	 * Calculates the distance between 2 towns. 
+	 * Walks the route once, so the cost is linear in the number of towns. Use RouteEvaluator directly to
+	 * find out which leg of a missing route does not exist.
 	 * @param towns - String array containing the name of each town to be visited in order.
 	 * @return - Integer with the total distance for the route. Null if no route exists.
+	 * @throws ArithmeticException - if the total distance does not fit in an Integer.
 	 */
 	public Integer calculateRouteDistance(String[] towns){
-		//base cases for recursion
-		if (towns.length == 0 || towns.length == 1){
-			return 0;
-		}
-		else if (towns.length == 2){
-			if (Node.findNode(adList.get(towns[0]), towns[1]) == null)
-				return null;
-			else
-				return Node.findNode(adList.get(towns[0]), towns[1]).distance;
-		}
-		//recursion
-		else{
-			if (Node.findNode(adList.get(towns[0]), towns[1]) == null ||
-					calculateRouteDistance(Arrays.copyOfRange(towns, 1, towns.length)) == null){
-				return null;
-			}
-			else
-				return Node.findNode(adList.get(towns[0]), towns[1]).distance + calculateRouteDistance(Arrays.copyOfRange(towns, 1, towns.length));
+		QueryMetrics.Span span = QueryMetrics.start(metrics);
+		CompactGraph graph = this.graph;
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			RouteEvaluator.Result route = workspace.route();
+			boolean exists = RouteEvaluator.evaluate(graph, towns, route);
+			QueryMetrics.record(span, QueryMetrics.Operation.ROUTE_DISTANCE, 0, graph.version(),
+					towns.length == 0 ? null : towns[0], towns.length == 0 ? null : towns[towns.length - 1]);
+			return exists ? Math.toIntExact(route.distance()) : null;
+		} finally {
+			workspace.release();
 		}
 	}
 	
 	/**
-	 * Uses a modified version of DFS to traverse a graph representing a transportation system and return the 
-	 * number of distinct routes between a start town and end town that have a distance of less than maxDistance.
+	 * Counts the distinct routes between a start town and end town that have a distance of less than maxDistance.
+	 * Uses dynamic programming over (town, distance) states rather than enumerating every route.
+	 * Roads of distance 0 are counted like any other road.
 	 * @param start - origin town in String form
 	 * @param end - destination town in String form
 	 * @param maxDistance - distance limit for a given route
 	 * @return number of distinct routes with distance < maxDistance between start and end towns.
+	 * @throws ArithmeticException - if the number of routes does not fit in an Integer.
+	 * @throws IllegalStateException - if a road with a negative distance, or a cycle of zero-length roads, is reachable within the limit.
 	 */
 	public Integer calculateNumberOfRoutesByDistance(String start, String end, int maxDistance){
-		ArrayList<ArrayList<String>> masterPathsList = new ArrayList<ArrayList<String>>();
-		Queue<ArrayList<String>> pathQueue = new LinkedList<ArrayList<String>>();
-		ArrayList<String> pathBuilder = new ArrayList<String>();
-		pathBuilder.add(start);
-		pathQueue.add(pathBuilder);
-		while (!pathQueue.isEmpty()){
-			ArrayList<String> currentPartialPath = pathQueue.poll();
-			String lastTownInPath = currentPartialPath.get(currentPartialPath.size() - 1);	
-			String[] pathAsArray = new String[currentPartialPath.size()];
-			pathAsArray = currentPartialPath.toArray(pathAsArray);
-			Integer currentPathLength = calculateRouteDistance(pathAsArray);
-			if (lastTownInPath.equals(end) && currentPartialPath.size() > 1 && currentPathLength < maxDistance)
-				masterPathsList.add(currentPartialPath);
-			if (currentPathLength < maxDistance){
-				for (Node node: adList.get(lastTownInPath)){
-					ArrayList<String> updatedPath = new ArrayList<String>();
-					updatedPath.addAll(currentPartialPath);
-					updatedPath.add(node.town);
-					pathQueue.add(updatedPath);
-				}
-			}
+		return Math.toIntExact(countRoutesByDistance(start, end, maxDistance));
+	}
+	
+	/**
+	 * Primitive version of calculateNumberOfRoutesByDistance, which allocates nothing once the calling
+	 * thread's search workspace has grown to the graph.
+	 * @param start - origin town in String form
+	 * @param end - destination town in String form
+	 * @param maxDistance - distance limit for a given route
+	 * @return number of distinct routes with distance < maxDistance between start and end towns.
+	 * @throws ArithmeticException - if the number of routes does not fit in a long.
+	 * @throws IllegalStateException - if a road with a negative distance, or a cycle of zero-length roads, is reachable within the limit.
+	 */
+	public long countRoutesByDistance(String start, String end, int maxDistance){
+		QueryMetrics.Span span = QueryMetrics.start(metrics);
+		CompactGraph graph = this.graph;
+		int startId = graph.id(start);
+		int endId = graph.id(end);
+		if (startId < 0 || endId < 0){
+			QueryMetrics.record(span, QueryMetrics.Operation.ROUTES_BY_DISTANCE, 0, graph.version(), start, end);
+			return 0;
+		}
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			long routes = RouteCounter.countByDistance(graph, startId, endId, maxDistance, workspace);
+			QueryMetrics.record(span, QueryMetrics.Operation.ROUTES_BY_DISTANCE, workspace.settled(), graph.version(), start, end);
+			return routes;
+		} finally {
+			workspace.release();
 		}
-		return masterPathsList.size();	
 	}
 	
 	/**
-	 * Uses a modified version of BFS to traverse a graph representing a transportation system and return the 
-	 * number of distinct routes between a start town and end town with <= maxStops. If boolean filter == true, 
+	 * Counts the distinct routes from a start town to every town that have a distance of less than maxDistance,
+	 * in one pass rather than one calculateNumberOfRoutesByDistance call per destination.
+	 * @param start - origin town in String form
+	 * @param maxDistance - distance limit for a given route
+	 * @return number of routes to each destination with at least one route, in town ID order. Empty if start is not part of the graph.
+	 * @throws ArithmeticException - if a number of routes does not fit in a long.
+	 */
+	public Map<String, Long> calculateNumberOfRoutesByDistanceFrom(String start, int maxDistance){
+		QueryMetrics.Span span = QueryMetrics.start(metrics);
+		CompactGraph graph = this.graph;
+		int startId = graph.id(start);
+		Map<String, Long> routes = new LinkedHashMap<String, Long>();
+		long settled = 0;
+		if (startId >= 0){
+			long[] counts;
+			SearchWorkspace workspace = SearchWorkspace.acquire();
+			try {
+				counts = RouteCounter.countByDistanceToAll(graph, startId, maxDistance, workspace);
+				settled = workspace.settled();
+			} finally {
+				workspace.release();
+			}
+			for (int town = 0; town < counts.length; town++){
+				if (counts[town] != 0)
+					routes.put(graph.name(town), counts[town]);
+			}
+		}
+		QueryMetrics.record(span, QueryMetrics.Operation.ROUTES_BY_DISTANCE, settled, graph.version(), start, null);
+		return routes;
+	}
+
+	/**
+	 * Counts the distinct routes between a start town and end town with <= maxStops. If boolean filter == true, 
 	 * the number returned will reflect the number of routes with exactly maxStops.
+	 * Uses dynamic programming over (town, stops) states rather than enumerating every route.
 	 * @param start - origin town in String form
 	 * @param end - destination town in String form
 	 * @param maxStops - the maximum number of stops allowed on a route.
 	 * @param filter - boolean, determines whether to return routes with exact number of stops or <= number of stops.
 	 * @return filter boolean is used, when true returns counts for routes with stops == maxStops, when false returns routes with stops <= maxStops
+	 * @throws ArithmeticException - if the number of routes does not fit in an Integer.
 	 */
 	public Integer calculateNumberOfRoutesByStops(String start, String end, int maxStops, boolean filter){
-		ArrayList<ArrayList<String>> masterPathsList = new ArrayList<ArrayList<String>>();
-		Queue<ArrayList<String>> pathQueue = new LinkedList<ArrayList<String>>();
-		ArrayList<String> pathBuilder = new ArrayList<String>();
-		pathBuilder.add(start);
-		pathQueue.add(pathBuilder);
-		while (!pathQueue.isEmpty()){
-			ArrayList<String> currentPartialPath = pathQueue.poll();
-			String lastTownInPath = currentPartialPath.get(currentPartialPath.size() - 1);	
-			if (lastTownInPath.equals(end) && currentPartialPath.size() > 1 && currentPartialPath.size() <= (maxStops + 1))
-				masterPathsList.add(currentPartialPath);
-			if (currentPartialPath.size() <= (maxStops + 1)){
-				for (Node node: adList.get(lastTownInPath)){
-					ArrayList<String> updatedPath = new ArrayList<String>();
-					updatedPath.addAll(currentPartialPath);
-					updatedPath.add(node.town);
-					pathQueue.add(updatedPath);
-				}
-			}
+		return Math.toIntExact(countRoutesByStops(start, end, maxStops, filter));
+	}
+	
+	/**
+	 * Primitive version of calculateNumberOfRoutesByStops, which allocates nothing once the calling
+	 * thread's search workspace has grown to the graph.
+	 * @param start - origin town in String form
+	 * @param end - destination town in String form
+	 * @param maxStops - the maximum number of stops allowed on a route.
+	 * @param exact - when true only routes with exactly maxStops stops are counted.
+	 * @return number of routes.
+	 * @throws ArithmeticException - if the number of routes does not fit in a long.
+	 */
+	public long countRoutesByStops(String start, String end, int maxStops, boolean exact){
+		QueryMetrics.Span span = QueryMetrics.start(metrics);
+		CompactGraph graph = this.graph;
+		int startId = graph.id(start);
+		int endId = graph.id(end);
+		if (startId < 0 || endId < 0){
+			QueryMetrics.record(span, QueryMetrics.Operation.ROUTES_BY_STOPS, 0, graph.version(), start, end);
+			return 0;
+		}
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			long routes = RouteCounter.countByStops(graph, startId, endId, maxStops, exact, workspace);
+			QueryMetrics.record(span, QueryMetrics.Operation.ROUTES_BY_STOPS, workspace.settled(), graph.version(), start, end);
+			return routes;
+		} finally {
+			workspace.release();
 		}
-		return filter ? filterBySize(masterPathsList, maxStops + 1) : masterPathsList.size();	
 	}
 	
+	/**
+	 * Lists the routes counted by calculateNumberOfRoutesByDistance, lazily: each route is found by a
+	 * depth-first search only when the stream asks for it, so limit and findFirst end the search early.
+	 * @param start - origin town in String form
+	 * @param end - destination town in String form
+	 * @param maxDistance - distance limit for a given route
+	 * @return stream of routes with distance < maxDistance, each a list of the towns visited in order.
+	 * @throws IllegalStateException - if the graph has a road with a distance <= 0.
+	 */
+	public Stream<List<String>> listRoutesByDistance(String start, String end, int maxDistance){
+		CompactGraph graph = this.graph;
+		int startId = graph.id(start);
+		int endId = graph.id(end);
+		if (startId < 0 || endId < 0)
+			return Stream.empty();
+		return RouteEnumerator.byDistance(graph, startId, endId, maxDistance).routes();
+	}
+	
+	/**
+	 * Lists the routes counted by calculateNumberOfRoutesByStops, lazily, in the same way as listRoutesByDistance.
+	 * @param start - origin town in String form
+	 * @param end - destination town in String form
+	 * @param maxStops - the maximum number of stops allowed on a route.
+	 * @param filter - when true only routes with exactly maxStops stops are listed.
+	 * @return stream of routes, each a list of the towns visited in order.
+	 */
+	public Stream<List<String>> listRoutesByStops(String start, String end, int maxStops, boolean filter){
+		CompactGraph graph = this.graph;
+		int startId = graph.id(start);
+		int endId = graph.id(end);
+		if (startId < 0 || endId < 0)
+			return Stream.empty();
+		return RouteEnumerator.byStops(graph, startId, endId, maxStops, filter).routes();
+	}
+	
+	/**
+	 * Precomputes the number of routes with exactly the given number of stops between every pair of towns.
+	 * Use this instead of calculateNumberOfRoutesByStops(..., true) when many origin/destination pairs are queried.
+	 * @param stops - exact number of stops, at least 1.
+	 * @return table answering any (start, end) lookup for that number of stops.
+	 */
+	public StopCountMatrix calculateExactStopsTable(int stops){
+		return StopCountMatrix.compute(graph, stops);
+	}
+
+	/**
+	 * Precomputes the shortest route distance between every pair of towns, in parallel on the common
+	 * ForkJoinPool. Use this instead of calculateShortestRoute when most pairs will be queried.
+	 * @return table answering any (start, end) lookup with the same result as calculateShortestRoute.
+	 * @throws IllegalArgumentException - if the network is too large for an in-memory table; see DistanceMatrix.computeToFile.
+	 */
+	public DistanceMatrix calculateShortestRouteTable(){
+		return DistanceMatrix.compute(graph);
+	}
+
 	/**
 	 * Helper function for calculateNumberOfRoutesByStops. Returns number of routes containing exactly the
 	 * desired number of stops.
@@ -129,46 +367,196 @@ public class RouteMap {
 		return counter;
 	}
 	/**
-	 * Uses a modified version of Djikstra's algorithm to calculate the shortest route between 2 towns. 
+	 * Uses a binary-heap version of Djikstra's algorithm to calculate the shortest route between 2 towns.
+	 * The search stops as soon as the destination is settled. When start equals end the shortest cycle is returned.
+	 * If a contraction hierarchy for the current graph is in use, it answers the query instead.
 	 * @param start - start town in String form.
 	 * @param end - destination town in String form.
 	 * @return Total distance of shortest path between two towns. Returns null if no route exists.
 	 */
 	public Integer calculateShortestRoute(String start, String end){
-		//create and fill arrays with starting values
-		HashMap<String, Integer> shortestPath = new HashMap<String, Integer>();
-		for (String town: adList.keySet()){
-			if (town.equals(start))
-				shortestPath.put(town, 0);
-			else
-				shortestPath.put(town, Integer.MAX_VALUE);
-		}
-		//djikstra's
-		Set<String> townSet = cloneSet(adList.keySet());
-		while (!townSet.isEmpty()){
-			String currentClosestTown = findShortest(shortestPath, townSet);
-			townSet.remove(currentClosestTown);
-			for (Node node: adList.get(currentClosestTown)){
-				if ((shortestPath.get(currentClosestTown) + node.distance) < shortestPath.get(node.town)){
-					if (!((shortestPath.get(currentClosestTown) + node.distance) < shortestPath.get(currentClosestTown)))//detects overflows
-						shortestPath.put(node.town, (shortestPath.get(currentClosestTown) + node.distance));
-				}
+		int distance = shortestDistance(start, end);
+		return distance == DijkstraSearch.UNREACHABLE ? null : distance;
+	}
+	
+	/**
+	 * Primitive version of calculateShortestRoute. Without a contraction hierarchy it allocates nothing once
+	 * the calling thread's search workspace has grown to the graph.
+	 * @param start - start town in String form.
+	 * @param end - destination town in String form.
+	 * @return Total distance of shortest path between two towns, or DijkstraSearch.UNREACHABLE if no route exists.
+	 */
+	public int shortestDistance(String start, String end){
+		QueryMetrics.Span span = QueryMetrics.start(metrics);
+		CompactGraph graph = this.graph;
+		ContractionHierarchy hierarchy = this.hierarchy;
+		int startId = graph.id(start);
+		int endId = graph.id(end);
+		int distance;
+		long settled;
+		if (startId < 0 || endId < 0){
+			distance = DijkstraSearch.UNREACHABLE;
+			settled = 0;
+		}
+		else if (hierarchy != null && hierarchy.graph() == graph){
+			SearchResult result = hierarchy.search(startId, endId);
+			distance = result.distance();
+			settled = result.settled();
+		}
+		else{
+			SearchWorkspace workspace = SearchWorkspace.acquire();
+			try {
+				distance = DijkstraSearch.shortestDistance(graph, startId, endId, workspace);
+				settled = workspace.settled();
+			} finally {
+				workspace.release();
 			}
 		}
-		//handle case of cycle
-		if (start.equals(end)){
-			Integer shortestCycle = Integer.MAX_VALUE;
-			for (String item:shortestPath.keySet()){
-				for (Node node: adList.get(item)){
-					if (node.town.equals(start))
-						if (shortestPath.get(item) + node.distance < shortestCycle)
-							if (!((shortestPath.get(item) + node.distance) < shortestPath.get(item)))
-								shortestCycle = shortestPath.get(item) + node.distance;
-				}
+		QueryMetrics.record(span, QueryMetrics.Operation.SHORTEST_ROUTE, settled, graph.version(), start, end);
+		return distance;
+	}
+	
+	/**
+	 * Calculates the towns along the shortest route between 2 towns, found by the same search as
+	 * calculateShortestRoute without a contraction hierarchy. When start equals end the shortest cycle is returned.
+	 * @param start - start town in String form.
+	 * @param end - destination town in String form.
+	 * @return names of the towns visited in order, including start and end. Returns null if no route exists.
+	 */
+	public List<String> calculateShortestPath(String start, String end){
+		QueryMetrics.Span span = QueryMetrics.start(metrics);
+		CompactGraph graph = this.graph;
+		int startId = graph.id(start);
+		int endId = graph.id(end);
+		int[] path = null;
+		long settled = 0;
+		if (startId >= 0 && endId >= 0){
+			SearchWorkspace workspace = SearchWorkspace.acquire();
+			try {
+				path = DijkstraSearch.shortestPath(graph, startId, endId, workspace);
+				settled = workspace.settled();
+			} finally {
+				workspace.release();
+			}
+		}
+		QueryMetrics.record(span, QueryMetrics.Operation.SHORTEST_PATH, settled, graph.version(), start, end);
+		return path == null ? null : graph.names(path);
+	}
+	
+	/**
+	 * Runs one search from an origin whose tree answers the shortest route and path to every destination,
+	 * for callers such as dispatchers that need many routes from the same town.
+	 * @param start - origin town in String form.
+	 * @return tree of shortest routes from start. Returns null if the town is not part of the graph.
+	 */
+	public ShortestPathTree calculateShortestPathTree(String start){
+		QueryMetrics.Span span = QueryMetrics.start(metrics);
+		CompactGraph graph = this.graph;
+		int startId = graph.id(start);
+		ShortestPathTree tree = null;
+		long settled = 0;
+		if (startId >= 0){
+			SearchWorkspace workspace = SearchWorkspace.acquire();
+			try {
+				tree = DijkstraSearch.shortestPathTree(graph, startId, workspace);
+				settled = workspace.settled();
+			} finally {
+				workspace.release();
 			}
-			return (shortestCycle == Integer.MAX_VALUE) ? null : shortestCycle; //if distance remains MAX_VALUE, no path exists
 		}
-		return (shortestPath.get(end) == Integer.MAX_VALUE) ? null : shortestPath.get(end);
+		QueryMetrics.record(span, QueryMetrics.Operation.SHORTEST_PATH, settled, graph.version(), start, null);
+		return tree;
+	}
+	
+	/**
+	 * Finds the trade-off between distance and stops on the routes between 2 towns in one label-setting
+	 * search: for each number of stops up to maxStops, the shortest route unless fewer stops already do as well.
+	 * When start equals end the routes are cycles.
+	 * @param start - origin town in String form.
+	 * @param end - destination town in String form.
+	 * @param maxStops - the maximum number of stops allowed on a route.
+	 * @return the Pareto-optimal routes. Returns null if either town is not part of the graph.
+	 * @throws IllegalStateException - if the graph has a road with a negative distance.
+	 */
+	public ParetoFront calculateParetoRoutes(String start, String end, int maxStops){
+		QueryMetrics.Span span = QueryMetrics.start(metrics);
+		CompactGraph graph = this.graph;
+		int startId = graph.id(start);
+		int endId = graph.id(end);
+		ParetoFront front = (startId < 0 || endId < 0) ? null : ParetoSearch.search(graph, startId, endId, maxStops);
+		QueryMetrics.record(span, QueryMetrics.Operation.PARETO_ROUTES, front == null ? 0 : front.settled(), graph.version(), start, end);
+		return front;
+	}
+	
+	/**
+	 * Calculates the shortest route between 2 towns that has at most maxStops stops.
+	 * @param start - start town in String form.
+	 * @param end - destination town in String form.
+	 * @param maxStops - the maximum number of stops allowed on a route.
+	 * @return Total distance of the shortest such route. Returns null if no route exists within maxStops.
+	 * @throws IllegalStateException - if the graph has a road with a negative distance.
+	 */
+	public Integer calculateShortestRouteWithinStops(String start, String end, int maxStops){
+		ParetoFront front = calculateParetoRoutes(start, end, maxStops);
+		int route = front == null ? -1 : front.shortestWithin(maxStops);
+		return route < 0 ? null : front.distance(route);
+	}
+	
+	/**
+	 * Calculates the shortest route between 2 towns with a chosen algorithm. Every strategy returns the
+	 * same distances as calculateShortestRoute, including the shortest cycle when start equals end.
+	 * @param start - start town in String form.
+	 * @param end - destination town in String form.
+	 * @param strategy - algorithm to answer the query with.
+	 * @return Total distance of shortest path between two towns. Returns null if no route exists.
+	 * @throws IllegalStateException - if the strategy needs landmarks or a contraction hierarchy that is not in use.
+	 */
+	public Integer calculateShortestRoute(String start, String end, SearchStrategy strategy){
+		SearchResult result = searchShortestRoute(start, end, strategy);
+		return result.found() ? result.distance() : null;
+	}
+	
+	/**
+	 * Calculates the shortest route between 2 towns with a chosen algorithm and reports how many towns it
+	 * settled, so that strategies can be compared on the same query.
+	 * @param start - start town in String form.
+	 * @param end - destination town in String form.
+	 * @param strategy - algorithm to answer the query with.
+	 * @return the shortest distance (DijkstraSearch.UNREACHABLE if no route exists or a town is unknown) and the number of towns settled.
+	 * @throws IllegalStateException - if the strategy needs landmarks or a contraction hierarchy that is not in use.
+	 */
+	public SearchResult searchShortestRoute(String start, String end, SearchStrategy strategy){
+		QueryMetrics.Span span = QueryMetrics.start(metrics);
+		CompactGraph graph = this.graph;
+		SearchResult result = search(graph, start, end, strategy);
+		QueryMetrics.record(span, QueryMetrics.Operation.SHORTEST_ROUTE, result.settled(), graph.version(), start, end);
+		return result;
+	}
+	
+	/**
+	 * Helper method for searchShortestRoute. Answers the query on the given graph version with the chosen strategy.
+	 */
+	private SearchResult search(CompactGraph graph, String start, String end, SearchStrategy strategy){
+		ContractionHierarchy hierarchy = this.hierarchy;
+		Landmarks landmarks = this.landmarks;
+		if (strategy == SearchStrategy.ALT && (landmarks == null || landmarks.graph() != graph))
+			throw new IllegalStateException("No landmarks for the current graph; supply them with useLandmarks.");
+		if (strategy == SearchStrategy.CONTRACTION_HIERARCHY && (hierarchy == null || hierarchy.graph() != graph))
+			throw new IllegalStateException("No contraction hierarchy for the current graph; supply one with useContractionHierarchy.");
+		int startId = graph.id(start);
+		int endId = graph.id(end);
+		if (startId < 0 || endId < 0)
+			return new SearchResult(DijkstraSearch.UNREACHABLE, 0);
+		switch (strategy){
+		case BIDIRECTIONAL:
+			return BidirectionalSearch.search(graph, startId, endId);
+		case ALT:
+			return landmarks.search(startId, endId);
+		case CONTRACTION_HIERARCHY:
+			return hierarchy.search(startId, endId);
+		default:
+			return DijkstraSearch.search(graph, startId, endId);
+		}
 	}
 	
 	/**
@@ -2,8 +2,10 @@ package transportationEvaluation;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.Before;
@@ -69,6 +71,15 @@ public class RouteMapTest {
 		assertEquals(new Integer(5), routes.calculateShortestRoute("C", "B"));
 	}
 	
+	@Test
+	public void testCalculateShortestRouteNoRoute(){
+		RouteMap oneWay = new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,C,4)"));
+		assertEquals(null, oneWay.calculateShortestRoute("C", "A"));
+		assertEquals(null, oneWay.calculateShortestRoute("A", "A"));
+		assertEquals(new Integer(9), oneWay.calculateShortestRoute("A", "C"));
+		assertEquals(null, routes.calculateShortestRoute("A", "F"));
+	}
+	
 	@Test
 	public void testCalculateRouteDistance(){
 		String[] route0 = {"A","B","C"};
@@ -92,6 +103,17 @@ public class RouteMapTest {
 		assertEquals(new Integer(2), routes.calculateNumberOfRoutesByDistance("A", "D", 20));
 	}
 	
+	@Test
+	public void testCalculateNumberOfRoutesByDistanceFrom(){
+		Map<String, Long> fromC = routes.calculateNumberOfRoutesByDistanceFrom("C", 30);
+		assertEquals(Long.valueOf(7), fromC.get("C"));
+		assertFalse(fromC.containsKey("A"));
+		for (String end : fromC.keySet())
+			assertEquals(fromC.get(end).longValue(), routes.calculateNumberOfRoutesByDistance("C", end, 30).longValue());
+		assertEquals(Long.valueOf(3), routes.calculateNumberOfRoutesByDistanceFrom("A", 15).get("C"));
+		assertTrue(routes.calculateNumberOfRoutesByDistanceFrom("F", 30).isEmpty());
+	}
+	
 	@Test
 	public void testCalculateNumberOfRoutesByStops(){
 		assertEquals(new Integer(2), routes.calculateNumberOfRoutesByStops("C", "C", 3, false));
@@ -100,4 +122,16 @@ public class RouteMapTest {
 		assertEquals(new Integer(1), routes.calculateNumberOfRoutesByStops("A", "E", 2, true));
 	}
 
+	@Test(timeout = 10000)
+	public void testNegativeCycleDoesNotHang(){
+		RouteMap negative = new RouteMap(Trains.createAdjacencyList("(A,B,1) (B,A,-2) (A,C,100) (C,A,1)"));
+		assertEquals(new Integer(100), negative.calculateShortestRoute("A", "C"));
+		assertEquals(new Integer(100), negative.calculateShortestRoute("A", "C", SearchStrategy.BIDIRECTIONAL));
+		assertEquals(Arrays.asList("A", "C"), negative.calculateShortestPath("A", "C"));
+		assertEquals(new Integer(-1), negative.calculateShortestRoute("A", "A"));
+		CompactGraph graph = negative.getGraph();
+		assertEquals(100, negative.calculateShortestPathTree("A").distanceTo(graph.id("C")));
+		assertEquals(100, DijkstraSearch.search(graph, graph.id("A"), graph.id("C")).distance());
+		assertEquals(new Integer(100), new ShortestPathCache(negative, 1 << 20).calculateShortestRoute("A", "C"));
+	}
 }
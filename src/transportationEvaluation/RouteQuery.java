@@ -0,0 +1,210 @@
+package transportationEvaluation;
+
+import java.util.Arrays;
+
+/**
+ * One route inquiry, as read from a batch file or a query stream. The line format is
+ * <pre>
+ *   distance A-B-C          total distance of a route
+ *   shortest A C            shortest route between two towns
+ *   stops A C 3             number of routes with at most 3 stops
+ *   exactstops A C 3        number of routes with exactly 3 stops
+ *   within A C 30           number of routes with total distance less than 30
+ * </pre>
+ * Results are rendered as the number, or NO SUCH ROUTE when a route does not exist.
+ * @author Ryan C Smith
+ */
+public final class RouteQuery {
+	/**
+	 * Rendered result for routes that do not exist, matching the interactive driver.
+	 */
+	public static final String NO_SUCH_ROUTE = "NO SUCH ROUTE";
+
+	/**
+	 * Type of route inquiry.
+	 */
+	public enum Kind {
+		ROUTE_DISTANCE("distance"),
+		SHORTEST_ROUTE("shortest"),
+		ROUTES_BY_STOPS("stops"),
+		ROUTES_BY_EXACT_STOPS("exactstops"),
+		ROUTES_BY_DISTANCE("within");
+
+		private final String keyword;
+
+		Kind(String keyword){
+			this.keyword = keyword;
+		}
+
+		/**
+		 * @return keyword introducing this kind of query in the line format.
+		 */
+		public String keyword(){
+			return keyword;
+		}
+	}
+
+	final Kind kind;
+	final String[] towns;
+	final int constraint;
+
+	private RouteQuery(Kind kind, String[] towns, int constraint){
+		this.kind = kind;
+		this.towns = towns;
+		this.constraint = constraint;
+	}
+
+	/**
+	 * @param towns - name of each town to be visited in order.
+	 * @return query for the total distance of the route.
+	 */
+	public static RouteQuery routeDistance(String... towns){
+		return new RouteQuery(Kind.ROUTE_DISTANCE, towns.clone(), 0);
+	}
+
+	/**
+	 * @param start - origin town.
+	 * @param end - destination town.
+	 * @return query for the shortest route between the towns.
+	 */
+	public static RouteQuery shortestRoute(String start, String end){
+		return new RouteQuery(Kind.SHORTEST_ROUTE, new String[] {start, end}, 0);
+	}
+
+	/**
+	 * @param start - origin town.
+	 * @param end - destination town.
+	 * @param maxStops - stop limit.
+	 * @param exact - true to count only routes with exactly maxStops stops.
+	 * @return query for the number of routes by stops.
+	 */
+	public static RouteQuery routesByStops(String start, String end, int maxStops, boolean exact){
+		return new RouteQuery(exact ? Kind.ROUTES_BY_EXACT_STOPS : Kind.ROUTES_BY_STOPS, new String[] {start, end}, maxStops);
+	}
+
+	/**
+	 * @param start - origin town.
+	 * @param end - destination town.
+	 * @param maxDistance - distance limit (exclusive).
+	 * @return query for the number of routes shorter than maxDistance.
+	 */
+	public static RouteQuery routesByDistance(String start, String end, int maxDistance){
+		return new RouteQuery(Kind.ROUTES_BY_DISTANCE, new String[] {start, end}, maxDistance);
+	}
+
+	/**
+	 * Parses one query line.
+	 * @param line - query in the line format described above.
+	 * @return the parsed query.
+	 * @throws IllegalArgumentException - if the line is not a valid query.
+	 */
+	public static RouteQuery parse(String line){
+		String[] words = line.trim().split("\\s+");
+		Kind kind = null;
+		for (Kind candidate : Kind.values()){
+			if (candidate.keyword.equalsIgnoreCase(words[0]))
+				kind = candidate;
+		}
+		if (kind == null)
+			throw new IllegalArgumentException("Unknown query: " + line.trim());
+		if (kind == Kind.ROUTE_DISTANCE){
+			if (words.length != 2)
+				throw new IllegalArgumentException("Expected: distance townname-townname-...");
+			return routeDistance(words[1].split("-"));
+		}
+		if (kind == Kind.SHORTEST_ROUTE){
+			if (words.length != 3)
+				throw new IllegalArgumentException("Expected: shortest start end");
+			return shortestRoute(words[1], words[2]);
+		}
+		if (words.length != 4)
+			throw new IllegalArgumentException("Expected: " + kind.keyword + " start end number");
+		int constraint;
+		try {
+			constraint = Integer.parseInt(words[3]);
+		} catch (NumberFormatException e){
+			throw new IllegalArgumentException("Not a number: " + words[3]);
+		}
+		if (kind == Kind.ROUTES_BY_DISTANCE)
+			return routesByDistance(words[1], words[2], constraint);
+		return routesByStops(words[1], words[2], constraint, kind == Kind.ROUTES_BY_EXACT_STOPS);
+	}
+
+	/**
+	 * @return type of inquiry.
+	 */
+	public Kind kind(){
+		return kind;
+	}
+
+	/**
+	 * @return origin town.
+	 */
+	public String start(){
+		return towns[0];
+	}
+
+	/**
+	 * @return destination town.
+	 */
+	public String end(){
+		return towns[towns.length - 1];
+	}
+
+	/**
+	 * @return stop or distance limit, 0 for queries without one.
+	 */
+	public int constraint(){
+		return constraint;
+	}
+
+	/**
+	 * Answers the query on its own, without sharing work with other queries.
+	 * @param routeMap - RouteMap to query.
+	 * @return rendered result.
+	 */
+	public String evaluate(RouteMap routeMap){
+		switch (kind){
+		case ROUTE_DISTANCE:
+			return render(routeMap.calculateRouteDistance(towns));
+		case SHORTEST_ROUTE:
+			return render(routeMap.calculateShortestRoute(start(), end()));
+		case ROUTES_BY_STOPS:
+			return render(routeMap.calculateNumberOfRoutesByStops(start(), end(), constraint, false));
+		case ROUTES_BY_EXACT_STOPS:
+			return render(routeMap.calculateNumberOfRoutesByStops(start(), end(), constraint, true));
+		default:
+			return render(routeMap.calculateNumberOfRoutesByDistance(start(), end(), constraint));
+		}
+	}
+
+	/**
+	 * @param value - numeric result, or null if no route exists.
+	 * @return rendered result.
+	 */
+	static String render(Number value){
+		return value == null ? NO_SUCH_ROUTE : value.toString();
+	}
+
+	@Override
+	public String toString(){
+		if (kind == Kind.ROUTE_DISTANCE)
+			return kind.keyword + " " + String.join("-", towns);
+		if (kind == Kind.SHORTEST_ROUTE)
+			return kind.keyword + " " + start() + " " + end();
+		return kind.keyword + " " + start() + " " + end() + " " + constraint;
+	}
+
+	@Override
+	public boolean equals(Object other){
+		if (!(other instanceof RouteQuery))
+			return false;
+		RouteQuery query = (RouteQuery) other;
+		return kind == query.kind && constraint == query.constraint && Arrays.equals(towns, query.towns);
+	}
+
+	@Override
+	public int hashCode(){
+		return (kind.hashCode() * 31 + constraint) * 31 + Arrays.hashCode(towns);
+	}
+}
@@ -0,0 +1,33 @@
+package transportationEvaluation;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a row range in halves until blocks are at most blockSize rows, then runs the kernel on each
+ * block. Blocks run in parallel on the ForkJoinPool that invokes the task.
+ * @author Ryan C Smith
+ */
+final class RowBlocks extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	private final RowKernel kernel;
+	private final int from;
+	private final int to;
+	private final int blockSize;
+
+	RowBlocks(RowKernel kernel, int from, int to, int blockSize){
+		this.kernel = kernel;
+		this.from = from;
+		this.to = to;
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	protected void compute(){
+		if (to - from <= blockSize){
+			kernel.computeRows(from, to);
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		invokeAll(new RowBlocks(kernel, from, mid, blockSize), new RowBlocks(kernel, mid, to, blockSize));
+	}
+}
@@ -0,0 +1,9 @@
+package transportationEvaluation;
+
+/**
+ * Work on the rows (towns) in [from, to) of a computation split into independent row blocks.
+ * @author Ryan C Smith
+ */
+interface RowKernel {
+	void computeRows(int from, int to);
+}
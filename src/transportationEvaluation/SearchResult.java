@@ -0,0 +1,42 @@
+package transportationEvaluation;
+
+/**
+ * Outcome of a point-to-point shortest route search: the distance found and how much of the network
+ * the search had to settle to find it, which is the usual measure of how well a speed-up technique works.
+ * @author Ryan C Smith
+ */
+public final class SearchResult {
+	private final int distance;
+	private final int settled;
+
+	SearchResult(int distance, int settled){
+		this.distance = distance;
+		this.settled = settled;
+	}
+
+	/**
+	 * @return total distance of the shortest route, or DijkstraSearch.UNREACHABLE if no route exists.
+	 */
+	public int distance(){
+		return distance;
+	}
+
+	/**
+	 * @return true if a route was found.
+	 */
+	public boolean found(){
+		return distance != DijkstraSearch.UNREACHABLE;
+	}
+
+	/**
+	 * @return number of towns taken off the search queue, summed over all search directions.
+	 */
+	public int settled(){
+		return settled;
+	}
+
+	@Override
+	public String toString(){
+		return (found() ? Integer.toString(distance) : RouteQuery.NO_SUCH_ROUTE) + " (" + settled + " settled)";
+	}
+}
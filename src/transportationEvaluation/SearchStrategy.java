@@ -0,0 +1,27 @@
+package transportationEvaluation;
+
+/**
+ * Algorithms RouteMap can use to answer a point-to-point shortest route query. All of them return the
+ * same distances; they differ in how much of the network they settle and what they need prepared first.
+ * @author Ryan C Smith
+ */
+public enum SearchStrategy {
+	/**
+	 * Plain Dijkstra search outward from the start. Needs no preparation.
+	 */
+	DIJKSTRA,
+	/**
+	 * Dijkstra searches from both ends at once, meeting in the middle. Uses the graph's reverse adjacency
+	 * index, which is built on first use.
+	 */
+	BIDIRECTIONAL,
+	/**
+	 * A* search guided by landmark lower bounds (ALT). Needs landmarks attached with RouteMap.useLandmarks.
+	 */
+	ALT,
+	/**
+	 * Bidirectional upward search in a contraction hierarchy. Needs a hierarchy attached with
+	 * RouteMap.useContractionHierarchy.
+	 */
+	CONTRACTION_HIERARCHY
+}
@@ -0,0 +1,206 @@
+package transportationEvaluation;
+
+import java.util.Arrays;
+
+/**
+ * Scratch storage reused by the searches and route counts of one thread, so that steady-state queries
+ * allocate nothing. Arrays only grow, to the largest graph the thread has searched.
+ * Distances are reset in O(1) per search with generation stamps: a town's distance only counts if its
+ * stamp equals the current generation, so a search touching ten towns of a million-town graph does not
+ * refill the array. The heap, the counting buffers and the state table are left empty by the searches
+ * using them, which also costs only what they touched.
+ * Obtain a workspace with acquire() and hand it back with release() in a finally block. A thread that
+ * acquires again before releasing (a search started from inside another) gets a fresh workspace.
+ * @author Ryan C Smith
+ */
+final class SearchWorkspace {
+	private static final ThreadLocal<SearchWorkspace> CURRENT = ThreadLocal.withInitial(SearchWorkspace::new);
+
+	private boolean inUse;
+	private int capacity;
+	//distance[town] is only valid while stamp[town] == generation; the town is settled while settledStamp[town] == generation
+	private int[] distance = new int[0];
+	private int[] stamp = new int[0];
+	private int[] settledStamp = new int[0];
+	private int generation;
+	private IndexedMinHeap heap = new IndexedMinHeap(0);
+	private int[] predecessor;
+	private long settled;
+	//(town, stops) counting: counts and towns of the current and next step
+	private long[] counts;
+	private long[] nextCounts;
+	private int[] towns;
+	private int[] nextTowns;
+	//(town, distance) counting
+	private LongLongHashMap states;
+	private LongMinHeap pending;
+	private final RouteEvaluator.Result route = new RouteEvaluator.Result();
+
+	private SearchWorkspace(){
+	}
+
+	/**
+	 * @return the calling thread's workspace, or a new one if it is already in use on this thread.
+	 */
+	static SearchWorkspace acquire(){
+		SearchWorkspace workspace = CURRENT.get();
+		if (workspace.inUse)
+			workspace = new SearchWorkspace();
+		workspace.inUse = true;
+		return workspace;
+	}
+
+	/**
+	 * Hands the workspace back for the next search on this thread.
+	 */
+	void release(){
+		inUse = false;
+	}
+
+	/**
+	 * Starts a search over a graph: every town becomes unreached and the heap is emptied.
+	 * @param townCount - number of towns of the graph to search.
+	 */
+	void startSearch(int townCount){
+		if (townCount > capacity)
+			grow(townCount);
+		heap.clear();
+		if (++generation == 0){
+			//stamps wrapped around; old stamps could now look current
+			Arrays.fill(stamp, 0);
+			Arrays.fill(settledStamp, 0);
+			generation = 1;
+		}
+		settled = 0;
+	}
+
+	private void grow(int townCount){
+		capacity = Math.max(townCount, capacity + (capacity >> 1));
+		distance = new int[capacity];
+		stamp = new int[capacity];
+		settledStamp = new int[capacity];
+		generation = 0;
+		heap = new IndexedMinHeap(capacity);
+		predecessor = null;
+		discardCounts();
+	}
+
+	/**
+	 * @return distance recorded for the town in the current search, or DijkstraSearch.UNREACHABLE.
+	 */
+	int distance(int town){
+		return stamp[town] == generation ? distance[town] : DijkstraSearch.UNREACHABLE;
+	}
+
+	void setDistance(int town, int value){
+		distance[town] = value;
+		stamp[town] = generation;
+	}
+
+	/**
+	 * @return heap sized for the current search, empty when the search starts.
+	 */
+	IndexedMinHeap heap(){
+		return heap;
+	}
+
+	/**
+	 * @return predecessor array sized for the current search. Entries are only meaningful for towns reached by it.
+	 */
+	int[] predecessor(){
+		if (predecessor == null)
+			predecessor = new int[capacity];
+		return predecessor;
+	}
+
+	/**
+	 * Marks a town as settled in the current search: its distance is final and it is never queued again.
+	 */
+	void settle(int town){
+		settledStamp[town] = generation;
+		settled++;
+	}
+
+	/**
+	 * @return true if the town was settled in the current search.
+	 */
+	boolean isSettled(int town){
+		return settledStamp[town] == generation;
+	}
+
+	/**
+	 * Records the number of (town, stops) or (town, distance) states a route count expanded, reported by settled().
+	 */
+	void recordSettled(long states){
+		settled = states;
+	}
+
+	/**
+	 * @return number of towns the last search settled, or of states the last route count expanded.
+	 */
+	long settled(){
+		return settled;
+	}
+
+	/**
+	 * Counting buffers for (town, stops) passes, all zero between passes. Sized by the last startSearch.
+	 */
+	long[] counts(){
+		if (counts == null)
+			counts = new long[capacity];
+		return counts;
+	}
+
+	long[] nextCounts(){
+		if (nextCounts == null)
+			nextCounts = new long[capacity];
+		return nextCounts;
+	}
+
+	int[] towns(){
+		if (towns == null)
+			towns = new int[capacity];
+		return towns;
+	}
+
+	int[] nextTowns(){
+		if (nextTowns == null)
+			nextTowns = new int[capacity];
+		return nextTowns;
+	}
+
+	/**
+	 * Drops the counting buffers after a pass failed part way and left counts behind; they are allocated again on next use.
+	 */
+	void discardCounts(){
+		counts = null;
+		nextCounts = null;
+		towns = null;
+		nextTowns = null;
+	}
+
+	/**
+	 * @return (town, distance) state table, empty between passes.
+	 */
+	LongLongHashMap states(){
+		if (states == null)
+			states = new LongLongHashMap(64);
+		return states;
+	}
+
+	/**
+	 * @return queue of (town, distance) states, empty between passes.
+	 */
+	LongMinHeap pending(){
+		if (pending == null)
+			pending = new LongMinHeap(64);
+		return pending;
+	}
+
+	/**
+	 * @return holder for the result of a route evaluation.
+	 */
+	RouteEvaluator.Result route(){
+		return route;
+	}
+}
@@ -0,0 +1,114 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for search workspace reuse and the allocation-free query paths.
+ * @author Ryan C Smith
+ */
+public class SearchWorkspaceTest {
+	RouteMap routes;
+
+	@Before
+	public void setUp() throws Exception {
+		Random random = new Random(22);
+		CompactGraph.Builder builder = new CompactGraph.Builder();
+		for (int town = 0; town < 200; town++)
+			builder.intern("T" + town);
+		for (int town = 0; town < 200; town++){
+			builder.addEdge(town, (town + 1) % 200, 1 + random.nextInt(9));
+			builder.addEdge(town, (town + 13) % 200, 1 + random.nextInt(30));
+		}
+		routes = new RouteMap(builder.build());
+	}
+
+	@Test
+	public void testGenerationStampsResetDistances() {
+		SearchWorkspace workspace = SearchWorkspace.acquire();
+		try {
+			workspace.startSearch(5);
+			workspace.setDistance(2, 7);
+			assertEquals(7, workspace.distance(2));
+			assertEquals(DijkstraSearch.UNREACHABLE, workspace.distance(3));
+			workspace.startSearch(5);
+			assertEquals(DijkstraSearch.UNREACHABLE, workspace.distance(2));
+			SearchWorkspace nested = SearchWorkspace.acquire();
+			assertNotSame(workspace, nested);
+			nested.release();
+		} finally {
+			workspace.release();
+		}
+		SearchWorkspace again = SearchWorkspace.acquire();
+		again.release();
+		assertSame(workspace, again);
+	}
+
+	@Test
+	public void testReusedWorkspaceMatchesFullSearches() {
+		Random random = new Random(220);
+		for (int round = 0; round < 40; round++){
+			//sizes go up and down so the workspace both grows and serves smaller graphs
+			CompactGraph graph = BidirectionalSearchTest.randomGraph(random, 1 + random.nextInt(round % 2 == 0 ? 60 : 10), 20);
+			for (int start = 0; start < graph.townCount(); start++){
+				int[] distance = DijkstraSearch.distances(graph, start);
+				for (int end = 0; end < graph.townCount(); end++){
+					if (end != start)
+						assertEquals(distance[end], DijkstraSearch.shortestDistance(graph, start, end));
+				}
+				int[] path = DijkstraSearch.shortestPath(graph, start, start);
+				assertEquals(DijkstraSearch.shortestCycle(graph, start, distance) == DijkstraSearch.UNREACHABLE, path == null);
+			}
+		}
+	}
+
+	@Test
+	public void testCountsAfterOverflow() {
+		CompactGraph.Builder builder = new CompactGraph.Builder();
+		int a = builder.intern("A");
+		int b = builder.intern("B");
+		builder.addEdge(a, a, 1);
+		builder.addEdge(a, b, 1);
+		builder.addEdge(b, a, 1);
+		builder.addEdge(b, b, 1);
+		CompactGraph graph = builder.build();
+		try {
+			RouteCounter.countByStops(graph, a, b, 80, true);
+			fail("Expected ArithmeticException");
+		} catch (ArithmeticException e){
+		}
+		assertEquals(BigInteger.valueOf(RouteCounter.countByStops(graph, a, b, 10, false)), RouteCounter.countByStopsExact(graph, a, b, 10, false));
+		assertEquals(BigInteger.valueOf(RouteCounter.countByDistance(graph, a, b, 12)), RouteCounter.countByDistanceExact(graph, a, b, 12));
+	}
+
+	@Test
+	public void testSteadyStateQueriesDoNotAllocate() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+			return;
+		long thread = Thread.currentThread().getId();
+		String[] names = routes.getGraph().names;
+		long checksum = 0;
+		for (int pass = 0; pass < 2; pass++){
+			//the first pass grows the workspace and warms up; the second is measured
+			long before = threads.getThreadAllocatedBytes(thread);
+			for (int query = 0; query < 2000; query++){
+				String start = names[query % 200];
+				String end = names[query * 7 % 200];
+				checksum += routes.shortestDistance(start, end);
+				checksum += routes.countRoutesByStops(start, end, 6, false);
+				checksum += routes.countRoutesByDistance(start, end, 40);
+			}
+			long allocated = threads.getThreadAllocatedBytes(thread) - before;
+			if (pass == 1)
+				assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+		}
+		assertTrue(checksum > 0);
+	}
+}
@@ -0,0 +1,66 @@
+package transportationEvaluation;
+
+import java.io.IOException;
+
+/**
+ * One part of a partitioned transportation system, as seen by a ShardedRouteMap. A shard owns a set of
+ * towns and the roads leaving them; towns with a road to or from another shard are its boundary towns.
+ * Implemented by GraphShard in the same process and by RemoteShard for a shard served by a ShardServer.
+ * Town arguments are names; a shard answers null (or NOT_OWNED) for towns it does not own, so the caller
+ * can ask every shard and use the one answer that is not.
+ * @author Ryan C Smith
+ */
+public interface Shard {
+	/**
+	 * Entry of legs() for a leg starting at a town the shard does not own. Outside the int range, so no road distance can equal it.
+	 */
+	long NOT_OWNED = Long.MIN_VALUE;
+	/**
+	 * Entry of legs() for a leg with no road. Outside the int range, so no road distance can equal it.
+	 */
+	long NO_ROAD = Long.MIN_VALUE + 1;
+
+	/**
+	 * The shard's contribution to the boundary overlay: a graph whose first boundaryCount() towns are the
+	 * shard's boundary towns, in a fixed order, with a road between every two of them joined inside the shard
+	 * (the shortest such distance), plus every road from one of the shard's towns to another shard.
+	 * @return overlay graph of the shard.
+	 * @throws IOException - if a remote shard cannot be reached.
+	 */
+	CompactGraph overlay() throws IOException;
+
+	/**
+	 * @return number of boundary towns, which lead the overlay graph.
+	 * @throws IOException - if a remote shard cannot be reached.
+	 */
+	int boundaryCount() throws IOException;
+
+	/**
+	 * Searches inside the shard from an origin town.
+	 * @param start - origin town.
+	 * @param end - destination town, which may belong to another shard.
+	 * @return null if start is not owned here; otherwise entry 0 is the shortest distance from start to end
+	 * without leaving the shard (the shortest cycle if they are the same town), and entry 1 + i the shortest
+	 * distance to boundary town i, each DijkstraSearch.UNREACHABLE if there is no route.
+	 * @throws IOException - if a remote shard cannot be reached.
+	 */
+	int[] forward(String start, String end) throws IOException;
+
+	/**
+	 * Searches inside the shard backward from a destination town.
+	 * @param end - destination town.
+	 * @return null if end is not owned here; otherwise entry i is the shortest distance from boundary town i
+	 * to end without leaving the shard, DijkstraSearch.UNREACHABLE if there is no route.
+	 * @throws IOException - if a remote shard cannot be reached.
+	 */
+	int[] backward(String end) throws IOException;
+
+	/**
+	 * Looks up the roads of an itinerary.
+	 * @param towns - name of each town to be visited in order.
+	 * @return one entry per leg: the length of the road from towns[i] to towns[i + 1], NO_ROAD if there is no
+	 * such road, or NOT_OWNED if towns[i] belongs to another shard.
+	 * @throws IOException - if a remote shard cannot be reached.
+	 */
+	long[] legs(String[] towns) throws IOException;
+}
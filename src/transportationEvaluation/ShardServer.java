@@ -0,0 +1,225 @@
+package transportationEvaluation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Serves one Shard to ShardedRouteMap coordinators over TCP, so that the shards of a network can run
+ * as separate processes (see Trains --shard). Each connection gets its own thread and carries a simple
+ * request/response protocol: a request is an operation byte followed by its arguments, and a response
+ * is a status byte followed by the result, or by an error message. Strings are sent as modified UTF-8
+ * and int arrays as a length (-1 for null) followed by the values; RemoteShard is the client side.
+ * @author Ryan C Smith
+ */
+public final class ShardServer implements Closeable {
+	static final byte OVERLAY = 1;
+	static final byte FORWARD = 2;
+	static final byte BACKWARD = 3;
+	static final byte LEGS = 4;
+	static final byte OK = 0;
+	static final byte ERROR = 1;
+
+	private final Shard shard;
+	private final ServerSocket server;
+
+	/**
+	 * Binds a server to a port on the loopback interface.
+	 * @param shard - shard to serve.
+	 * @param port - TCP port, or 0 for any free port.
+	 * @throws IOException - if the port cannot be bound.
+	 */
+	public ShardServer(Shard shard, int port) throws IOException {
+		this.shard = shard;
+		this.server = new ServerSocket();
+		try {
+			server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		} catch (IOException e){
+			server.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the port the server listens on.
+	 */
+	public int port(){
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Accepts connections on the calling thread until close() is called.
+	 * @throws IOException - if accepting fails for a reason other than close().
+	 */
+	public void run() throws IOException {
+		while (!server.isClosed()){
+			final Socket socket;
+			try {
+				socket = server.accept();
+			} catch (IOException e){
+				if (server.isClosed())
+					return;
+				throw e;
+			}
+			Thread thread = new Thread(() -> serve(socket), "ShardServer-" + port() + "-" + socket.getPort());
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Accepts connections on a new daemon thread.
+	 * @return the thread.
+	 */
+	public Thread start(){
+		Thread thread = new Thread(() -> {
+			try {
+				run();
+			} catch (IOException e){
+				System.err.println("Shard server stopped: " + e);
+			}
+		}, "ShardServer-" + port());
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Stops accepting connections. Connections already open are served until their clients close them.
+	 */
+	@Override
+	public void close() throws IOException {
+		server.close();
+	}
+
+	private void serve(Socket socket){
+		try (Socket connection = socket){
+			connection.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+			while (true){
+				int operation = in.read();
+				if (operation < 0)
+					return;
+				try {
+					answer(operation, in, out);
+				} catch (RuntimeException e){
+					out.writeByte(ERROR);
+					out.writeUTF(String.valueOf(e));
+				}
+				out.flush();
+			}
+		} catch (EOFException e){
+			//the client closed the connection in the middle of a request
+		} catch (IOException e){
+			System.err.println("Shard connection failed: " + e);
+		}
+	}
+
+	/**
+	 * Reads the arguments of one request and writes its response. Arguments are read in full before the
+	 * shard is asked anything, so a failing query leaves the stream at the next request.
+	 */
+	private void answer(int operation, DataInputStream in, DataOutputStream out) throws IOException {
+		switch (operation){
+		case OVERLAY: {
+			int boundaryCount = shard.boundaryCount();
+			CompactGraph overlay = shard.overlay();
+			out.writeByte(OK);
+			out.writeInt(boundaryCount);
+			writeGraph(out, overlay);
+			break;
+		}
+		case FORWARD: {
+			String start = in.readUTF();
+			String end = in.readUTF();
+			int[] reach = shard.forward(start, end);
+			out.writeByte(OK);
+			writeInts(out, reach);
+			break;
+		}
+		case BACKWARD: {
+			int[] reach = shard.backward(in.readUTF());
+			out.writeByte(OK);
+			writeInts(out, reach);
+			break;
+		}
+		case LEGS: {
+			String[] towns = new String[in.readInt()];
+			for (int i = 0; i < towns.length; i++)
+				towns[i] = in.readUTF();
+			long[] legs = shard.legs(towns);
+			out.writeByte(OK);
+			writeLongs(out, legs);
+			break;
+		}
+		default:
+			throw new IOException("Unknown shard operation " + operation);
+		}
+	}
+
+	static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		if (values == null){
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(values.length);
+		for (int value : values)
+			out.writeInt(value);
+	}
+
+	static int[] readInts(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+		int[] values = new int[length];
+		for (int i = 0; i < length; i++)
+			values[i] = in.readInt();
+		return values;
+	}
+
+	static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+		out.writeInt(values.length);
+		for (long value : values)
+			out.writeLong(value);
+	}
+
+	static long[] readLongs(DataInputStream in) throws IOException {
+		long[] values = new long[in.readInt()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = in.readLong();
+		return values;
+	}
+
+	static void writeGraph(DataOutputStream out, CompactGraph graph) throws IOException {
+		out.writeInt(graph.townCount());
+		for (int town = 0; town < graph.townCount(); town++)
+			out.writeUTF(graph.name(town));
+		writeInts(out, graph.offsets);
+		writeInts(out, graph.targets);
+		writeInts(out, graph.distances);
+	}
+
+	static CompactGraph readGraph(DataInputStream in) throws IOException {
+		CompactGraph.Builder builder = new CompactGraph.Builder();
+		int townCount = in.readInt();
+		for (int town = 0; town < townCount; town++)
+			builder.intern(in.readUTF());
+		int[] offsets = readInts(in);
+		int[] targets = readInts(in);
+		int[] distances = readInts(in);
+		for (int town = 0; town < townCount; town++){
+			for (int edge = offsets[town]; edge < offsets[town + 1]; edge++)
+				builder.addEdge(town, targets[edge], distances[edge]);
+		}
+		return builder.build();
+	}
+}
@@ -0,0 +1,299 @@
+package transportationEvaluation;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Coordinator answering shortest-route and route-distance queries over a network split into shards by
+ * GraphPartitioner, so that no single process has to hold the whole graph. The coordinator only holds the
+ * boundary overlay: the boundary towns of every shard, the shortest distances between boundary towns of
+ * the same shard, and the roads between shards.
+ * A shortest route is the best of the route inside the origin's shard and the routes that leave it: the
+ * origin's shard reports its distance to each of its boundary towns, the destination's shard the distance
+ * from each of its boundary towns, and a Dijkstra search over the overlay joins the two. Every shard is
+ * asked in parallel and the shards that own neither town answer null, so no directory of towns is needed.
+ * Results match RouteMap.calculateShortestRoute and calculateRouteDistance on the whole graph.
+ * @author Ryan C Smith
+ */
+public final class ShardedRouteMap implements Closeable {
+	private final List<Shard> shards;
+	private final CompactGraph overlay;
+	//overlay ID of every boundary town, by shard and boundary index
+	private final int[][] boundary;
+	private final ExecutorService executor;
+	private final List<Process> processes;
+
+	/**
+	 * Builds the overlay from the given shards.
+	 * @param shards - every shard of one partitioned network, in this process or remote.
+	 * @throws IOException - if a remote shard cannot be reached.
+	 */
+	public ShardedRouteMap(List<? extends Shard> shards) throws IOException {
+		this(shards, new ArrayList<Process>());
+	}
+
+	private ShardedRouteMap(List<? extends Shard> shards, List<Process> processes) throws IOException {
+		this.shards = new ArrayList<Shard>(shards);
+		this.processes = processes;
+		this.executor = Executors.newCachedThreadPool(task -> {
+			Thread thread = new Thread(task, "ShardedRouteMap");
+			thread.setDaemon(true);
+			return thread;
+		});
+		CompactGraph.Builder builder = new CompactGraph.Builder();
+		boundary = new int[shards.size()][];
+		for (int shard = 0; shard < shards.size(); shard++){
+			CompactGraph part = shards.get(shard).overlay();
+			int[] global = new int[part.townCount()];
+			for (int town = 0; town < part.townCount(); town++)
+				global[town] = builder.intern(part.name(town));
+			for (int town = 0; town < part.townCount(); town++){
+				for (int edge = part.offsets[town]; edge < part.offsets[town + 1]; edge++)
+					builder.addEdge(global[town], global[part.targets[edge]], part.distances[edge]);
+			}
+			boundary[shard] = Arrays.copyOf(global, shards.get(shard).boundaryCount());
+		}
+		overlay = builder.build();
+	}
+
+	/**
+	 * Connects to shards served by ShardServers, such as Trains --shard processes.
+	 * @param addresses - address of every shard of one partitioned network.
+	 * @return coordinator over the shards; close() closes the connections.
+	 * @throws IOException - if a shard cannot be reached.
+	 */
+	public static ShardedRouteMap connect(List<InetSocketAddress> addresses) throws IOException {
+		List<RemoteShard> remotes = new ArrayList<RemoteShard>();
+		try {
+			for (InetSocketAddress address : addresses)
+				remotes.add(new RemoteShard(address));
+			return new ShardedRouteMap(remotes);
+		} catch (IOException e){
+			for (RemoteShard remote : remotes)
+				remote.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Starts one Trains --shard process per shard file on this machine, with the same Java installation and
+	 * class path as the caller, and connects to them over loopback.
+	 * @param shardFiles - files written by GraphPartitioner.writeShards, one per shard.
+	 * @return coordinator over the processes; close() also stops them.
+	 * @throws IOException - if a process cannot be started or does not start serving.
+	 */
+	public static ShardedRouteMap launch(List<Path> shardFiles) throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		List<Process> processes = new ArrayList<Process>();
+		List<RemoteShard> remotes = new ArrayList<RemoteShard>();
+		try {
+			for (Path file : shardFiles){
+				Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+						Trains.class.getName(), "--shard", file.toString(), "0").redirectError(Redirect.INHERIT).start();
+				processes.add(process);
+				//the process announces its port on the first line of its output
+				String line = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)).readLine();
+				if (line == null || line.lastIndexOf(':') < 0)
+					throw new IOException("Shard process for " + file + " exited before serving.");
+				int port = Integer.parseInt(line.substring(line.lastIndexOf(':') + 1).trim());
+				remotes.add(new RemoteShard(new InetSocketAddress(InetAddress.getLoopbackAddress(), port)));
+			}
+			return new ShardedRouteMap(remotes, processes);
+		} catch (IOException | RuntimeException e){
+			for (RemoteShard remote : remotes)
+				remote.close();
+			for (Process process : processes)
+				process.destroy();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the boundary overlay held by the coordinator.
+	 */
+	public CompactGraph overlay(){
+		return overlay;
+	}
+
+	/**
+	 * @return number of shards.
+	 */
+	public int shardCount(){
+		return shards.size();
+	}
+
+	/**
+	 * Calculates the shortest route between 2 towns across shards. When start equals end the shortest cycle is returned.
+	 * @param start - start town in String form.
+	 * @param end - destination town in String form.
+	 * @return Total distance of shortest path between two towns. Returns null if no route exists.
+	 * @throws UncheckedIOException - if a remote shard cannot be reached.
+	 */
+	public Integer calculateShortestRoute(String start, String end){
+		List<Future<int[]>> forwards = broadcast(shard -> shard.forward(start, end));
+		List<Future<int[]>> backwards = broadcast(shard -> shard.backward(end));
+		int startShard = owner(forwards);
+		int endShard = owner(backwards);
+		if (startShard < 0 || endShard < 0)
+			return null;
+		int[] forward = get(forwards.get(startShard));
+		int[] backward = get(backwards.get(endShard));
+		long best = forward[0];
+		int townCount = overlay.townCount();
+		int[] distance = new int[townCount];
+		Arrays.fill(distance, DijkstraSearch.UNREACHABLE);
+		//distance from each of the destination shard's boundary towns to end
+		int[] exit = new int[townCount];
+		Arrays.fill(exit, DijkstraSearch.UNREACHABLE);
+		for (int i = 0; i < backward.length; i++)
+			exit[boundary[endShard][i]] = backward[i];
+		IndexedMinHeap heap = new IndexedMinHeap(townCount);
+		//a cycle must leave start, so start is not seeded at 0 but its roads are relaxed from it instead
+		int cycleStart = start.equals(end) ? overlay.id(start) : -1;
+		for (int i = 0; i < boundary[startShard].length; i++){
+			int town = boundary[startShard][i];
+			if (town != cycleStart && forward[1 + i] < distance[town]){
+				distance[town] = forward[1 + i];
+				heap.insertOrDecrease(town, distance[town]);
+			}
+		}
+		if (cycleStart >= 0)
+			relax(cycleStart, 0, distance, heap);
+		while (!heap.isEmpty() && heap.minKey() < best){
+			int town = heap.poll();
+			if (exit[town] != DijkstraSearch.UNREACHABLE)
+				best = Math.min(best, (long) distance[town] + exit[town]);
+			relax(town, distance[town], distance, heap);
+		}
+		return best >= DijkstraSearch.UNREACHABLE ? null : (int) best;
+	}
+
+	private void relax(int town, int townDistance, int[] distance, IndexedMinHeap heap){
+		for (int edge = overlay.offsets[town], last = overlay.offsets[town + 1]; edge < last; edge++){
+			long candidate = (long) townDistance + overlay.distances[edge];
+			int next = overlay.targets[edge];
+			if (candidate < distance[next]){
+				distance[next] = (int) candidate;
+				heap.insertOrDecrease(next, (int) candidate);
+			}
+		}
+	}
+
+	/**
+	 * Calculates the distance of a route across shards. Each leg is looked up by the shard owning its first town.
+	 * @param towns - String array containing the name of each town to be visited in order.
+	 * @return - Integer with the total distance for the route. Null if no route exists.
+	 * @throws ArithmeticException - if the total distance does not fit in an Integer.
+	 * @throws UncheckedIOException - if a remote shard cannot be reached.
+	 */
+	public Integer calculateRouteDistance(String[] towns){
+		if (towns.length < 2)
+			return 0;
+		long[] legs = new long[towns.length - 1];
+		Arrays.fill(legs, Shard.NOT_OWNED);
+		for (Future<long[]> answer : broadcast(shard -> shard.legs(towns))){
+			long[] owned = get(answer);
+			for (int i = 0; i < legs.length; i++){
+				if (owned[i] != Shard.NOT_OWNED)
+					legs[i] = owned[i];
+			}
+		}
+		long total = 0;
+		for (long leg : legs){
+			if (leg == Shard.NO_ROAD || leg == Shard.NOT_OWNED)
+				return null;
+			total += leg;
+		}
+		return Math.toIntExact(total);
+	}
+
+	/**
+	 * Answers a query in the RouteQuery line format. Only route-distance and shortest-route queries can be
+	 * answered across shards; other kinds, and failures, are answered with an ERROR line.
+	 * @param query - parsed query.
+	 * @return rendered result.
+	 */
+	public String answer(RouteQuery query){
+		try {
+			if (query.kind() == RouteQuery.Kind.ROUTE_DISTANCE)
+				return RouteQuery.render(calculateRouteDistance(query.towns));
+			if (query.kind() == RouteQuery.Kind.SHORTEST_ROUTE)
+				return RouteQuery.render(calculateShortestRoute(query.start(), query.end()));
+			return "ERROR " + query.kind().keyword() + " queries are not answered across shards.";
+		} catch (RuntimeException e){
+			return "ERROR " + e;
+		}
+	}
+
+	/**
+	 * One question put to a shard.
+	 */
+	private interface Request<T> {
+		T ask(Shard shard) throws IOException;
+	}
+
+	private <T> List<Future<T>> broadcast(Request<T> request){
+		List<Future<T>> answers = new ArrayList<Future<T>>(shards.size());
+		for (Shard shard : shards)
+			answers.add(executor.submit(() -> request.ask(shard)));
+		return answers;
+	}
+
+	/**
+	 * @return index of the one shard that gave an answer, or -1 if none did.
+	 */
+	private int owner(List<Future<int[]>> answers){
+		int owner = -1;
+		for (int shard = 0; shard < answers.size(); shard++){
+			if (get(answers.get(shard)) != null)
+				owner = shard;
+		}
+		return owner;
+	}
+
+	private static <T> T get(Future<T> answer){
+		try {
+			return answer.get();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a shard.", e);
+		} catch (ExecutionException e){
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw new UncheckedIOException((IOException) cause);
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Closes connections to remote shards and stops the shard processes started by launch.
+	 */
+	@Override
+	public void close() throws IOException {
+		executor.shutdownNow();
+		for (Shard shard : shards){
+			if (shard instanceof Closeable)
+				((Closeable) shard).close();
+		}
+		for (Process process : processes)
+			process.destroy();
+	}
+}
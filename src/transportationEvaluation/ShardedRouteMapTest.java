@@ -0,0 +1,189 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for graph partitioning, shard servers and the sharded route coordinator.
+ * @author Ryan C Smith
+ */
+public class ShardedRouteMapTest {
+	static final String[] TOWNS = {"A","B","C","D","E"};
+	RouteMap routes;
+	Path graphFile;
+
+	@Before
+	public void setUp() throws Exception {
+		String text = "(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)";
+		routes = new RouteMap(Trains.createAdjacencyList(text));
+		graphFile = Files.createTempFile("graph", ".txt");
+		Files.write(graphFile, text.getBytes("UTF-8"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(graphFile);
+		for (int shard = 0; shard < 3; shard++)
+			Files.deleteIfExists(graphFile.resolveSibling(graphFile.getFileName() + ".shard" + shard));
+	}
+
+	@Test
+	public void testAssignBalancesShards() throws IOException {
+		CompactGraph graph = Trains.loadGraph(graphFile.toString());
+		int[] owner = GraphPartitioner.assign(graph, 2);
+		int[] sizes = new int[2];
+		for (int shard : owner)
+			sizes[shard]++;
+		assertArrayEquals(new int[] {3, 2}, sizes);
+		assertEquals(0, GraphPartitioner.assign(graph, 1)[4]);
+		try {
+			GraphPartitioner.assign(graph, 0);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e){
+		}
+	}
+
+	@Test
+	public void testMatchesRouteMap() throws IOException {
+		CompactGraph graph = Trains.loadGraph(graphFile.toString());
+		for (int shards = 1; shards <= 5; shards++){
+			try (ShardedRouteMap sharded = new ShardedRouteMap(Arrays.asList(GraphPartitioner.split(graph, shards)))){
+				assertEquals(shards, sharded.shardCount());
+				for (String start : TOWNS){
+					for (String end : TOWNS)
+						assertEquals(start + end, routes.calculateShortestRoute(start, end), sharded.calculateShortestRoute(start, end));
+				}
+				assertEquals(Integer.valueOf(9), sharded.calculateRouteDistance(new String[] {"A","B","C"}));
+				assertEquals(Integer.valueOf(22), sharded.calculateRouteDistance(new String[] {"A","E","B","C","D"}));
+				assertNull(sharded.calculateRouteDistance(new String[] {"A","E","D"}));
+				assertNull(sharded.calculateRouteDistance(new String[] {"A","F"}));
+				assertEquals(Integer.valueOf(0), sharded.calculateRouteDistance(new String[] {"A"}));
+				assertNull(sharded.calculateShortestRoute("A", "F"));
+				assertNull(sharded.calculateShortestRoute("F", "A"));
+			}
+		}
+	}
+
+	@Test
+	public void testMatchesDijkstraOnRandomGraphs() throws IOException {
+		Random random = new Random(21);
+		for (int round = 0; round < 30; round++){
+			CompactGraph graph = BidirectionalSearchTest.randomGraph(random, 1 + random.nextInt(40), 20);
+			RouteMap whole = new RouteMap(graph);
+			try (ShardedRouteMap sharded = new ShardedRouteMap(Arrays.asList(GraphPartitioner.split(graph, 1 + random.nextInt(6))))){
+				for (int start = 0; start < graph.townCount(); start++){
+					for (int end = 0; end < graph.townCount(); end++){
+						int distance = DijkstraSearch.shortestDistance(graph, start, end);
+						assertEquals(distance == DijkstraSearch.UNREACHABLE ? null : Integer.valueOf(distance),
+								sharded.calculateShortestRoute(graph.name(start), graph.name(end)));
+					}
+				}
+				for (int trip = 0; trip < 20; trip++){
+					String[] towns = new String[2 + random.nextInt(3)];
+					for (int i = 0; i < towns.length; i++)
+						towns[i] = graph.name(random.nextInt(graph.townCount()));
+					assertEquals(whole.calculateRouteDistance(towns), sharded.calculateRouteDistance(towns));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNegativeRoadsAreNotMissingLegs() throws IOException {
+		CompactGraph graph = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,-1) (B,C,-2) (C,A,4)"));
+		GraphShard[] parts = GraphPartitioner.split(graph, 2);
+		try (ShardedRouteMap sharded = new ShardedRouteMap(Arrays.asList(parts))){
+			assertEquals(Integer.valueOf(-1), sharded.calculateRouteDistance(new String[] {"A","B"}));
+			assertEquals(Integer.valueOf(-3), sharded.calculateRouteDistance(new String[] {"A","B","C"}));
+			assertNull(sharded.calculateRouteDistance(new String[] {"B","A"}));
+		}
+		List<ShardServer> servers = new ArrayList<ShardServer>();
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		for (GraphShard shard : parts){
+			ShardServer server = new ShardServer(shard, 0);
+			server.start();
+			servers.add(server);
+			addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port()));
+		}
+		try (ShardedRouteMap sharded = ShardedRouteMap.connect(addresses)){
+			assertEquals(Integer.valueOf(5), sharded.calculateRouteDistance(new String[] {"C","A","B","C","A"}));
+			assertNull(sharded.calculateRouteDistance(new String[] {"C","B"}));
+		} finally {
+			for (ShardServer server : servers)
+				server.close();
+		}
+	}
+
+	@Test
+	public void testShardFileRoundTrip() throws IOException {
+		List<Path> files = GraphPartitioner.writeShards(graphFile.toString(), 3);
+		assertEquals(3, files.size());
+		List<GraphShard> shards = new ArrayList<GraphShard>();
+		for (Path file : files)
+			shards.add(GraphShard.read(file));
+		assertEquals(2, shards.get(2).index());
+		assertEquals(3, shards.get(2).shardCount());
+		int towns = 0;
+		for (GraphShard shard : shards)
+			towns += shard.graph().townCount();
+		assertEquals(5, towns);
+		try (ShardedRouteMap sharded = new ShardedRouteMap(shards)){
+			assertEquals(Integer.valueOf(9), sharded.calculateShortestRoute("B", "B"));
+			assertEquals(Integer.valueOf(9), sharded.calculateShortestRoute("A", "C"));
+		}
+		byte[] bytes = Files.readAllBytes(files.get(0));
+		bytes[bytes.length / 2] ^= 1;
+		Files.write(files.get(0), bytes);
+		try {
+			GraphShard.read(files.get(0));
+			fail("Expected IOException");
+		} catch (IOException e){
+		}
+	}
+
+	@Test
+	public void testShardServers() throws IOException {
+		CompactGraph graph = Trains.loadGraph(graphFile.toString());
+		List<ShardServer> servers = new ArrayList<ShardServer>();
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		for (GraphShard shard : GraphPartitioner.split(graph, 2)){
+			ShardServer server = new ShardServer(shard, 0);
+			server.start();
+			servers.add(server);
+			addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port()));
+		}
+		try (ShardedRouteMap sharded = ShardedRouteMap.connect(addresses)){
+			assertEquals(Integer.valueOf(9), sharded.calculateShortestRoute("A", "C"));
+			assertEquals(Integer.valueOf(9), sharded.calculateShortestRoute("C", "C"));
+			assertEquals("22", sharded.answer(RouteQuery.parse("distance A-E-B-C-D")));
+			assertEquals(RouteQuery.NO_SUCH_ROUTE, sharded.answer(RouteQuery.parse("distance A-E-D")));
+			assertTrue(sharded.answer(RouteQuery.routesByStops("C", "C", 3, false)).startsWith("ERROR"));
+		} finally {
+			for (ShardServer server : servers)
+				server.close();
+		}
+	}
+
+	@Test
+	public void testLaunchedShardProcesses() throws IOException {
+		try (ShardedRouteMap sharded = ShardedRouteMap.launch(GraphPartitioner.writeShards(graphFile.toString(), 2))){
+			for (String start : TOWNS){
+				for (String end : TOWNS)
+					assertEquals(routes.calculateShortestRoute(start, end), sharded.calculateShortestRoute(start, end));
+			}
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package transportationEvaluation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional caching layer in front of a RouteMap for shortest-route queries.
+ * Keeps the single-source shortest path tree of recently used origins in an LRU cache bounded by total
+ * tree size, so repeated queries from hub origins are answered without searching. Concurrent misses for
+ * the same origin are collapsed into one search that every caller waits on. The cache notices when the
+ * RouteMap's graph has been replaced and starts over against the new graph.
+ * @author Ryan C Smith
+ */
+public final class ShortestPathCache {
+	private final RouteMap routeMap;
+	private final long maxWeight;
+	private final TreeSearch search;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong collapsed = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private volatile Generation generation;
+
+	/**
+	 * @param routeMap - RouteMap whose graph is searched on a miss.
+	 * @param maxWeight - upper bound on the total size of cached trees, in bytes.
+	 */
+	public ShortestPathCache(RouteMap routeMap, long maxWeight){
+		this(routeMap, maxWeight, DijkstraSearch::shortestPathTree);
+	}
+
+	/**
+	 * @param search - search run on a miss, in place of DijkstraSearch.shortestPathTree.
+	 */
+	ShortestPathCache(RouteMap routeMap, long maxWeight, TreeSearch search){
+		this.routeMap = routeMap;
+		this.maxWeight = maxWeight;
+		this.search = search;
+		this.generation = new Generation(routeMap.getGraph());
+	}
+
+	/**
+	 * Search building the shortest path tree of an origin.
+	 */
+	interface TreeSearch {
+		ShortestPathTree search(CompactGraph graph, int origin);
+	}
+
+	/**
+	 * Same contract as RouteMap.calculateShortestRoute, answered from the origin's cached tree.
+	 * @param start - start town in String form.
+	 * @param end - destination town in String form.
+	 * @return Total distance of shortest path between two towns. Returns null if no route exists.
+	 */
+	public Integer calculateShortestRoute(String start, String end){
+		Generation current = currentGeneration();
+		int startId = current.graph.id(start);
+		int endId = current.graph.id(end);
+		if (startId < 0 || endId < 0)
+			return null;
+		int distance = tree(current, startId).distanceTo(endId);
+		return distance == DijkstraSearch.UNREACHABLE ? null : distance;
+	}
+
+	/**
+	 * Same contract as RouteMap.calculateShortestPath, traced through the origin's cached tree.
+	 * @param start - start town in String form.
+	 * @param end - destination town in String form.
+	 * @return names of the towns visited in order, including start and end. Returns null if no route exists.
+	 */
+	public List<String> calculateShortestPath(String start, String end){
+		Generation current = currentGeneration();
+		int startId = current.graph.id(start);
+		int endId = current.graph.id(end);
+		if (startId < 0 || endId < 0)
+			return null;
+		return tree(current, startId).routeTo(endId);
+	}
+
+	/**
+	 * Returns the shortest path tree of an origin, searching only if it is not cached.
+	 * @param origin - origin town in String form.
+	 * @return the tree, or null if the town is not part of the graph.
+	 */
+	public ShortestPathTree tree(String origin){
+		Generation current = currentGeneration();
+		int originId = current.graph.id(origin);
+		return originId < 0 ? null : tree(current, originId);
+	}
+
+	/**
+	 * @return number of lookups answered from the cache.
+	 */
+	public long hits(){
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups that ran a search.
+	 */
+	public long misses(){
+		return misses.get();
+	}
+
+	/**
+	 * @return number of lookups that waited on a search already running for the same origin.
+	 */
+	public long collapsedMisses(){
+		return collapsed.get();
+	}
+
+	/**
+	 * @return number of trees evicted to stay within the size bound.
+	 */
+	public long evictions(){
+		return evictions.get();
+	}
+
+	/**
+	 * @return total size of the cached trees, in bytes.
+	 */
+	public long weight(){
+		Generation current = generation;
+		synchronized (current){
+			return current.weight;
+		}
+	}
+
+	/**
+	 * Drops every cached tree.
+	 */
+	public void clear(){
+		generation = new Generation(routeMap.getGraph());
+	}
+
+	/**
+	 * Starts a fresh generation whenever the RouteMap's graph is no longer the one the cache was built on.
+	 */
+	private Generation currentGeneration(){
+		Generation current = generation;
+		CompactGraph graph = routeMap.getGraph();
+		if (current.graph != graph){
+			synchronized (this){
+				current = generation;
+				if (current.graph != graph){
+					current = new Generation(graph);
+					generation = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	private ShortestPathTree tree(Generation current, int origin){
+		ShortestPathTree tree;
+		synchronized (current){
+			tree = current.trees.get(origin);
+		}
+		if (tree != null){
+			hits.incrementAndGet();
+			return tree;
+		}
+		final CompactGraph graph = current.graph;
+		FutureTask<ShortestPathTree> search = new FutureTask<ShortestPathTree>(() -> this.search.search(graph, origin));
+		FutureTask<ShortestPathTree> running = current.inFlight.putIfAbsent(origin, search);
+		if (running == null){
+			//a search for the origin may have been cached and forgotten since the lookup above
+			synchronized (current){
+				tree = current.trees.get(origin);
+			}
+			if (tree != null){
+				current.inFlight.remove(origin, search);
+				hits.incrementAndGet();
+				return tree;
+			}
+			misses.incrementAndGet();
+			search.run();
+			running = search;
+		}
+		else
+			collapsed.incrementAndGet();
+		try {
+			tree = running.get();
+			if (running == search){
+				synchronized (current){
+					if (current.trees.put(origin, tree) == null)
+						current.weight += tree.weight();
+					evict(current);
+				}
+			}
+			return tree;
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a shortest route search.", e);
+		} catch (ExecutionException e){
+			throw new IllegalStateException("Shortest route search failed.", e.getCause());
+		} finally {
+			//a failed search is forgotten too, so the next lookup from the origin searches again
+			if (running == search)
+				current.inFlight.remove(origin, search);
+		}
+	}
+
+	private void evict(Generation current){
+		Iterator<ShortestPathTree> eldest = current.trees.values().iterator();
+		while (current.weight > maxWeight && eldest.hasNext()){
+			current.weight -= eldest.next().weight();
+			eldest.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Cache contents for one graph. Replaced wholesale when the graph changes.
+	 */
+	private static final class Generation {
+		final CompactGraph graph;
+		final LinkedHashMap<Integer, ShortestPathTree> trees = new LinkedHashMap<Integer, ShortestPathTree>(16, 0.75f, true);
+		final Map<Integer, FutureTask<ShortestPathTree>> inFlight = new ConcurrentHashMap<Integer, FutureTask<ShortestPathTree>>();
+		long weight;
+
+		Generation(CompactGraph graph){
+			this.graph = graph;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the shortest path tree cache.
+ * @author Ryan C Smith
+ */
+public class ShortestPathCacheTest {
+	RouteMap routes;
+
+	@Before
+	public void setUp() throws Exception {
+		routes = new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testMatchesRouteMap() {
+		ShortestPathCache cache = new ShortestPathCache(routes, 1 << 20);
+		String[] towns = {"A","B","C","D","E","F"};
+		for (String start : towns){
+			for (String end : towns)
+				assertEquals(routes.calculateShortestRoute(start, end), cache.calculateShortestRoute(start, end));
+		}
+		assertEquals(5, cache.misses());
+		assertEquals(20, cache.hits());
+		assertEquals(0, cache.evictions());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		long treeWeight = DijkstraSearch.shortestPathTree(routes.getGraph(), 0).weight();
+		ShortestPathCache cache = new ShortestPathCache(routes, 2 * treeWeight);
+		cache.calculateShortestRoute("A", "C");
+		cache.calculateShortestRoute("B", "C");
+		cache.calculateShortestRoute("A", "D");
+		cache.calculateShortestRoute("C", "D");
+		assertEquals(1, cache.evictions());
+		assertEquals(2 * treeWeight, cache.weight());
+		cache.calculateShortestRoute("A", "E");
+		assertEquals(2, cache.hits());
+		cache.calculateShortestRoute("B", "E");
+		assertEquals(4, cache.misses());
+	}
+
+	@Test
+	public void testRetriesAfterFailedSearch() {
+		final int[] calls = new int[1];
+		ShortestPathCache cache = new ShortestPathCache(routes, 1 << 20, (graph, origin) -> {
+			if (calls[0]++ == 0)
+				throw new IllegalStateException("search failed");
+			return DijkstraSearch.shortestPathTree(graph, origin);
+		});
+		try {
+			cache.calculateShortestRoute("A", "C");
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e){
+		}
+		assertEquals(new Integer(9), cache.calculateShortestRoute("A", "C"));
+		assertEquals(2, cache.misses());
+		assertEquals(0, cache.collapsedMisses());
+		assertEquals(new Integer(5), cache.calculateShortestRoute("A", "B"));
+		assertEquals(1, cache.hits());
+	}
+
+	@Test
+	public void testClearsWhenGraphChanges() {
+		ShortestPathCache cache = new ShortestPathCache(routes, 1 << 20);
+		assertEquals(new Integer(9), cache.calculateShortestRoute("A", "C"));
+		routes.graph = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,C,1)"));
+		assertEquals(new Integer(1), cache.calculateShortestRoute("A", "C"));
+		assertEquals(2, cache.misses());
+		assertEquals(0, cache.weight() - cache.tree("A").weight());
+	}
+
+	@Test
+	public void testConcurrentMissesShareOneSearch() throws Exception {
+		final ShortestPathCache cache = new ShortestPathCache(routes, 1 << 20);
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++){
+			threads[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e){
+					return;
+				}
+				assertEquals(new Integer(9), cache.calculateShortestRoute("A", "C"));
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(8, cache.hits() + cache.misses() + cache.collapsedMisses());
+		assertEquals(1, cache.misses());
+	}
+
+	@Test
+	public void testMissFinishingDuringLookupIsNotSearchedAgain() throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		final ShortestPathCache cache = new ShortestPathCache(routes, 1 << 20, (graph, origin) -> {
+			calls.incrementAndGet();
+			return DijkstraSearch.shortestPathTree(graph, origin);
+		});
+		//a lookup that misses just before another lookup's search is cached and forgotten must use that tree
+		for (int round = 0; round < 2000; round++){
+			cache.clear();
+			calls.set(0);
+			final CyclicBarrier start = new CyclicBarrier(4);
+			Thread[] threads = new Thread[4];
+			for (int i = 0; i < threads.length; i++){
+				threads[i] = new Thread(() -> {
+					try {
+						start.await();
+					} catch (Exception e){
+						return;
+					}
+					cache.calculateShortestRoute("A", "C");
+				});
+				threads[i].start();
+			}
+			for (Thread thread : threads)
+				thread.join();
+			assertEquals("round " + round, 1, calls.get());
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package transportationEvaluation;
+
+import java.util.List;
+
+/**
+ * Result of a single-source shortest route search: the shortest distance from one origin to every town,
+ * and the predecessor of every town on its shortest route, so that the route to any destination can be
+ * traced without searching again. The shortest cycle back to the origin is derived once from the roads
+ * entering it, so that distanceTo(origin) follows the same convention as RouteMap.calculateShortestRoute.
+ * @author Ryan C Smith
+ */
+public final class ShortestPathTree {
+	private final CompactGraph graph;
+	private final int source;
+	private final int[] distance;
+	private final int[] predecessor;
+	private final int cycleDistance;
+
+	/**
+	 * @param distance - shortest distance from source to every town.
+	 * @param predecessor - town each town is reached from, DijkstraSearch.NO_TOWN for the source and unreached
+	 * towns. The entry of the source is overwritten with the town the shortest cycle returns from.
+	 */
+	ShortestPathTree(CompactGraph graph, int source, int[] distance, int[] predecessor){
+		this.graph = graph;
+		this.source = source;
+		this.distance = distance;
+		this.predecessor = predecessor;
+		long shortestCycle = DijkstraSearch.UNREACHABLE;
+		for (int town = 0; town < graph.townCount(); town++){
+			if (distance[town] == DijkstraSearch.UNREACHABLE)
+				continue;
+			for (int edge = graph.offsets[town]; edge < graph.offsets[town + 1]; edge++){
+				if (graph.targets[edge] == source && (long) distance[town] + graph.distances[edge] < shortestCycle){
+					shortestCycle = (long) distance[town] + graph.distances[edge];
+					predecessor[source] = town;
+				}
+			}
+		}
+		cycleDistance = (int) shortestCycle;
+	}
+
+	/**
+	 * @return the graph the tree was computed on.
+	 */
+	public CompactGraph graph(){
+		return graph;
+	}
+
+	/**
+	 * @return ID of the origin town.
+	 */
+	public int source(){
+		return source;
+	}
+
+	/**
+	 * @param target - ID of the destination town.
+	 * @return shortest distance from the origin, the shortest cycle if target is the origin,
+	 * or DijkstraSearch.UNREACHABLE if no route exists.
+	 */
+	public int distanceTo(int target){
+		return target == source ? cycleDistance : distance[target];
+	}
+
+	/**
+	 * @param town - ID of a town.
+	 * @return ID of the town before it on its shortest route from the origin (on the shortest cycle, for the
+	 * origin itself), or DijkstraSearch.NO_TOWN if there is no such route.
+	 */
+	public int predecessor(int town){
+		return predecessor[town];
+	}
+
+	/**
+	 * Traces the shortest route to a destination back through the predecessors. Costs one step per town on the route.
+	 * @param target - ID of the destination town.
+	 * @return IDs of the towns visited in order, starting with the origin and ending with target, or null if no route exists.
+	 */
+	public int[] pathTo(int target){
+		if (distanceTo(target) == DijkstraSearch.UNREACHABLE)
+			return null;
+		return DijkstraSearch.path(predecessor, source, target);
+	}
+
+	/**
+	 * Same route as pathTo, as town names. Names are looked up as the list is read, not copied.
+	 * @param target - ID of the destination town.
+	 * @return unmodifiable list of the names of the towns visited in order, or null if no route exists.
+	 */
+	public List<String> routeTo(int target){
+		int[] path = pathTo(target);
+		return path == null ? null : graph.names(path);
+	}
+
+	/**
+	 * @return approximate heap footprint of the tree in bytes, used for size-weighted caching.
+	 */
+	public long weight(){
+		return 8L * distance.length + 64;
+	}
+}
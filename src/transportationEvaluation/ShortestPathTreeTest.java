@@ -0,0 +1,124 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for shortest route reconstruction from predecessors.
+ * @author Ryan C Smith
+ */
+public class ShortestPathTreeTest {
+	CompactGraph graph;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testPathTo() {
+		ShortestPathTree tree = DijkstraSearch.shortestPathTree(graph, graph.id("A"));
+		assertArrayEquals(ids("A", "B", "C"), tree.pathTo(graph.id("C")));
+		assertArrayEquals(ids("A", "D"), tree.pathTo(graph.id("D")));
+		assertEquals(graph.id("B"), tree.predecessor(graph.id("C")));
+		assertNull(tree.pathTo(graph.id("A")));
+		assertEquals(DijkstraSearch.NO_TOWN, tree.predecessor(graph.id("A")));
+	}
+
+	@Test
+	public void testCycle() {
+		ShortestPathTree tree = DijkstraSearch.shortestPathTree(graph, graph.id("C"));
+		assertArrayEquals(ids("C", "E", "B", "C"), tree.pathTo(graph.id("C")));
+		assertArrayEquals(ids("C", "E", "B", "C"), DijkstraSearch.shortestPath(graph, graph.id("C"), graph.id("C")));
+		CompactGraph selfLoop = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,A,2) (A,B,1) (B,A,4)"));
+		assertEquals(Arrays.asList("A", "A"), DijkstraSearch.shortestPathTree(selfLoop, selfLoop.id("A")).routeTo(selfLoop.id("A")));
+	}
+
+	@Test
+	public void testRouteToNames() {
+		ShortestPathTree tree = DijkstraSearch.shortestPathTree(graph, graph.id("A"));
+		assertEquals(Arrays.asList("A", "B"), tree.routeTo(graph.id("B")));
+		assertEquals(Arrays.asList("A", "E"), tree.routeTo(graph.id("E")));
+		assertEquals("C", tree.routeTo(graph.id("C")).get(2));
+	}
+
+	@Test
+	public void testUnreachable() {
+		CompactGraph oneWay = CompactGraph.fromAdjacencyList(Trains.createAdjacencyList("(A,B,5) (B,C,4)"));
+		assertNull(DijkstraSearch.shortestPath(oneWay, oneWay.id("C"), oneWay.id("A")));
+		ShortestPathTree tree = DijkstraSearch.shortestPathTree(oneWay, oneWay.id("B"));
+		assertNull(tree.pathTo(oneWay.id("A")));
+		assertNull(tree.routeTo(oneWay.id("A")));
+		assertEquals(DijkstraSearch.NO_TOWN, tree.predecessor(oneWay.id("A")));
+	}
+
+	@Test
+	public void testPathsMatchDistancesOnRandomGraphs() {
+		Random random = new Random(17);
+		for (int trial = 0; trial < 200; trial++){
+			CompactGraph randomGraph = BidirectionalSearchTest.randomGraph(random, 1 + random.nextInt(30), trial % 2 == 0 ? 3 : 40);
+			for (int start = 0; start < randomGraph.townCount(); start++){
+				ShortestPathTree tree = DijkstraSearch.shortestPathTree(randomGraph, start);
+				for (int end = 0; end < randomGraph.townCount(); end++){
+					int distance = DijkstraSearch.shortestDistance(randomGraph, start, end);
+					assertEquals(distance, tree.distanceTo(end));
+					assertEquals(distance, length(randomGraph, tree.pathTo(end)));
+					assertEquals(distance, length(randomGraph, DijkstraSearch.shortestPath(randomGraph, start, end)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRouteMapPaths() {
+		RouteMap routes = new RouteMap(graph);
+		assertEquals(Arrays.asList("A", "B", "C"), routes.calculateShortestPath("A", "C"));
+		assertEquals(Arrays.asList("B", "C", "E", "B"), routes.calculateShortestPath("B", "B"));
+		assertNull(routes.calculateShortestPath("A", "A"));
+		assertNull(routes.calculateShortestPath("A", "Z"));
+		ShortestPathTree tree = routes.calculateShortestPathTree("A");
+		assertEquals(Arrays.asList("A", "D"), tree.routeTo(graph.id("D")));
+		assertEquals(Arrays.asList("A", "B", "C"), tree.routeTo(graph.id("C")));
+		assertNull(routes.calculateShortestPathTree("Z"));
+		ShortestPathCache cache = new ShortestPathCache(routes, 1 << 20);
+		assertEquals(Arrays.asList("A", "B", "C"), cache.calculateShortestPath("A", "C"));
+		assertEquals(Arrays.asList("A", "D"), cache.calculateShortestPath("A", "D"));
+		assertEquals(1, cache.misses());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testRouteIsUnmodifiable() {
+		DijkstraSearch.shortestPathTree(graph, graph.id("A")).routeTo(graph.id("C")).set(0, "Z");
+	}
+
+	private int[] ids(String... towns){
+		int[] ids = new int[towns.length];
+		for (int i = 0; i < towns.length; i++)
+			ids[i] = graph.id(towns[i]);
+		return ids;
+	}
+
+	/**
+	 * @return length of the route using the shortest of any parallel roads, or UNREACHABLE for no route.
+	 */
+	private static int length(CompactGraph graph, int[] path){
+		if (path == null)
+			return DijkstraSearch.UNREACHABLE;
+		long length = 0;
+		for (int i = 1; i < path.length; i++){
+			long road = Long.MAX_VALUE;
+			for (int edge = graph.firstEdge(path[i - 1]); edge < graph.endEdge(path[i - 1]); edge++){
+				if (graph.target(edge) == path[i])
+					road = Math.min(road, graph.distance(edge));
+			}
+			assertTrue(road != Long.MAX_VALUE);
+			length += road;
+		}
+		return (int) length;
+	}
+}
@@ -0,0 +1,253 @@
+package transportationEvaluation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * All-pairs table of the number of routes with exactly k stops, computed as the k-th power of the
+ * adjacency matrix by repeated squaring. Entry (i, j) of A^k counts the distinct routes of k stops from
+ * town i to town j, so one precomputation answers every (start, end) lookup for that k.
+ * Small networks use a dense row-major long[] kernel with O(1) lookups. Large networks use a sparse
+ * row-compressed kernel (Gustavson row-by-row products) with O(log row length) lookups.
+ * Both kernels split their rows into blocks that are multiplied in parallel on a ForkJoinPool.
+ * Counts that do not fit in a long cause an ArithmeticException.
+ * @author Ryan C Smith
+ */
+public final class StopCountMatrix {
+	/**
+	 * Networks with at most this many towns use the dense kernel by default (32MB per matrix at the limit).
+	 */
+	public static final int DENSE_TOWN_LIMIT = 2048;
+
+	/**
+	 * Minimum rows per fork-join leaf task.
+	 */
+	private static final int ROW_BLOCK = 32;
+
+	private final CompactGraph graph;
+	private final int stops;
+	private final long[] dense;
+	private final Sparse sparse;
+
+	private StopCountMatrix(CompactGraph graph, int stops, long[] dense, Sparse sparse){
+		this.graph = graph;
+		this.stops = stops;
+		this.dense = dense;
+		this.sparse = sparse;
+	}
+
+	/**
+	 * Computes the exact-stops table on the common pool, picking the kernel by network size.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param stops - exact number of stops, at least 1.
+	 * @return table of route counts for every pair of towns.
+	 */
+	public static StopCountMatrix compute(CompactGraph graph, int stops){
+		return compute(graph, stops, graph.townCount() <= DENSE_TOWN_LIMIT, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Computes the exact-stops table.
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @param stops - exact number of stops, at least 1.
+	 * @param useDense - true for the dense kernel, false for the sparse kernel.
+	 * @param pool - ForkJoinPool the row blocks are multiplied on.
+	 * @return table of route counts for every pair of towns.
+	 * @throws IllegalArgumentException - if stops < 1, or the network is too large for the dense kernel.
+	 */
+	public static StopCountMatrix compute(CompactGraph graph, int stops, boolean useDense, ForkJoinPool pool){
+		if (stops < 1)
+			throw new IllegalArgumentException("A route must have at least one stop.");
+		if (useDense){
+			if ((long) graph.townCount() * graph.townCount() > Integer.MAX_VALUE - 8)
+				throw new IllegalArgumentException("Network is too large for the dense kernel.");
+			long[] base = denseAdjacency(graph);
+			long[] result = null;
+			for (int remaining = stops; ; ){
+				if ((remaining & 1) != 0)
+					result = result == null ? base : multiplyDense(result, base, graph.townCount(), pool);
+				remaining >>>= 1;
+				if (remaining == 0)
+					break;
+				base = multiplyDense(base, base, graph.townCount(), pool);
+			}
+			return new StopCountMatrix(graph, stops, result, null);
+		}
+		Sparse base = Sparse.adjacency(graph);
+		Sparse result = null;
+		for (int remaining = stops; ; ){
+			if ((remaining & 1) != 0)
+				result = result == null ? base : multiplySparse(result, base, pool);
+			remaining >>>= 1;
+			if (remaining == 0)
+				break;
+			base = multiplySparse(base, base, pool);
+		}
+		return new StopCountMatrix(graph, stops, null, result);
+	}
+
+	/**
+	 * @return the exact number of stops this table was computed for.
+	 */
+	public int stops(){
+		return stops;
+	}
+
+	/**
+	 * @return true if the table is held in the dense kernel's layout.
+	 */
+	public boolean isDense(){
+		return dense != null;
+	}
+
+	/**
+	 * @param start - ID of the origin town.
+	 * @param end - ID of the destination town.
+	 * @return number of routes from start to end with exactly stops() stops.
+	 */
+	public long count(int start, int end){
+		if (dense != null)
+			return dense[start * graph.townCount() + end];
+		return sparse.get(start, end);
+	}
+
+	/**
+	 * @param start - origin town in String form.
+	 * @param end - destination town in String form.
+	 * @return number of routes from start to end with exactly stops() stops, 0 for unknown towns.
+	 */
+	public long count(String start, String end){
+		int startId = graph.id(start);
+		int endId = graph.id(end);
+		if (startId < 0 || endId < 0)
+			return 0;
+		return count(startId, endId);
+	}
+
+	private static long[] denseAdjacency(CompactGraph graph){
+		int n = graph.townCount();
+		long[] matrix = new long[n * n];
+		for (int town = 0; town < n; town++){
+			for (int edge = graph.offsets[town]; edge < graph.offsets[town + 1]; edge++)
+				matrix[town * n + graph.targets[edge]]++;
+		}
+		return matrix;
+	}
+
+	private static long[] multiplyDense(final long[] left, final long[] right, final int n, ForkJoinPool pool){
+		final long[] product = new long[n * n];
+		pool.invoke(new RowBlocks((from, to) -> {
+			for (int i = from; i < to; i++){
+				int rowBase = i * n;
+				for (int k = 0; k < n; k++){
+					long value = left[rowBase + k];
+					if (value == 0)
+						continue;
+					int rightBase = k * n;
+					for (int j = 0; j < n; j++){
+						long term = right[rightBase + j];
+						if (term != 0)
+							product[rowBase + j] = Math.addExact(product[rowBase + j], Math.multiplyExact(value, term));
+					}
+				}
+			}
+		}, 0, n, ROW_BLOCK));
+		return product;
+	}
+
+	private static Sparse multiplySparse(final Sparse left, final Sparse right, ForkJoinPool pool){
+		final int n = left.rowStart.length - 1;
+		final int[][] rowColumns = new int[n][];
+		final long[][] rowValues = new long[n][];
+		pool.invoke(new RowBlocks((from, to) -> {
+			//dense accumulator plus touched-column list, reused across the rows of this block, which is why
+			//sparse leaf blocks are sized to a few per worker rather than ROW_BLOCK rows
+			long[] accumulator = new long[n];
+			int[] touched = new int[n];
+			for (int i = from; i < to; i++){
+				int touchedCount = 0;
+				for (int a = left.rowStart[i]; a < left.rowStart[i + 1]; a++){
+					int k = left.columns[a];
+					long value = left.values[a];
+					for (int b = right.rowStart[k]; b < right.rowStart[k + 1]; b++){
+						int j = right.columns[b];
+						if (accumulator[j] == 0)
+							touched[touchedCount++] = j;
+						accumulator[j] = Math.addExact(accumulator[j], Math.multiplyExact(value, right.values[b]));
+					}
+				}
+				Arrays.sort(touched, 0, touchedCount);
+				int[] columns = Arrays.copyOf(touched, touchedCount);
+				long[] values = new long[touchedCount];
+				for (int c = 0; c < touchedCount; c++){
+					values[c] = accumulator[columns[c]];
+					accumulator[columns[c]] = 0;
+				}
+				rowColumns[i] = columns;
+				rowValues[i] = values;
+			}
+		}, 0, n, Math.max(ROW_BLOCK, n / (4 * pool.getParallelism()))));
+		return Sparse.fromRows(rowColumns, rowValues);
+	}
+
+	/**
+	 * Row-compressed sparse matrix with sorted, non-zero columns in every row.
+	 */
+	private static final class Sparse {
+		final int[] rowStart;
+		final int[] columns;
+		final long[] values;
+
+		Sparse(int[] rowStart, int[] columns, long[] values){
+			this.rowStart = rowStart;
+			this.columns = columns;
+			this.values = values;
+		}
+
+		/**
+		 * The CSR graph already has sorted rows; parallel roads are merged into one entry with their multiplicity.
+		 */
+		static Sparse adjacency(CompactGraph graph){
+			int n = graph.townCount();
+			int[][] rowColumns = new int[n][];
+			long[][] rowValues = new long[n][];
+			for (int town = 0; town < n; town++){
+				int first = graph.offsets[town];
+				int last = graph.offsets[town + 1];
+				int[] columns = new int[last - first];
+				long[] values = new long[last - first];
+				int size = 0;
+				for (int edge = first; edge < last; edge++){
+					if (size > 0 && columns[size - 1] == graph.targets[edge])
+						values[size - 1]++;
+					else{
+						columns[size] = graph.targets[edge];
+						values[size++] = 1;
+					}
+				}
+				rowColumns[town] = Arrays.copyOf(columns, size);
+				rowValues[town] = Arrays.copyOf(values, size);
+			}
+			return fromRows(rowColumns, rowValues);
+		}
+
+		static Sparse fromRows(int[][] rowColumns, long[][] rowValues){
+			int n = rowColumns.length;
+			int[] rowStart = new int[n + 1];
+			for (int i = 0; i < n; i++)
+				rowStart[i + 1] = rowStart[i] + rowColumns[i].length;
+			int[] columns = new int[rowStart[n]];
+			long[] values = new long[rowStart[n]];
+			for (int i = 0; i < n; i++){
+				System.arraycopy(rowColumns[i], 0, columns, rowStart[i], rowColumns[i].length);
+				System.arraycopy(rowValues[i], 0, values, rowStart[i], rowValues[i].length);
+			}
+			return new Sparse(rowStart, columns, values);
+		}
+
+		long get(int row, int column){
+			int index = Arrays.binarySearch(columns, rowStart[row], rowStart[row + 1], column);
+			return index < 0 ? 0 : values[index];
+		}
+	}
+}
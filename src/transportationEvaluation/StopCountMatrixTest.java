@@ -0,0 +1,53 @@
+package transportationEvaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the adjacency-matrix power engine.
+ * @author Ryan C Smith
+ */
+public class StopCountMatrixTest {
+	RouteMap routes;
+
+	@Before
+	public void setUp() throws Exception {
+		routes = new RouteMap(Trains.createAdjacencyList("(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)"));
+	}
+
+	@Test
+	public void testKernelsMatchRouteCounts() {
+		String[] towns = {"A","B","C","D","E"};
+		ForkJoinPool pool = new ForkJoinPool(2);
+		for (int stops = 1; stops <= 9; stops++){
+			StopCountMatrix dense = StopCountMatrix.compute(routes.getGraph(), stops, true, pool);
+			StopCountMatrix sparse = StopCountMatrix.compute(routes.getGraph(), stops, false, pool);
+			assertTrue(dense.isDense());
+			assertFalse(sparse.isDense());
+			for (String start : towns){
+				for (String end : towns){
+					long expected = routes.calculateNumberOfRoutesByStops(start, end, stops, true);
+					assertEquals(expected, dense.count(start, end));
+					assertEquals(expected, sparse.count(start, end));
+				}
+			}
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testExactStops() {
+		StopCountMatrix table = routes.calculateExactStopsTable(4);
+		assertEquals(3, table.count("A", "C"));
+		assertEquals(0, table.count("A", "F"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroStopsRejected() {
+		routes.calculateExactStopsTable(0);
+	}
+}
@@ -1,9 +1,21 @@
 package transportationEvaluation;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -23,12 +35,31 @@ public class Trains {
 	
 	/**
 	 * Executes the Trains program.
-	 * @param args - command line arguments (not used)
+	 * <pre>
+	 *   Trains [graphFile]                       interactive menu
+	 *   Trains --queries graphFile [queryFile]   answer newline-delimited queries from the file or stdin
+	 *   Trains --serve graphFile [port]          answer queries over TCP on the loopback interface
+	 *   Trains --partition graphFile shards      split the graph into shard files next to it
+	 *   Trains --shard shardFile [port]          serve one shard to coordinators over TCP
+	 *   Trains --coordinate port,... [queryFile] answer distance and shortest queries across shard servers
+	 * </pre>
+	 * Queries use the RouteQuery line format. A graph file given on the command line is loaded directly,
+	 * together with the contraction hierarchy saved next to it if there is one; otherwise the user is asked to pick the file.
+	 * @param args - command line arguments.
 	 */
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].startsWith("--")){
+			headless(args);
+			return;
+		}
 		try {
-			String fileText = load();
-			RouteMap currentRouteMap = new RouteMap(createAdjacencyList(fileText));
+			RouteMap currentRouteMap;
+			if (args.length > 0){
+				currentRouteMap = new RouteMap(loadGraph(args[0]));
+				attachHierarchy(currentRouteMap, args[0]);
+			}
+			else
+				currentRouteMap = new RouteMap(createAdjacencyList(load()));
 			int userChoice = 0;
 			do{
 				System.out.println("Please select an operation from the following options:\n"
@@ -56,6 +87,126 @@ public class Trains {
 
 	}
 	
+	/**
+	 * Runs one of the non-interactive modes. Needs no console or display, so it suits servers and other processes.
+	 * @param args - command line arguments, starting with the mode.
+	 */
+	static void headless(String[] args){
+		try {
+			if (args[0].equals("--queries") && (args.length == 2 || args.length == 3)){
+				answerQueries(args[1], args.length == 3 ? args[2] : null, System.out);
+				return;
+			}
+			if (args[0].equals("--serve") && (args.length == 2 || args.length == 3)){
+				QueryServer server = serve(args[1], args.length == 3 ? Integer.parseInt(args[2]) : QueryServer.DEFAULT_PORT);
+				System.err.println("Answering queries on 127.0.0.1:" + server.port());
+				server.run();
+				return;
+			}
+			if (args[0].equals("--partition") && args.length == 3){
+				for (Path file : GraphPartitioner.writeShards(args[1], Integer.parseInt(args[2])))
+					System.err.println("Wrote " + file);
+				return;
+			}
+			if (args[0].equals("--shard") && (args.length == 2 || args.length == 3)){
+				GraphShard shard = GraphShard.read(Paths.get(args[1]));
+				ShardServer server = new ShardServer(shard, args.length == 3 ? Integer.parseInt(args[2]) : 0);
+				//the first line of output carries the port, for ShardedRouteMap.launch
+				System.out.println("Shard " + shard.index() + " of " + shard.shardCount() + " serving on 127.0.0.1:" + server.port());
+				System.out.flush();
+				server.run();
+				return;
+			}
+			if (args[0].equals("--coordinate") && (args.length == 2 || args.length == 3)){
+				answerShardedQueries(args[1], args.length == 3 ? args[2] : null, System.out);
+				return;
+			}
+			System.err.println("Usage: Trains [graphFile] | --queries graphFile [queryFile] | --serve graphFile [port]"
+					+ " | --partition graphFile shards | --shard shardFile [port] | --coordinate port,... [queryFile]");
+		} catch (IOException e) {
+			System.err.println("An error occurred: " + e.getMessage());
+		} catch (IllegalStateException | NumberFormatException e1){
+			System.err.println(e1.toString());
+		}
+	}
+	
+	/**
+	 * Loads a graph file and answers newline-delimited queries with a BatchRouteEvaluator, writing one
+	 * result line per query through a buffered writer.
+	 * @param graphFileName - path of the file containing graph data or a graph snapshot.
+	 * @param queryFileName - path of the file containing queries, or null (or "-") for standard input.
+	 * @param out - stream receiving the results. Flushed, not closed.
+	 * @throws IOException
+	 * @throws IllegalStateException - Thrown if program encounters improperly formatted input within the graph file.
+	 */
+	public static void answerQueries(String graphFileName, String queryFileName, OutputStream out) throws IOException, IllegalStateException {
+		RouteMap routeMap = new RouteMap(loadGraph(graphFileName));
+		attachHierarchy(routeMap, graphFileName);
+		boolean standardInput = queryFileName == null || queryFileName.equals("-");
+		InputStream in = standardInput ? System.in : Files.newInputStream(Paths.get(queryFileName));
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+			new BatchRouteEvaluator(routeMap).evaluate(reader, writer);
+			writer.flush();
+		} finally {
+			if (!standardInput)
+				in.close();
+		}
+	}
+	
+	/**
+	 * Connects to shard servers on the loopback interface and answers newline-delimited distance and
+	 * shortest-route queries across them, writing one result line per query.
+	 * @param ports - comma-separated ports of the servers of every shard, such as Trains --shard processes.
+	 * @param queryFileName - path of the file containing queries, or null (or "-") for standard input.
+	 * @param out - stream receiving the results. Flushed, not closed.
+	 * @throws IOException - if a query file or shard cannot be read.
+	 */
+	public static void answerShardedQueries(String ports, String queryFileName, OutputStream out) throws IOException {
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		for (String port : ports.split(","))
+			addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim())));
+		boolean standardInput = queryFileName == null || queryFileName.equals("-");
+		InputStream in = standardInput ? System.in : Files.newInputStream(Paths.get(queryFileName));
+		try (ShardedRouteMap routeMap = ShardedRouteMap.connect(addresses)){
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+			for (String line = reader.readLine(); line != null; line = reader.readLine()){
+				if (line.trim().isEmpty())
+					continue;
+				String answer;
+				try {
+					answer = routeMap.answer(RouteQuery.parse(line));
+				} catch (IllegalArgumentException e){
+					answer = "ERROR " + e.getMessage();
+				}
+				writer.write(answer);
+				writer.write('\n');
+			}
+			writer.flush();
+		} finally {
+			if (!standardInput)
+				in.close();
+		}
+	}
+	
+	/**
+	 * Loads a graph file once and binds a QueryServer for it with metrics enabled, so clients can also ask for "metrics".
+	 * @param graphFileName - path of the file containing graph data or a graph snapshot.
+	 * @param port - TCP port on the loopback interface, or 0 for any free port.
+	 * @return the bound server; call run() or start() to begin answering.
+	 * @throws IOException
+	 * @throws IllegalStateException - Thrown if program encounters improperly formatted input within the graph file.
+	 */
+	public static QueryServer serve(String graphFileName, int port) throws IOException, IllegalStateException {
+		QueryMetrics metrics = new QueryMetrics();
+		RouteMap routeMap = new RouteMap(loadGraph(graphFileName, metrics));
+		routeMap.setMetrics(metrics);
+		attachHierarchy(routeMap, graphFileName);
+		return new QueryServer(routeMap, port);
+	}
+	
 	/**
 	 * Loads a text file containing Graph data into a String.
 	 * @return Graph data in String form.
@@ -81,6 +232,79 @@ public class Trains {
 	    return fileText.toString();
 	 }
 	 
+	 /**
+	  * Loads a graph file without user interaction, streaming it straight into a compiled graph.
+	  * Suitable for large files and headless environments. Binary snapshots written by GraphSnapshot.write
+	  * are recognised by their header and memory-mapped instead of parsed.
+	  * @param fileName - path of the file containing graph data or a graph snapshot.
+	  * @return CompactGraph representing the transportation system in the file.
+	  * @throws IOException
+	  * @throws IllegalStateException - Thrown if program encounters improperly formatted input within the file.
+	  */
+	 public static CompactGraph loadGraph(String fileName) throws IOException, IllegalStateException {
+		 Path file = Paths.get(fileName);
+		 if (GraphSnapshot.isSnapshot(file))
+			 return GraphSnapshot.read(file);
+		 return GraphFileLoader.load(file);
+	 }
+	 
+	 /**
+	  * Same as loadGraph(fileName), recording how long the load took as a LOAD operation.
+	  * @param fileName - path of the file containing graph data or a graph snapshot.
+	  * @param metrics - metrics to record the load into, or null.
+	  * @return CompactGraph representing the transportation system in the file.
+	  * @throws IOException
+	  * @throws IllegalStateException - Thrown if program encounters improperly formatted input within the file.
+	  */
+	 public static CompactGraph loadGraph(String fileName, QueryMetrics metrics) throws IOException, IllegalStateException {
+		 QueryMetrics.Span span = QueryMetrics.start(metrics);
+		 CompactGraph graph = loadGraph(fileName);
+		 QueryMetrics.record(span, QueryMetrics.Operation.LOAD, graph.townCount(), graph.version(), fileName, null);
+		 return graph;
+	 }
+	 
+	 /**
+	  * Parses a text graph file and writes it out as a binary snapshot for fast startup.
+	  * @param textFileName - path of the file containing graph data.
+	  * @param snapshotFileName - path the snapshot is written to.
+	  * @return CompactGraph representing the transportation system in the file.
+	  * @throws IOException
+	  * @throws IllegalStateException - Thrown if program encounters improperly formatted input within the file.
+	  */
+	 public static CompactGraph compileGraph(String textFileName, String snapshotFileName) throws IOException, IllegalStateException {
+		 CompactGraph graph = GraphFileLoader.load(Paths.get(textFileName));
+		 GraphSnapshot.write(graph, Paths.get(snapshotFileName));
+		 return graph;
+	 }
+	 
+	 /**
+	  * Loads a graph file and makes sure a contraction hierarchy for it is saved next to it, building one
+	  * if the file has none or the saved one is out of date. Later runs given the same file pick it up.
+	  * @param fileName - path of the file containing graph data or a graph snapshot.
+	  * @return the hierarchy for the graph in the file.
+	  * @throws IOException
+	  * @throws IllegalStateException - Thrown if program encounters improperly formatted input within the file.
+	  */
+	 public static ContractionHierarchy prepareHierarchy(String fileName) throws IOException, IllegalStateException {
+		 return ContractionHierarchy.loadOrBuild(loadGraph(fileName), Paths.get(fileName));
+	 }
+	 
+	 /**
+	  * Uses the contraction hierarchy saved next to a graph file for shortest routes, if there is one for that graph.
+	  * @param routeMap - RouteMap loaded from the file.
+	  * @param fileName - path the graph was loaded from.
+	  */
+	 static void attachHierarchy(RouteMap routeMap, String fileName){
+		 Path file = ContractionHierarchy.fileFor(Paths.get(fileName));
+		 if (!Files.isRegularFile(file))
+			 return;
+		 try {
+			 routeMap.useContractionHierarchy(ContractionHierarchy.read(file, routeMap.getGraph()));
+		 } catch (IOException e){
+			 System.err.println("Ignoring contraction hierarchy: " + e.getMessage());
+		 }
+	 }
+	 
 	 /**
 	  * Takes graph data as a string and constructs an adjacency list representation of a graph.
 	  * @param fileText - String containing graph data.
@@ -2,6 +2,10 @@ package transportationEvaluation;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -41,4 +45,20 @@ public class TrainsTest {
 		}
 	}
 
+	@Test
+	public void testAnswerQueries() throws Exception {
+		Path graph = Files.createTempFile("graph", ".txt");
+		Path queries = Files.createTempFile("queries", ".txt");
+		try {
+			Files.write(graph, "(A,B,5) (B,C,4) (C,D,8) (D,C,8) (D,E,6) (A,D,5) (C,E,2) (E,B,3) (A,E,7)".getBytes(StandardCharsets.UTF_8));
+			Files.write(queries, "distance A-B-C\nshortest A C\nwithin C C 30\nstops A Z 3\n".getBytes(StandardCharsets.UTF_8));
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Trains.answerQueries(graph.toString(), queries.toString(), out);
+			assertEquals("9\n9\n7\n0\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+		} finally {
+			Files.deleteIfExists(graph);
+			Files.deleteIfExists(queries);
+		}
+	}
+
 }
@@ -0,0 +1,35 @@
+package transportationEvaluation;
+
+/**
+ * Result of a query together with the version of the graph it was answered from.
+ * @param <T> - type of the query result.
+ * @author Ryan C Smith
+ */
+public final class VersionedResult<T> {
+	private final T value;
+	private final long version;
+
+	VersionedResult(T value, long version){
+		this.value = value;
+		this.version = version;
+	}
+
+	/**
+	 * @return the query result. May be null, following the convention of the query that produced it.
+	 */
+	public T value(){
+		return value;
+	}
+
+	/**
+	 * @return version of the graph the query ran against.
+	 */
+	public long version(){
+		return version;
+	}
+
+	@Override
+	public String toString(){
+		return value + " @v" + version;
+	}
+}
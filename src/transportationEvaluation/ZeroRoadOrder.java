@@ -0,0 +1,123 @@
+package transportationEvaluation;
+
+/**
+ * Order in which route counting by distance expands the (town, distance) states that share a distance
+ * when the graph has roads of distance 0. A state reached over a zero-length road has the same distance
+ * as the state it came from, so it must be expanded after it: towns are ranked in a topological order of
+ * the zero-length roads. Towns that can reach a cycle of zero-length roads have infinitely many routes
+ * within any limit that reaches them, and are only flagged.
+ * Built once per graph by CompactGraph.zeroRoadOrder().
+ * @author Ryan C Smith
+ */
+final class ZeroRoadOrder {
+	/**
+	 * Order of graphs without zero-length roads, in which every town's rank is its ID.
+	 */
+	static final ZeroRoadOrder IDENTITY = new ZeroRoadOrder(null, null, null);
+
+	private final int[] rank;
+	private final int[] town;
+	private final boolean[] reachesCycle;
+
+	private ZeroRoadOrder(int[] rank, int[] town, boolean[] reachesCycle){
+		this.rank = rank;
+		this.town = town;
+		this.reachesCycle = reachesCycle;
+	}
+
+	/**
+	 * @param graph - CompactGraph representing a transportation system.
+	 * @return order of the graph's towns, IDENTITY if it has no zero-length roads.
+	 */
+	static ZeroRoadOrder of(CompactGraph graph){
+		int townCount = graph.townCount();
+		//zero-length roads leaving each town; towns left with some after peeling can reach a zero cycle
+		int[] zeroOut = new int[townCount];
+		boolean any = false;
+		for (int from = 0; from < townCount; from++){
+			for (int edge = graph.offsets[from]; edge < graph.offsets[from + 1]; edge++){
+				if (graph.distances[edge] == 0){
+					zeroOut[from]++;
+					any = true;
+				}
+			}
+		}
+		if (!any)
+			return IDENTITY;
+		CompactGraph reverse = graph.reverse();
+		int[] queue = new int[townCount];
+		int tail = 0;
+		for (int t = 0; t < townCount; t++){
+			if (zeroOut[t] == 0)
+				queue[tail++] = t;
+		}
+		for (int head = 0; head < tail; head++){
+			int to = queue[head];
+			for (int edge = reverse.offsets[to]; edge < reverse.offsets[to + 1]; edge++){
+				if (reverse.distances[edge] == 0 && --zeroOut[reverse.targets[edge]] == 0)
+					queue[tail++] = reverse.targets[edge];
+			}
+		}
+		boolean[] reachesCycle = new boolean[townCount];
+		//towns that cannot reach a zero cycle only have zero-length roads to towns that cannot either
+		int[] zeroIn = new int[townCount];
+		for (int from = 0; from < townCount; from++){
+			reachesCycle[from] = zeroOut[from] > 0;
+			if (reachesCycle[from])
+				continue;
+			for (int edge = graph.offsets[from]; edge < graph.offsets[from + 1]; edge++){
+				if (graph.distances[edge] == 0)
+					zeroIn[graph.targets[edge]]++;
+			}
+		}
+		int[] town = new int[townCount];
+		tail = 0;
+		for (int t = 0; t < townCount; t++){
+			if (!reachesCycle[t] && zeroIn[t] == 0)
+				town[tail++] = t;
+		}
+		for (int head = 0; head < tail; head++){
+			int from = town[head];
+			for (int edge = graph.offsets[from]; edge < graph.offsets[from + 1]; edge++){
+				if (graph.distances[edge] == 0 && --zeroIn[graph.targets[edge]] == 0)
+					town[tail++] = graph.targets[edge];
+			}
+		}
+		for (int t = 0; t < townCount; t++){
+			if (reachesCycle[t])
+				town[tail++] = t;
+		}
+		int[] rank = new int[townCount];
+		for (int i = 0; i < townCount; i++)
+			rank[town[i]] = i;
+		return new ZeroRoadOrder(rank, town, reachesCycle);
+	}
+
+	/**
+	 * @return position of the town among the states of one distance.
+	 */
+	int rank(int town){
+		return rank == null ? town : rank[town];
+	}
+
+	/**
+	 * @return town at the given rank.
+	 */
+	int town(int rank){
+		return town == null ? rank : town[rank];
+	}
+
+	/**
+	 * @return true if a cycle of zero-length roads can be reached from the town over zero-length roads.
+	 */
+	boolean reachesCycle(int town){
+		return reachesCycle != null && reachesCycle[town];
+	}
+
+	/**
+	 * @return true if the graph has roads of distance 0.
+	 */
+	boolean hasZeroRoads(){
+		return rank != null;
+	}
+}